@@ -0,0 +1,78 @@
+package gui;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Шаг роя тремя способами: по одному роботу через {@link GameWorld#step}
+ * ({@code object}), пакетом без векторов ({@code scalar}) и пакетом на
+ * Vector API ({@code vector}). Пакетные варианты включают сбор значений
+ * из моделей и раскладку обратно, как в {@link GameWorld#tick()}. Везде
+ * прежнее релейное наведение, чтобы сравнивались только способы шага.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class BatchStepperBenchmark
+{
+    private static final int FIELD_WIDTH = 800;
+    private static final int FIELD_HEIGHT = 600;
+
+    @Param({"100", "10000"})
+    public int robots;
+
+    @Param({"object", "scalar", "vector"})
+    public String stepper;
+
+    private GameWorld world;
+    private RobotModel[] models;
+    private BatchStepper batchStepper;
+    private final RobotBatch batch = new RobotBatch();
+    private final SteeringController steering = new BangBangSteering();
+    private boolean targetFlipped;
+
+    @Setup
+    public void setUp()
+    {
+        world = new GameWorld();
+        world.setFieldSize(FIELD_WIDTH, FIELD_HEIGHT);
+        world.spawnRobots(robots - 1);
+        models = world.getRobots();
+        if (!"object".equals(stepper)) {
+            batchStepper = BatchStepper.create(stepper);
+        }
+    }
+
+    @Benchmark
+    public void step(Blackhole blackhole)
+    {
+        targetFlipped = !targetFlipped;
+        int targetX = targetFlipped ? FIELD_WIDTH - 1 : 0;
+        int targetY = targetFlipped ? FIELD_HEIGHT - 1 : 0;
+        if (batchStepper == null) {
+            for (RobotModel robot : models) {
+                world.step(robot, targetX, targetY);
+            }
+        } else {
+            batch.load(models);
+            batchStepper.step(batch, steering, targetX, targetY, FIELD_WIDTH, FIELD_HEIGHT, GameWorld.TICK_DURATION);
+            batch.store();
+        }
+        blackhole.consume(models[0].getPositionX());
+    }
+}
@@ -0,0 +1,76 @@
+package gui;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Длительность шага мира при управлении роботами контроллерами
+ * ({@link ControllerScope}, поток на робота и барьер шага) в сравнении
+ * с обычным пакетным шагом для того же числа роботов. Контроллеры
+ * работают в виртуальных потоках, поэтому замер доходит до 100000 роботов.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ControllerBenchmark
+{
+    private static final int FIELD_WIDTH = 800;
+    private static final int FIELD_HEIGHT = 600;
+
+    @Param({"100", "1000", "100000"})
+    public int robots;
+
+    private GameWorld batchWorld;
+    private GameWorld controlledWorld;
+    private ControllerScope scope;
+
+    @Setup
+    public void setUp()
+    {
+        batchWorld = new GameWorld();
+        batchWorld.setFieldSize(FIELD_WIDTH, FIELD_HEIGHT);
+        batchWorld.spawnRobots(robots);
+
+        controlledWorld = new GameWorld();
+        controlledWorld.setFieldSize(FIELD_WIDTH, FIELD_HEIGHT);
+        scope = new ControllerScope(controlledWorld);
+        for (int i = 0; i < robots; i++) {
+            scope.fork(i % FIELD_WIDTH, i % FIELD_HEIGHT,
+                    RobotController.patrol(50, 50, FIELD_WIDTH - 50, FIELD_HEIGHT - 50, 0));
+        }
+        controlledWorld.tick();
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        scope.close();
+    }
+
+    @Benchmark
+    public void batchTick()
+    {
+        batchWorld.tick();
+    }
+
+    @Benchmark
+    public void controllerTick()
+    {
+        controlledWorld.tick();
+    }
+}
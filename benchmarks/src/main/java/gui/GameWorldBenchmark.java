@@ -0,0 +1,99 @@
+package gui;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Шаг симуляции, который выполняет таймер {@link GameVisualizer}:
+ * наведение на цель, движение и проверка границ для всего роя,
+ * а также отдельно наведение правилом мира ({@link SteeringController#create()},
+ * по умолчанию PID) по пакету роя и проверка границ. Цель на каждом шаге переставляется
+ * между двумя углами поля, иначе роботы быстро доходят до нее и шаг
+ * сводится к проверке расстояния. Снятие контрольной точки замеряется
+ * потому, что на его время шаги мира останавливаются.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameWorldBenchmark
+{
+    private static final int FIELD_WIDTH = 800;
+    private static final int FIELD_HEIGHT = 600;
+
+    @Param({"1", "100", "10000"})
+    public int robots;
+
+    private GameWorld world;
+    private SteeringController steering;
+    private RobotBatch batch;
+    private boolean targetFlipped;
+
+    @Setup
+    public void setUp()
+    {
+        world = new GameWorld();
+        world.setFieldSize(FIELD_WIDTH, FIELD_HEIGHT);
+        world.spawnRobots(robots - 1);
+        steering = SteeringController.create();
+        batch = new RobotBatch();
+        batch.load(world.getRobots());
+    }
+
+    @Benchmark
+    public void tick(Blackhole blackhole)
+    {
+        world.setFieldSize(FIELD_WIDTH, FIELD_HEIGHT);
+        flipTarget();
+        world.tick();
+        blackhole.consume(world.getRobotModel().getPositionX());
+    }
+
+    @Benchmark
+    public void steer(Blackhole blackhole)
+    {
+        flipTarget();
+        steering.steer(batch, 0, batch.count, world.getTargetPositionX(), world.getTargetPositionY(),
+                GameWorld.TICK_DURATION);
+        blackhole.consume(batch.angularVelocity[0]);
+    }
+
+    private void flipTarget()
+    {
+        targetFlipped = !targetFlipped;
+        if (targetFlipped) {
+            world.setTargetPosition(FIELD_WIDTH - 10, FIELD_HEIGHT - 10);
+        } else {
+            world.setTargetPosition(10, 10);
+        }
+    }
+
+    @Benchmark
+    public WorldCheckpoint checkpoint()
+    {
+        return world.checkpoint();
+    }
+
+    @Benchmark
+    public void checkBoundaries(Blackhole blackhole)
+    {
+        for (RobotModel robot : world.getRobots()) {
+            world.checkBoundaries(robot);
+            blackhole.consume(robot.getDirection());
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package gui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * Замер отрисовки {@link GameVisualizer#paint} без экрана: панель
+ * рисуется во внеэкранное изображение, поэтому замер работает
+ * с {@code java.awt.headless=true} на машине без дисплея.
+ * <p>
+ * Перебираются формы, размеры и прозрачность роботов и размер роя.
+ * Для каждого сочетания печатаются кадры в секунду, наносекунды на
+ * робота и объем памяти, выделенной за кадр потоком отрисовки; все три
+ * числа относятся только к {@code paint}, без шага мира между кадрами.
+ * Вторая таблица - рой в мире {@value #WORLD_WIDTH} x {@value #WORLD_HEIGHT},
+ * который панель показывает частью в масштабе 1:1 и целиком: стоимость
+ * кадра должна зависеть от числа видимых роботов (столбец {@code visible}).
+ * <p>
+ * Запуск: {@code gradle :benchmarks:renderBenchmark [-PrenderBenchmark.args="1000 2000"]},
+ * где аргументы - длительность прогрева и замера одного сочетания в мс.
+ */
+public class RenderBenchmark
+{
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+    private static final int[] SIZES = {20, 40, 60};
+    private static final float[] TRANSPARENCIES = {1.0f, 0.5f};
+    private static final int[] ROBOT_COUNTS = {1, 100, 1000, 10000};
+    private static final int WORLD_WIDTH = 8000;
+    private static final int WORLD_HEIGHT = 6000;
+    private static final int[] WORLD_ROBOT_COUNTS = {10000, 100000};
+
+    private final long warmupNanos;
+    private final long measureNanos;
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private RenderBenchmark(long warmupMillis, long measureMillis)
+    {
+        this.warmupNanos = warmupMillis * 1_000_000;
+        this.measureNanos = measureMillis * 1_000_000;
+    }
+
+    public static void main(String[] args)
+    {
+        if (System.getProperty("java.awt.headless") == null) {
+            System.setProperty("java.awt.headless", "true");
+        }
+        long warmupMillis = args.length > 0 ? Long.parseLong(args[0]) : 500;
+        long measureMillis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        new RenderBenchmark(warmupMillis, measureMillis).run();
+    }
+
+    private void run()
+    {
+        System.out.printf(Locale.ROOT, "%-10s %5s %6s %7s %10s %12s %14s%n",
+                "shape", "size", "alpha", "robots", "fps", "ns/robot", "bytes/frame");
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        for (RobotShape shape : RobotShape.values()) {
+            for (int size : SIZES) {
+                for (float transparency : TRANSPARENCIES) {
+                    for (int robots : ROBOT_COUNTS) {
+                        measure(image, shape, size, transparency, robots);
+                    }
+                }
+            }
+        }
+
+        System.out.printf(Locale.ROOT, "%n%-10s %7s %8s %10s %12s %14s%n",
+                "view", "robots", "visible", "fps", "ns/visible", "bytes/frame");
+        for (int robots : WORLD_ROBOT_COUNTS) {
+            measureView(image, robots, false);
+            measureView(image, robots, true);
+        }
+    }
+
+    private void measure(BufferedImage image, RobotShape shape, int size, float transparency, int robots)
+    {
+        GameWorld world = new GameWorld();
+        world.setFieldSize(WIDTH, HEIGHT);
+        world.setTargetPosition(WIDTH / 2, HEIGHT / 2);
+        world.spawnRobots(robots - 1);
+        world.setRobotSize(size);
+        RobotSettings settings = world.getRobotSettings();
+        settings.setShape(shape);
+        settings.setTransparency(transparency);
+
+        GameVisualizer visualizer = new GameVisualizer(world);
+        visualizer.setBackground(Color.LIGHT_GRAY);
+        visualizer.setSize(WIDTH, HEIGHT);
+
+        Graphics2D g = image.createGraphics();
+        try {
+            renderFor(visualizer, world, g, warmupNanos);
+            Frames frames = renderFor(visualizer, world, g, measureNanos);
+
+            System.out.printf(Locale.ROOT, "%-10s %5d %6.2f %7d %10.1f %12.1f %14d%n",
+                    shape, size, transparency, robots,
+                    frames.count * 1e9 / frames.paintNanos,
+                    (double) frames.paintNanos / frames.count / robots,
+                    frames.allocatedBytes / frames.count);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    private void measureView(BufferedImage image, int robots, boolean wholeWorld)
+    {
+        GameWorld world = new GameWorld();
+        world.setWorldSize(WORLD_WIDTH, WORLD_HEIGHT);
+        world.setTargetPosition(WORLD_WIDTH / 2, WORLD_HEIGHT / 2);
+        world.spawnRobots(robots - 1);
+
+        GameVisualizer visualizer = new GameVisualizer(world);
+        visualizer.setBackground(Color.LIGHT_GRAY);
+        visualizer.setSize(WIDTH, HEIGHT);
+        if (wholeWorld) {
+            visualizer.fitWorldToView();
+        }
+        ViewCamera camera = visualizer.getCamera();
+        int visible = countVisible(world, camera);
+
+        Graphics2D g = image.createGraphics();
+        try {
+            renderFor(visualizer, world, g, warmupNanos);
+            Frames frames = renderFor(visualizer, world, g, measureNanos);
+
+            System.out.printf(Locale.ROOT, "%-10s %7d %8d %10.1f %12.1f %14d%n",
+                    wholeWorld ? "whole" : "1:1", robots, visible,
+                    frames.count * 1e9 / frames.paintNanos,
+                    (double) frames.paintNanos / frames.count / Math.max(1, visible),
+                    frames.allocatedBytes / frames.count);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    private static int countVisible(GameWorld world, ViewCamera camera)
+    {
+        int visible = 0;
+        for (RobotModel robot : world.getRobots()) {
+            double x = camera.toScreenX(robot.getPositionX());
+            double y = camera.toScreenY(robot.getPositionY());
+            if (x >= 0 && y >= 0 && x < WIDTH && y < HEIGHT) {
+                visible++;
+            }
+        }
+        return visible;
+    }
+
+    /**
+     * Рисует кадры, пока не пройдет заданное время; между кадрами
+     * мир делает шаг, чтобы роботы двигались, как в приложении.
+     * Время и выделенная память считаются только для отрисовки: шаг мира
+     * с перестройкой пространственного индекса и слоя следов в замер
+     * не входит.
+     */
+    private Frames renderFor(GameVisualizer visualizer, GameWorld world, Graphics2D g, long nanos)
+    {
+        Frames frames = new Frames();
+        long deadline = System.nanoTime() + nanos;
+        do {
+            world.tick();
+            long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            visualizer.paint(g);
+            frames.paintNanos += System.nanoTime() - start;
+            frames.allocatedBytes += threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            frames.count++;
+        } while (System.nanoTime() < deadline);
+        return frames;
+    }
+
+    private static final class Frames
+    {
+        long count;
+        long paintNanos;
+        long allocatedBytes;
+    }
+}
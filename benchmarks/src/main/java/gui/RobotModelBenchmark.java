@@ -0,0 +1,81 @@
+package gui;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * {@link RobotModel#move} по трем веткам: прямолинейное движение
+ * (нулевая угловая скорость, переход на запасную формулу), движение
+ * по дуге и почти нулевая угловая скорость, при которой формула дуги
+ * еще дает конечный результат. Время указано на один шаг всех роботов.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RobotModelBenchmark
+{
+    private static final double VELOCITY = 0.1;
+    private static final double ANGULAR_VELOCITY = 0.001;
+    private static final double NEAR_ZERO_ANGULAR_VELOCITY = 1e-12;
+
+    @Param({"1", "100", "10000"})
+    public int robots;
+
+    private RobotModel[] models;
+
+    @Setup
+    public void setUp()
+    {
+        RobotSettings settings = new RobotSettings();
+        models = new RobotModel[robots];
+        for (int i = 0; i < robots; i++) {
+            RobotModel model = new RobotModel(settings);
+            model.setPositionX(100 + i % 100);
+            model.setPositionY(100 + i / 100);
+            model.setDirection(i * 0.01);
+            models[i] = model;
+        }
+    }
+
+    @Benchmark
+    public void straight(Blackhole blackhole)
+    {
+        moveAll(0, blackhole);
+    }
+
+    @Benchmark
+    public void arc(Blackhole blackhole)
+    {
+        moveAll(ANGULAR_VELOCITY, blackhole);
+    }
+
+    @Benchmark
+    public void nearZeroAngularVelocity(Blackhole blackhole)
+    {
+        moveAll(NEAR_ZERO_ANGULAR_VELOCITY, blackhole);
+    }
+
+    private void moveAll(double angularVelocity, Blackhole blackhole)
+    {
+        for (RobotModel model : models) {
+            model.move(VELOCITY, angularVelocity, GameWorld.TICK_DURATION);
+            blackhole.consume(model.getPositionX());
+            blackhole.consume(model.getPositionY());
+        }
+    }
+}
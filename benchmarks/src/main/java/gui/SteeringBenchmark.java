@@ -0,0 +1,140 @@
+package gui;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Правила наведения {@link SteeringController} на одном и том же наборе
+ * случайных целей. Одна операция - рой доезжает до очередной цели набора:
+ * мир шагает, пока все роботы не прибудут или не выйдет
+ * {@value #MAX_TICKS} шагов.
+ * <p>
+ * Счетчики {@code arrivals} и {@code ticks} показывают время на одно
+ * прибытие робота и на один шаг мира. Среднее число шагов до цели
+ * и число роботов, так и не доехавших (облетающих цель), печатаются
+ * в конце замера.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class SteeringBenchmark
+{
+    private static final int FIELD_WIDTH = 800;
+    private static final int FIELD_HEIGHT = 600;
+    private static final int MARGIN = 50;
+    private static final int TARGETS = 64;
+    private static final int MAX_TICKS = 5000;
+
+    @Param({"100", "1000"})
+    public int robots;
+
+    @Param({"bangbang", "pursuit", "pid"})
+    public String steering;
+
+    private GameWorld world;
+    private RobotModel[] models;
+    private boolean[] arrived;
+    private final int[] targetsX = new int[TARGETS];
+    private final int[] targetsY = new int[TARGETS];
+    private int nextTarget;
+    private long totalArrivals;
+    private long totalRobotTicks;
+    private long totalUnreached;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters
+    {
+        public long arrivals;
+        public long ticks;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            arrivals = 0;
+            ticks = 0;
+        }
+    }
+
+    @Setup
+    public void setUp()
+    {
+        Random random = new Random(42);
+        world = new GameWorld();
+        world.setFieldSize(FIELD_WIDTH, FIELD_HEIGHT);
+        world.setSteering(SteeringController.create(steering));
+        world.spawnRobots(robots - 1);
+        models = world.getRobots();
+        for (RobotModel robot : models) {
+            robot.setPositionX(randomCoordinate(random, FIELD_WIDTH));
+            robot.setPositionY(randomCoordinate(random, FIELD_HEIGHT));
+            robot.setDirection(random.nextDouble() * 2 * Math.PI);
+        }
+        for (int i = 0; i < TARGETS; i++) {
+            targetsX[i] = randomCoordinate(random, FIELD_WIDTH);
+            targetsY[i] = randomCoordinate(random, FIELD_HEIGHT);
+        }
+        arrived = new boolean[models.length];
+    }
+
+    private static int randomCoordinate(Random random, int size)
+    {
+        return MARGIN + random.nextInt(size - 2 * MARGIN);
+    }
+
+    @Benchmark
+    public void reachTarget(Counters counters)
+    {
+        int targetX = targetsX[nextTarget];
+        int targetY = targetsY[nextTarget];
+        nextTarget = (nextTarget + 1) % TARGETS;
+        world.setTargetPosition(targetX, targetY);
+        Arrays.fill(arrived, false);
+
+        int remaining = models.length;
+        int tick = 0;
+        while (remaining > 0 && tick < MAX_TICKS) {
+            world.tick();
+            tick++;
+            for (int i = 0; i < models.length; i++) {
+                if (!arrived[i] && GameWorld.distance(targetX, targetY,
+                        models[i].getPositionX(), models[i].getPositionY()) < SteeringController.ARRIVAL_DISTANCE) {
+                    arrived[i] = true;
+                    remaining--;
+                    totalRobotTicks += tick;
+                }
+            }
+        }
+        counters.ticks += tick;
+        counters.arrivals += models.length - remaining;
+        totalArrivals += models.length - remaining;
+        totalUnreached += remaining;
+    }
+
+    @TearDown
+    public void report()
+    {
+        System.out.printf("%n%s, %d robots: %.1f ticks to target on average, %d arrivals, %d unreached%n",
+                steering, robots, totalRobotTicks / (double) Math.max(1, totalArrivals),
+                totalArrivals, totalUnreached);
+    }
+}
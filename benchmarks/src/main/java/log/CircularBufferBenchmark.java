@@ -0,0 +1,61 @@
+package log;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Добавление в заполненный буфер (с вытеснением старых записей)
+ * и чтение по индексу.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CircularBufferBenchmark
+{
+    @Param({"100", "10000"})
+    public int capacity;
+
+    private CircularBuffer<LogEntry> buffer;
+    private LogEntry entry;
+    private int index;
+
+    @Setup
+    public void setUp()
+    {
+        buffer = new CircularBuffer<>(capacity);
+        entry = new LogEntry(LogLevel.Debug, "message");
+        for (int i = 0; i < capacity; i++) {
+            buffer.add(entry);
+        }
+    }
+
+    @Benchmark
+    public void add()
+    {
+        buffer.add(entry);
+    }
+
+    @Benchmark
+    public LogEntry get()
+    {
+        index++;
+        if (index == capacity) {
+            index = 0;
+        }
+        return buffer.get(index);
+    }
+}
@@ -0,0 +1,53 @@
+package log;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link Logger#debug(String)} при конкуренции потоков за общий протокол.
+ * Число потоков в JMH нельзя задать параметром, поэтому на каждое
+ * значение свой метод.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggerBenchmark
+{
+    @Benchmark
+    @Threads(1)
+    public void debug01Thread()
+    {
+        Logger.debug("message");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void debug04Threads()
+    {
+        Logger.debug("message");
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void debug16Threads()
+    {
+        Logger.debug("message");
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void debug32Threads()
+    {
+        Logger.debug("message");
+    }
+}
@@ -0,0 +1,51 @@
+package log;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Полный обход буфера через {@link SafeIterator}, как это делает
+ * окно протокола при каждом обновлении.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SafeIteratorBenchmark
+{
+    @Param({"100", "10000"})
+    public int size;
+
+    private CircularBuffer<LogEntry> buffer;
+
+    @Setup
+    public void setUp()
+    {
+        buffer = new CircularBuffer<>(size);
+        for (int i = 0; i < size; i++) {
+            buffer.add(new LogEntry(LogLevel.Debug, "message " + i));
+        }
+    }
+
+    @Benchmark
+    public void traverseAll(Blackhole blackhole)
+    {
+        for (LogEntry entry : buffer.all()) {
+            blackhole.consume(entry);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package analysis;
+
+/**
+ * Разбор одного вида файлов по кускам. Для каждого куска создается
+ * свой частичный результат, в него разбираются строки куска, а потом
+ * результаты соседних кусков сливаются по порядку.
+ *
+ * @param <R> частичный результат
+ */
+interface ChunkDecoder<R>
+{
+    R newPartial();
+
+    /**
+     * Разбирает строку bytes[from, to) без перевода строки.
+     * Непонятные строки частичный результат считает сам и пропускает.
+     */
+    void decodeLine(R partial, byte[] bytes, int from, int to);
+
+    /**
+     * Сливает результаты двух соседних кусков; earlier покрывает
+     * строки перед строками later. Может вернуть измененный earlier.
+     */
+    R merge(R earlier, R later);
+}
@@ -0,0 +1,153 @@
+package analysis;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Параллельный разбор строкового файла по кускам на {@link ForkJoinPool}.
+ * <p>
+ * Файл делится на куски по chunkSize байт. Кусок разбирает строки,
+ * которые в нем начинаются: начало куска сдвигается за первый перевод
+ * строки (если кусок начинается не с новой строки, ее хвост разбирает
+ * предыдущий кусок), а последняя строка дочитывается за его концом.
+ * Поэтому куски независимы, и их можно разбирать в любом порядке,
+ * а результаты сливаются по порядку деревом задач.
+ * <p>
+ * Каждый поток пула читает кусок в свой буфер размером
+ * chunkSize + {@link #MAX_LINE_LENGTH} + 1, так что память не зависит
+ * от размера файла: файлы больше оперативной памяти разбираются так же.
+ */
+final class ChunkedFile
+{
+    static final int DEFAULT_CHUNK_SIZE = 8 << 20;
+    static final int MAX_LINE_LENGTH = 64 << 10;
+
+    private ChunkedFile()
+    {
+    }
+
+    static <R> R analyze(Path path, ChunkDecoder<R> decoder, ForkJoinPool pool, int chunkSize)
+            throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long chunks = Math.max(1, (size + chunkSize - 1) / chunkSize);
+            ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(
+                    () -> ByteBuffer.allocate(chunkSize + MAX_LINE_LENGTH + 1));
+            try {
+                return pool.invoke(new ChunkTask<>(channel, size, chunkSize, decoder, buffers, 0, chunks));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static final class ChunkTask<R> extends RecursiveTask<R>
+    {
+        private final FileChannel channel;
+        private final long size;
+        private final int chunkSize;
+        private final ChunkDecoder<R> decoder;
+        private final ThreadLocal<ByteBuffer> buffers;
+        private final long firstChunk;
+        private final long endChunk;
+
+        ChunkTask(FileChannel channel, long size, int chunkSize, ChunkDecoder<R> decoder,
+                  ThreadLocal<ByteBuffer> buffers, long firstChunk, long endChunk)
+        {
+            this.channel = channel;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.decoder = decoder;
+            this.buffers = buffers;
+            this.firstChunk = firstChunk;
+            this.endChunk = endChunk;
+        }
+
+        @Override
+        protected R compute()
+        {
+            if (endChunk - firstChunk == 1) {
+                try {
+                    return decodeChunk(firstChunk);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            long middle = (firstChunk + endChunk) >>> 1;
+            ChunkTask<R> earlier = new ChunkTask<>(channel, size, chunkSize, decoder, buffers, firstChunk, middle);
+            ChunkTask<R> later = new ChunkTask<>(channel, size, chunkSize, decoder, buffers, middle, endChunk);
+            earlier.fork();
+            R laterResult = later.compute();
+            return decoder.merge(earlier.join(), laterResult);
+        }
+
+        /**
+         * Лист дерева не ждет других задач, поэтому поток не может
+         * взять чужой кусок посреди разбора и буфер потока занят
+         * только одним куском.
+         */
+        private R decodeChunk(long chunk) throws IOException
+        {
+            long start = chunk * chunkSize;
+            long end = Math.min(size, start + chunkSize);
+            // Байт перед началом куска показывает, начинается ли кусок с новой строки.
+            long readFrom = start == 0 ? 0 : start - 1;
+            long readTo = Math.min(size, end + MAX_LINE_LENGTH);
+
+            ByteBuffer buffer = buffers.get();
+            buffer.clear();
+            buffer.limit((int) (readTo - readFrom));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, readFrom + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            byte[] bytes = buffer.array();
+            int limit = buffer.position();
+            int chunkEnd = (int) (end - readFrom);
+
+            int position = 0;
+            if (start > 0) {
+                int newline = indexOfNewline(bytes, 0, limit);
+                position = newline < 0 ? limit : newline + 1;
+            }
+            R partial = decoder.newPartial();
+            while (position < chunkEnd) {
+                int lineEnd = indexOfNewline(bytes, position, limit);
+                if (lineEnd < 0) {
+                    if (readFrom + limit < size) {
+                        throw new IOException("Line longer than " + MAX_LINE_LENGTH
+                                + " bytes at offset " + (readFrom + position));
+                    }
+                    lineEnd = limit;
+                }
+                int contentEnd = lineEnd;
+                if (contentEnd > position && bytes[contentEnd - 1] == '\r') {
+                    contentEnd--;
+                }
+                if (contentEnd > position) {
+                    decoder.decodeLine(partial, bytes, position, contentEnd);
+                }
+                position = lineEnd + 1;
+            }
+            return partial;
+        }
+    }
+
+    private static int indexOfNewline(byte[] bytes, int from, int to)
+    {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
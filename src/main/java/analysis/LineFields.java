@@ -0,0 +1,131 @@
+package analysis;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Разбор полей строки прямо из байтов буфера, без создания строк:
+ * на файлах в гигабайты разбор чисел - основная работа анализатора.
+ * Неверное поле дает {@link NumberFormatException}.
+ */
+final class LineFields
+{
+    private static final double[] POWERS_OF_TEN = new double[19];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private LineFields()
+    {
+    }
+
+    /**
+     * Позиция первого байта separator в bytes[from, to) или to, если его нет.
+     */
+    static int next(byte[] bytes, int from, int to, byte separator)
+    {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == separator) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    static long parseLong(byte[] bytes, int from, int to)
+    {
+        int i = from;
+        boolean negative = i < to && bytes[i] == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == to || to - i > 18) {
+            throw invalid(bytes, from, to);
+        }
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw invalid(bytes, from, to);
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    static int parseInt(byte[] bytes, int from, int to)
+    {
+        long value = parseLong(bytes, from, to);
+        if (value != (int) value) {
+            throw invalid(bytes, from, to);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Десятичная дробь вида {@code -12.345}, как ее печатает
+     * {@code %.3f}; остальные записи (экспонента, NaN) разбираются
+     * через {@link Double#parseDouble}.
+     */
+    static double parseDecimal(byte[] bytes, int from, int to)
+    {
+        int i = from;
+        boolean negative = i < to && bytes[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; i < to; i++) {
+            byte b = bytes[i];
+            if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9 || digits == 18) {
+                return parseDouble(bytes, from, to);
+            }
+            mantissa = mantissa * 10 + digit;
+            digits++;
+            if (fractionDigits >= 0) {
+                fractionDigits++;
+            }
+        }
+        if (digits == 0) {
+            return parseDouble(bytes, from, to);
+        }
+        double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+        return negative ? -value : value;
+    }
+
+    private static double parseDouble(byte[] bytes, int from, int to)
+    {
+        return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Совпадает ли поле bytes[from, to) с текстом expected в ASCII.
+     */
+    static boolean equalsAscii(byte[] bytes, int from, int to, byte[] expected)
+    {
+        if (to - from != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (bytes[from + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static NumberFormatException invalid(byte[] bytes, int from, int to)
+    {
+        return new NumberFormatException("Invalid number: "
+                + new String(bytes, from, Math.min(to - from, 32), StandardCharsets.UTF_8));
+    }
+}
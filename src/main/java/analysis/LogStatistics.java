@@ -0,0 +1,148 @@
+package analysis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+import log.LogLevel;
+
+/**
+ * Сводка по файлу протокола ({@link log.LogFileWriter}): число записей
+ * каждого уровня всего и в окнах времени заданной длины.
+ * <p>
+ * Память не зависит от размера файла: на окно хранится по счетчику
+ * на уровень, а окна идут подряд, поэтому в куске карта окон
+ * почти не ищется - запоминается текущее окно.
+ */
+final class LogStatistics
+{
+    private static final LogLevel[] LEVELS = LogLevel.values();
+    private static final byte[][] LEVEL_NAMES = new byte[LEVELS.length][];
+    static {
+        for (LogLevel level : LEVELS) {
+            LEVEL_NAMES[level.ordinal()] = level.name().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final long windowMillis;
+    private final long[] countsByLevel = new long[LEVELS.length];
+    private final TreeMap<Long, long[]> windows = new TreeMap<>();
+    private long currentWindow = Long.MIN_VALUE;
+    private long[] currentCounts;
+    private long lines;
+    private long malformed;
+    private long firstTimestamp = Long.MAX_VALUE;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    LogStatistics(long windowMillis)
+    {
+        this.windowMillis = windowMillis;
+    }
+
+    static ChunkDecoder<LogStatistics> decoder(long windowMillis)
+    {
+        return new ChunkDecoder<>()
+        {
+            @Override
+            public LogStatistics newPartial()
+            {
+                return new LogStatistics(windowMillis);
+            }
+
+            @Override
+            public void decodeLine(LogStatistics partial, byte[] bytes, int from, int to)
+            {
+                partial.add(bytes, from, to);
+            }
+
+            @Override
+            public LogStatistics merge(LogStatistics earlier, LogStatistics later)
+            {
+                return earlier.merge(later);
+            }
+        };
+    }
+
+    void add(byte[] bytes, int from, int to)
+    {
+        lines++;
+        int timeEnd = LineFields.next(bytes, from, to, (byte) '\t');
+        int levelEnd = LineFields.next(bytes, timeEnd + 1, to, (byte) '\t');
+        if (levelEnd >= to) {
+            malformed++;
+            return;
+        }
+        LogLevel level = parseLevel(bytes, timeEnd + 1, levelEnd);
+        if (level == null) {
+            malformed++;
+            return;
+        }
+        long timestamp;
+        try {
+            timestamp = LineFields.parseLong(bytes, from, timeEnd);
+        } catch (NumberFormatException e) {
+            malformed++;
+            return;
+        }
+        countsByLevel[level.ordinal()]++;
+        firstTimestamp = Math.min(firstTimestamp, timestamp);
+        lastTimestamp = Math.max(lastTimestamp, timestamp);
+        window(Math.floorDiv(timestamp, windowMillis))[level.ordinal()]++;
+    }
+
+    private static LogLevel parseLevel(byte[] bytes, int from, int to)
+    {
+        for (LogLevel level : LEVELS) {
+            if (LineFields.equalsAscii(bytes, from, to, LEVEL_NAMES[level.ordinal()])) {
+                return level;
+            }
+        }
+        return null;
+    }
+
+    private long[] window(long index)
+    {
+        if (index != currentWindow) {
+            currentWindow = index;
+            currentCounts = windows.computeIfAbsent(index, key -> new long[LEVELS.length]);
+        }
+        return currentCounts;
+    }
+
+    LogStatistics merge(LogStatistics later)
+    {
+        lines += later.lines;
+        malformed += later.malformed;
+        for (int i = 0; i < countsByLevel.length; i++) {
+            countsByLevel[i] += later.countsByLevel[i];
+        }
+        firstTimestamp = Math.min(firstTimestamp, later.firstTimestamp);
+        lastTimestamp = Math.max(lastTimestamp, later.lastTimestamp);
+        for (Map.Entry<Long, long[]> entry : later.windows.entrySet()) {
+            long[] counts = windows.computeIfAbsent(entry.getKey(), key -> new long[LEVELS.length]);
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += entry.getValue()[i];
+            }
+        }
+        currentWindow = Long.MIN_VALUE;
+        return this;
+    }
+
+    long getLines() { return lines; }
+
+    long getMalformed() { return malformed; }
+
+    long getCount(LogLevel level) { return countsByLevel[level.ordinal()]; }
+
+    long getFirstTimestamp() { return firstTimestamp; }
+
+    long getLastTimestamp() { return lastTimestamp; }
+
+    long getWindowMillis() { return windowMillis; }
+
+    /**
+     * Окна по порядку: номер окна (время начала / длина окна)
+     * и число записей каждого уровня по {@link LogLevel#ordinal()}.
+     */
+    Map<Long, long[]> getWindows() { return windows; }
+}
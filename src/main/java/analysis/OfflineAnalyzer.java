@@ -0,0 +1,285 @@
+package analysis;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import gui.GameWorld;
+import log.LogLevel;
+
+/**
+ * Разбор записанных протоколов и трасс после работы приложения,
+ * без интерфейса: {@code RobotsProgram --analyze [ключи] файл...}.
+ * <p>
+ * Вид файла определяется по первой строке: строки протокола
+ * ({@link log.LogFileWriter}) разделены табуляциями, строки трассы
+ * ({@code telemetry.TelemetryReader --records}) - запятыми. Файл режется
+ * на независимые куски ({@link ChunkedFile}), куски разбираются
+ * параллельно на {@link ForkJoinPool}, и печатается сводка:
+ * <ul>
+ * <li>для протокола - число записей каждого уровня, всего и по окнам времени;
+ * <li>для трассы - записи и удары о стены по окнам модельного времени,
+ * удары в минуту и роботы с наибольшим числом ударов.
+ * </ul>
+ * Ключи: {@code --window секунды} - длина окна (60), {@code --threads N} -
+ * число потоков разбора (по числу процессоров), {@code --top N} - сколько
+ * роботов показывать (10), {@code --chunk МБ} - размер куска (8).
+ */
+public final class OfflineAnalyzer
+{
+    public static final String FLAG = "--analyze";
+
+    private static final int SNIFF_BYTES = 4096;
+
+    private long windowMillis = TimeUnit.MINUTES.toMillis(1);
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int top = 10;
+    private int chunkSize = ChunkedFile.DEFAULT_CHUNK_SIZE;
+    private final List<Path> files = new ArrayList<>();
+    private final PrintStream out;
+
+    private OfflineAnalyzer(PrintStream out)
+    {
+        this.out = out;
+    }
+
+    public static void main(String[] args)
+    {
+        OfflineAnalyzer analyzer = new OfflineAnalyzer(System.out);
+        try {
+            analyzer.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            System.exit(2);
+            return;
+        }
+        if (!analyzer.run()) {
+            System.exit(1);
+        }
+    }
+
+    private static void printUsage()
+    {
+        System.err.println("Usage: RobotsProgram " + FLAG
+                + " [--window SECONDS] [--threads N] [--top N] [--chunk MB] FILE...");
+    }
+
+    private void parseArguments(String[] args)
+    {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--window":
+                    windowMillis = TimeUnit.SECONDS.toMillis(positive(arg, args, ++i));
+                    break;
+                case "--threads":
+                    threads = positive(arg, args, ++i);
+                    break;
+                case "--top":
+                    top = positive(arg, args, ++i);
+                    break;
+                case "--chunk":
+                    chunkSize = Math.min(1024, positive(arg, args, ++i)) << 20;
+                    break;
+                default:
+                    if (arg.startsWith("--")) {
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                    }
+                    files.add(Paths.get(arg));
+            }
+        }
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No files to analyze");
+        }
+    }
+
+    private static int positive(String option, String[] args, int index)
+    {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(option + " needs a value");
+        }
+        try {
+            int value = Integer.parseInt(args[index]);
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // сообщение ниже
+        }
+        throw new IllegalArgumentException(option + " must be a positive number: " + args[index]);
+    }
+
+    /**
+     * @return разобраны ли все файлы
+     */
+    private boolean run()
+    {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        boolean success = true;
+        try {
+            for (Path file : files) {
+                try {
+                    analyze(file, pool);
+                } catch (IOException e) {
+                    System.err.println(file + ": " + e.getMessage());
+                    success = false;
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return success;
+    }
+
+    private void analyze(Path file, ForkJoinPool pool) throws IOException
+    {
+        long startTime = System.nanoTime();
+        long size = Files.size(file);
+        switch (sniff(file)) {
+            case LOG:
+                LogStatistics log = ChunkedFile.analyze(file, LogStatistics.decoder(windowMillis), pool, chunkSize);
+                printHeader(file, log.getLines(), log.getMalformed(), size, System.nanoTime() - startTime);
+                printLog(log);
+                break;
+            case TRACE:
+                TraceStatistics trace = ChunkedFile.analyze(file, TraceStatistics.decoder(windowMillis), pool, chunkSize);
+                printHeader(file, trace.getLines(), trace.getMalformed(), size, System.nanoTime() - startTime);
+                printTrace(trace);
+                break;
+        }
+    }
+
+    private enum FileKind { LOG, TRACE }
+
+    private static FileKind sniff(Path file) throws IOException
+    {
+        byte[] head;
+        try (InputStream in = Files.newInputStream(file)) {
+            head = in.readNBytes(SNIFF_BYTES);
+        }
+        int tabs = 0;
+        int commas = 0;
+        for (byte b : head) {
+            if (b == '\n') {
+                break;
+            }
+            if (b == '\t') {
+                tabs++;
+            } else if (b == ',') {
+                commas++;
+            }
+        }
+        if (tabs >= 3) {
+            return FileKind.LOG;
+        }
+        if (commas == TraceStatistics.FIELDS - 1) {
+            return FileKind.TRACE;
+        }
+        throw new IOException("Neither a log file nor a telemetry trace");
+    }
+
+    private void printHeader(Path file, long lines, long malformed, long size, long nanos)
+    {
+        double seconds = nanos / 1e9;
+        out.printf(Locale.ROOT, "%s: %d lines (%d malformed), %.1f MB in %.2f s (%.0f MB/s, %d threads)%n",
+                file, lines, malformed, size / 1e6, seconds, size / 1e6 / seconds, threads);
+    }
+
+    private void printLog(LogStatistics log)
+    {
+        LogLevel[] levels = LogLevel.values();
+        out.println("  level     entries");
+        for (LogLevel level : levels) {
+            out.printf(Locale.ROOT, "  %-8s %8d%n", level, log.getCount(level));
+        }
+        if (log.getWindows().isEmpty()) {
+            return;
+        }
+        out.printf(Locale.ROOT, "%n  %-20s", "window (UTC)");
+        for (LogLevel level : levels) {
+            out.printf(Locale.ROOT, " %8s", level);
+        }
+        out.println();
+        for (Map.Entry<Long, long[]> window : log.getWindows().entrySet()) {
+            out.printf(Locale.ROOT, "  %-20s", Instant.ofEpochMilli(window.getKey() * log.getWindowMillis()));
+            for (long count : window.getValue()) {
+                out.printf(Locale.ROOT, " %8d", count);
+            }
+            out.println();
+        }
+        double minutes = Math.max(1, log.getLastTimestamp() - log.getFirstTimestamp()) / 60000.0;
+        out.printf(Locale.ROOT, "  errors per minute: %.2f%n",
+                (log.getCount(LogLevel.Error) + log.getCount(LogLevel.Fatal)) / minutes);
+    }
+
+    private void printTrace(TraceStatistics trace)
+    {
+        if (trace.getWindows().isEmpty()) {
+            return;
+        }
+        long robots = 0;
+        long hits = 0;
+        for (int id = 0; id < trace.getRobotCapacity(); id++) {
+            if (trace.getRecords(id) > 0) {
+                robots++;
+                hits += trace.getWallHits(id);
+            }
+        }
+        double minutes = (trace.getLastTick() - trace.getFirstTick() + 1) * GameWorld.TICK_DURATION / 60000;
+        out.printf(Locale.ROOT, "  ticks %d..%d (%.1f simulated min), %d robots, %d wall hits (%.1f per min)%n",
+                trace.getFirstTick(), trace.getLastTick(), minutes, robots, hits, hits / minutes);
+
+        out.printf(Locale.ROOT, "%n  %-12s %10s %10s %12s%n", "window (sim)", "records", "wall hits", "hits/min");
+        double windowMinutes = trace.getWindowTicks() * GameWorld.TICK_DURATION / 60000;
+        for (Map.Entry<Long, long[]> window : trace.getWindows().entrySet()) {
+            long startMillis = (long) (window.getKey() * trace.getWindowTicks() * GameWorld.TICK_DURATION);
+            out.printf(Locale.ROOT, "  %-12s %10d %10d %12.1f%n", formatDuration(startMillis),
+                    window.getValue()[0], window.getValue()[1], window.getValue()[1] / windowMinutes);
+        }
+
+        Integer[] ids = topRobots(trace);
+        if (ids.length == 0) {
+            return;
+        }
+        out.printf(Locale.ROOT, "%n  %-8s %10s %10s %12s %12s%n", "robot", "records", "wall hits", "hits/min", "distance");
+        for (int id : ids) {
+            double robotMinutes = trace.getRecords(id) * GameWorld.TICK_DURATION / 60000;
+            out.printf(Locale.ROOT, "  %-8d %10d %10d %12.1f %12.0f%n", id, trace.getRecords(id),
+                    trace.getWallHits(id), trace.getWallHits(id) / robotMinutes, trace.getDistance(id));
+        }
+    }
+
+    /**
+     * Номера {@link #top} роботов с наибольшим числом ударов о стены.
+     */
+    private Integer[] topRobots(TraceStatistics trace)
+    {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 0; id < trace.getRobotCapacity(); id++) {
+            if (trace.getRecords(id) > 0) {
+                ids.add(id);
+            }
+        }
+        Integer[] sorted = ids.toArray(new Integer[0]);
+        Arrays.sort(sorted, (a, b) -> Long.compare(trace.getWallHits(b), trace.getWallHits(a)));
+        return Arrays.copyOf(sorted, Math.min(top, sorted.length));
+    }
+
+    private static String formatDuration(long millis)
+    {
+        long seconds = millis / 1000;
+        return String.format(Locale.ROOT, "%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+}
@@ -0,0 +1,253 @@
+package analysis;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import gui.GameWorld;
+
+/**
+ * Сводка по трассе симуляции - записям телеметрии, сохраненным
+ * {@code telemetry.TelemetryReader --records} по строке на запись:
+ * <pre>
+ * шаг,робот,флаги,x,y,направление,цельX,цельY
+ * </pre>
+ * Для каждого робота считаются записи, пройденный путь и удары о стены,
+ * а для окон модельного времени - записи и удары.
+ * <p>
+ * Удар о стену виден по скачку направления между соседними шагами
+ * робота: отражение меняет направление сразу, а наведение поворачивает
+ * робота не больше чем на {@link #WALL_TURN} за шаг. Скользящие удары
+ * с меньшим изломом не считаются. Если шаги идут не подряд (потерянные
+ * записи, восстановление контрольной точки), переход не учитывается.
+ * <p>
+ * Столбцы роботов индексируются номером робота, поэтому память зависит
+ * от числа роботов и окон, но не от длины трассы. Первая и последняя
+ * запись каждого робота в куске хранятся отдельно: при слиянии соседних
+ * кусков переход через их границу учитывается так же, как внутри куска.
+ */
+final class TraceStatistics
+{
+    /** Излом направления за шаг, начиная с которого считается удар о стену. */
+    static final double WALL_TURN = 0.2;
+    /** Верхняя граница номера робота: защищает память от испорченных строк. */
+    static final int MAX_ROBOT_ID = 1 << 24;
+
+    /** Число полей в строке трассы. */
+    static final int FIELDS = 8;
+
+    private final long windowTicks;
+    private final TreeMap<Long, long[]> windows = new TreeMap<>();
+    private long currentWindow = Long.MIN_VALUE;
+    private long[] currentCounts;
+    private long lines;
+    private long malformed;
+    private long firstTick = Long.MAX_VALUE;
+    private long lastTick = Long.MIN_VALUE;
+
+    private int robotCapacity;
+    private long[] records = new long[0];
+    private long[] wallHits = new long[0];
+    private double[] distance = new double[0];
+    private long[] firstTicks = new long[0];
+    private double[] firstX = new double[0];
+    private double[] firstY = new double[0];
+    private double[] firstDirection = new double[0];
+    private long[] lastTicks = new long[0];
+    private double[] lastX = new double[0];
+    private double[] lastY = new double[0];
+    private double[] lastDirection = new double[0];
+
+    TraceStatistics(long windowTicks)
+    {
+        this.windowTicks = windowTicks;
+    }
+
+    static ChunkDecoder<TraceStatistics> decoder(long windowMillis)
+    {
+        long windowTicks = Math.max(1, Math.round(windowMillis / GameWorld.TICK_DURATION));
+        return new ChunkDecoder<>()
+        {
+            @Override
+            public TraceStatistics newPartial()
+            {
+                return new TraceStatistics(windowTicks);
+            }
+
+            @Override
+            public void decodeLine(TraceStatistics partial, byte[] bytes, int from, int to)
+            {
+                partial.add(bytes, from, to);
+            }
+
+            @Override
+            public TraceStatistics merge(TraceStatistics earlier, TraceStatistics later)
+            {
+                return earlier.merge(later);
+            }
+        };
+    }
+
+    void add(byte[] bytes, int from, int to)
+    {
+        lines++;
+        long tick;
+        int id;
+        double x;
+        double y;
+        double direction;
+        try {
+            int end = LineFields.next(bytes, from, to, (byte) ',');
+            tick = LineFields.parseLong(bytes, from, end);
+            int start = end + 1;
+            end = LineFields.next(bytes, start, to, (byte) ',');
+            id = LineFields.parseInt(bytes, start, end);
+            start = LineFields.next(bytes, end + 1, to, (byte) ',') + 1;
+            end = LineFields.next(bytes, start, to, (byte) ',');
+            x = LineFields.parseDecimal(bytes, start, end);
+            start = end + 1;
+            end = LineFields.next(bytes, start, to, (byte) ',');
+            y = LineFields.parseDecimal(bytes, start, end);
+            start = end + 1;
+            end = LineFields.next(bytes, start, to, (byte) ',');
+            direction = LineFields.parseDecimal(bytes, start, end);
+            if (end >= to || id < 0 || id >= MAX_ROBOT_ID) {
+                malformed++;
+                return;
+            }
+        } catch (NumberFormatException e) {
+            malformed++;
+            return;
+        }
+
+        ensureRobotCapacity(id + 1);
+        long[] window = window(tick);
+        window[0]++;
+        if (records[id] == 0) {
+            firstTicks[id] = tick;
+            firstX[id] = x;
+            firstY[id] = y;
+            firstDirection[id] = direction;
+        } else if (lastTicks[id] + 1 == tick) {
+            step(id, lastX[id], lastY[id], lastDirection[id], x, y, direction, window);
+        }
+        lastTicks[id] = tick;
+        lastX[id] = x;
+        lastY[id] = y;
+        lastDirection[id] = direction;
+        records[id]++;
+        firstTick = Math.min(firstTick, tick);
+        lastTick = Math.max(lastTick, tick);
+    }
+
+    /**
+     * Переход робота между соседними шагами.
+     */
+    private void step(int id, double fromX, double fromY, double fromDirection,
+                      double toX, double toY, double toDirection, long[] window)
+    {
+        distance[id] += Math.hypot(toX - fromX, toY - fromY);
+        double turn = Math.abs(Math.IEEEremainder(toDirection - fromDirection, 2 * Math.PI));
+        if (turn > WALL_TURN) {
+            wallHits[id]++;
+            window[1]++;
+        }
+    }
+
+    /**
+     * Счетчики окна, в которое попадает шаг: записи и удары о стены.
+     */
+    private long[] window(long tick)
+    {
+        long index = Math.floorDiv(tick, windowTicks);
+        if (index != currentWindow) {
+            currentWindow = index;
+            currentCounts = windows.computeIfAbsent(index, key -> new long[2]);
+        }
+        return currentCounts;
+    }
+
+    private void ensureRobotCapacity(int count)
+    {
+        if (count <= robotCapacity) {
+            return;
+        }
+        int capacity = Math.max(count, Math.min(MAX_ROBOT_ID, Math.max(16, robotCapacity * 2)));
+        records = Arrays.copyOf(records, capacity);
+        wallHits = Arrays.copyOf(wallHits, capacity);
+        distance = Arrays.copyOf(distance, capacity);
+        firstTicks = Arrays.copyOf(firstTicks, capacity);
+        firstX = Arrays.copyOf(firstX, capacity);
+        firstY = Arrays.copyOf(firstY, capacity);
+        firstDirection = Arrays.copyOf(firstDirection, capacity);
+        lastTicks = Arrays.copyOf(lastTicks, capacity);
+        lastX = Arrays.copyOf(lastX, capacity);
+        lastY = Arrays.copyOf(lastY, capacity);
+        lastDirection = Arrays.copyOf(lastDirection, capacity);
+        robotCapacity = capacity;
+    }
+
+    TraceStatistics merge(TraceStatistics later)
+    {
+        lines += later.lines;
+        malformed += later.malformed;
+        firstTick = Math.min(firstTick, later.firstTick);
+        lastTick = Math.max(lastTick, later.lastTick);
+        for (Map.Entry<Long, long[]> entry : later.windows.entrySet()) {
+            long[] counts = windows.computeIfAbsent(entry.getKey(), key -> new long[2]);
+            counts[0] += entry.getValue()[0];
+            counts[1] += entry.getValue()[1];
+        }
+        currentWindow = Long.MIN_VALUE;
+
+        ensureRobotCapacity(later.robotCapacity);
+        for (int id = 0; id < later.robotCapacity; id++) {
+            if (later.records[id] == 0) {
+                continue;
+            }
+            if (records[id] == 0) {
+                firstTicks[id] = later.firstTicks[id];
+                firstX[id] = later.firstX[id];
+                firstY[id] = later.firstY[id];
+                firstDirection[id] = later.firstDirection[id];
+            } else if (lastTicks[id] + 1 == later.firstTicks[id]) {
+                step(id, lastX[id], lastY[id], lastDirection[id],
+                        later.firstX[id], later.firstY[id], later.firstDirection[id],
+                        window(later.firstTicks[id]));
+            }
+            records[id] += later.records[id];
+            wallHits[id] += later.wallHits[id];
+            distance[id] += later.distance[id];
+            lastTicks[id] = later.lastTicks[id];
+            lastX[id] = later.lastX[id];
+            lastY[id] = later.lastY[id];
+            lastDirection[id] = later.lastDirection[id];
+        }
+        return this;
+    }
+
+    long getLines() { return lines; }
+
+    long getMalformed() { return malformed; }
+
+    long getFirstTick() { return firstTick; }
+
+    long getLastTick() { return lastTick; }
+
+    long getWindowTicks() { return windowTicks; }
+
+    /**
+     * Окна по порядку: номер окна (шаг / длина окна в шагах), число
+     * записей и число ударов о стены.
+     */
+    Map<Long, long[]> getWindows() { return windows; }
+
+    /** Длина столбцов роботов: все номера роботов меньше нее. */
+    int getRobotCapacity() { return robotCapacity; }
+
+    long getRecords(int id) { return records[id]; }
+
+    long getWallHits(int id) { return wallHits[id]; }
+
+    double getDistance(int id) { return distance[id]; }
+}
@@ -0,0 +1,195 @@
+package gui;
+
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Toolkit;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.swing.UIManager;
+
+import metrics.jfr.PaintEvent;
+import metrics.jfr.SimulationTickEvent;
+
+/**
+ * Игровое поле с активной отрисовкой. Собственный поток крутит цикл
+ * симуляции с фиксированным шагом {@link GameWorld#TICK_DURATION} мс
+ * и после каждой порции шагов рисует кадр через {@link BufferStrategy},
+ * не дожидаясь очереди событий Swing. Частота кадров ограничена сверху,
+ * момент следующего кадра отсчитывается от запланированного, а не
+ * от фактического времени, поэтому кадры идут ровно.
+ */
+public class ActiveGameCanvas extends Canvas
+{
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos((long) GameWorld.TICK_DURATION);
+    private static final int MAX_CATCH_UP_TICKS = 25;
+    private static final long FRAME_STATS_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final GameWorld world;
+    private final GameRenderer renderer = new GameRenderer();
+    private final FrameStats frameStats = new FrameStats(120);
+    private final long frameNanos;
+    /** Строка статистики кадров; обновляется раз в секунду, а не в каждом кадре. */
+    private String frameStatsText = "";
+    private long frameStatsRefreshTime;
+
+    private volatile boolean showFrameStats = true;
+    private volatile Thread loopThread;
+
+    public ActiveGameCanvas(GameWorld world, int fpsCap)
+    {
+        this.world = world;
+        this.frameNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, fpsCap);
+        setIgnoreRepaint(true);
+        setBackground(UIManager.getColor("Panel.background"));
+        addMouseListener(new MouseAdapter()
+        {
+            @Override
+            public void mouseClicked(MouseEvent e)
+            {
+                world.setTargetPosition(e.getX(), e.getY());
+            }
+        });
+    }
+
+    public FrameStats getFrameStats()
+    {
+        return frameStats;
+    }
+
+    public void setShowFrameStats(boolean show)
+    {
+        showFrameStats = show;
+    }
+
+    @Override
+    public void addNotify()
+    {
+        super.addNotify();
+        Thread thread = new Thread(this::runLoop, "active render loop");
+        thread.setDaemon(true);
+        loopThread = thread;
+        thread.start();
+    }
+
+    @Override
+    public void removeNotify()
+    {
+        Thread thread = loopThread;
+        loopThread = null;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(TimeUnit.NANOSECONDS.toMillis(frameNanos) * 4);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        super.removeNotify();
+    }
+
+    private void runLoop()
+    {
+        Thread self = Thread.currentThread();
+        long lastTickTime = System.nanoTime();
+        long lastFrameStart = lastTickTime;
+        long nextFrameTime = lastTickTime;
+        long pendingSimulationNanos = 0;
+
+        while (loopThread == self && !self.isInterrupted()) {
+            long frameStart = System.nanoTime();
+            pendingSimulationNanos += frameStart - lastTickTime;
+            lastTickTime = frameStart;
+
+            world.fitFieldToView(getWidth(), getHeight());
+            SimulationTickEvent tickEvent = new SimulationTickEvent();
+            tickEvent.begin();
+            int ticks = 0;
+            while (pendingSimulationNanos >= TICK_NANOS && ticks < MAX_CATCH_UP_TICKS) {
+                world.tick();
+                pendingSimulationNanos -= TICK_NANOS;
+                ticks++;
+            }
+            if (ticks == MAX_CATCH_UP_TICKS) {
+                pendingSimulationNanos = 0;
+            }
+            tickEvent.end();
+            if (ticks > 0 && tickEvent.shouldCommit()) {
+                tickEvent.robotCount = world.getRobots().length;
+                tickEvent.substeps = ticks;
+                tickEvent.commit();
+            }
+
+            renderFrame();
+            frameStats.record(frameStart - lastFrameStart);
+            lastFrameStart = frameStart;
+
+            nextFrameTime += frameNanos;
+            long now = System.nanoTime();
+            if (nextFrameTime < now) {
+                nextFrameTime = now;
+            }
+            while (now < nextFrameTime && !self.isInterrupted()) {
+                LockSupport.parkNanos(nextFrameTime - now);
+                now = System.nanoTime();
+            }
+        }
+    }
+
+    private void renderFrame()
+    {
+        if (!isDisplayable() || getWidth() <= 0 || getHeight() <= 0) {
+            return;
+        }
+        BufferStrategy strategy = getBufferStrategy();
+        if (strategy == null) {
+            createBufferStrategy(2);
+            return;
+        }
+        PaintEvent paintEvent = new PaintEvent();
+        paintEvent.begin();
+        do {
+            do {
+                Graphics2D g = (Graphics2D) strategy.getDrawGraphics();
+                try {
+                    g.setColor(getBackground());
+                    g.fillRect(0, 0, getWidth(), getHeight());
+                    renderer.drawRobots(g, world.getRobots(), getWidth(), getHeight(), getBackground());
+                    world.getOccupancyLayer().draw(g);
+                    renderer.drawTarget(g, world.getTargetPositionX(), world.getTargetPositionY());
+                    if (showFrameStats) {
+                        drawFrameStats(g);
+                    }
+                } finally {
+                    g.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+        paintEvent.end();
+        if (paintEvent.shouldCommit()) {
+            paintEvent.dirtyArea = (long) getWidth() * getHeight();
+            paintEvent.robotsDrawn = world.getRobots().length;
+            paintEvent.commit();
+        }
+    }
+
+    private void drawFrameStats(Graphics2D g)
+    {
+        long now = System.nanoTime();
+        if (frameStatsRefreshTime == 0 || now - frameStatsRefreshTime >= FRAME_STATS_REFRESH_NANOS) {
+            frameStatsText = String.format("FPS: %.1f  кадр: %.1f мс (макс. %.1f мс)",
+                    frameStats.getFramesPerSecond(),
+                    frameStats.getAverageFrameMillis(),
+                    frameStats.getMaxFrameMillis());
+            frameStatsRefreshTime = now;
+        }
+        g.setColor(Color.BLACK);
+        g.drawString(frameStatsText, 5, 15);
+    }
+}
@@ -0,0 +1,38 @@
+package gui;
+
+/**
+ * Прежнее релейное наведение {@link GameWorld#step}: полная скорость
+ * вперед и поворот с предельной угловой скоростью в сторону, где угол
+ * на цель больше или меньше направления робота. Углы сравниваются
+ * без учета перехода через 0, поэтому робот иногда разворачивается
+ * длинным путем, а цель внутри круга разворота облетает без конца.
+ * Оставлено для сравнения и воспроизведения прежних траекторий.
+ */
+final class BangBangSteering implements SteeringController
+{
+    @Override
+    public void steer(RobotBatch batch, int from, int to, double targetX, double targetY, double duration)
+    {
+        for (int i = from; i < to; i++) {
+            double dir = batch.direction[i];
+            double diffX = targetX - batch.positionX[i];
+            double diffY = targetY - batch.positionY[i];
+            if (Math.sqrt(diffX * diffX + diffY * diffY) < ARRIVAL_DISTANCE) {
+                batch.velocity[i] = 0;
+                batch.angularVelocity[i] = 0;
+                continue;
+            }
+            double maxAngularVelocity = batch.maxAngularVelocity[i];
+            double angleToTarget = ScalarBatchStepper.normalize(Math.atan2(diffY, diffX));
+            double angularVelocity = 0;
+            if (angleToTarget > dir) {
+                angularVelocity = maxAngularVelocity;
+            }
+            if (angleToTarget < dir) {
+                angularVelocity = -maxAngularVelocity;
+            }
+            batch.velocity[i] = batch.maxVelocity[i];
+            batch.angularVelocity[i] = angularVelocity;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package gui;
+
+import log.Logger;
+
+/**
+ * Шаг симуляции для пакета роботов {@link RobotBatch}: проверка границ
+ * с отражением от стен, наведение на цель правилом {@link SteeringController}
+ * и движение по дуге - то же, что {@link GameWorld#step} делает для одного
+ * робота.
+ * <p>
+ * Реализация выбирается свойством {@value #PROPERTY}: {@code vector}
+ * (Vector API, по умолчанию, если модуль {@value #VECTOR_MODULE}
+ * подключен ключом {@code --add-modules}) или {@code scalar}.
+ */
+interface BatchStepper
+{
+    String PROPERTY = "robots.stepper";
+    String VECTOR_MODULE = "jdk.incubator.vector";
+
+    void step(RobotBatch batch, SteeringController steering, double targetX, double targetY,
+              int fieldWidth, int fieldHeight, double duration);
+
+    /**
+     * Реализация по свойству {@value #PROPERTY}; без модуля Vector API
+     * всегда скалярная.
+     */
+    static BatchStepper create()
+    {
+        return create(System.getProperty(PROPERTY, "vector"));
+    }
+
+    static BatchStepper create(String kind)
+    {
+        if ("vector".equals(kind)) {
+            if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+                // Класс загружается только при наличии модуля, иначе
+                // ссылки на jdk.incubator.vector не разрешатся.
+                try {
+                    return (BatchStepper) Class.forName("gui.VectorBatchStepper")
+                            .getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException | LinkageError e) {
+                    Logger.get("sim.physics")
+                            .error("Vector API is not usable, falling back to scalar stepping: " + e);
+                }
+            } else {
+                Logger.get("sim.physics")
+                        .debug("Модуль " + VECTOR_MODULE + " не подключен, шаг симуляции скалярный");
+            }
+        } else if (!"scalar".equals(kind)) {
+            throw new IllegalArgumentException("Unknown stepper: " + kind);
+        }
+        return new ScalarBatchStepper();
+    }
+}
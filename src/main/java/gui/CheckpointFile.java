@@ -0,0 +1,123 @@
+package gui;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Двоичный файл контрольной точки мира.
+ * <p>
+ * Формат (big-endian): сигнатура {@code RBCK}, номер версии (short),
+ * заголовок с номером шага, состоянием генератора, целью, размером поля
+ * и общими настройками роботов, число роботов, затем столбцы: все
+ * координаты X, все координаты Y, все направления и все размеры.
+ * Столбцы пишутся и читаются целиком, без разбора по роботам,
+ * поэтому восстановление сводится к одному чтению файла и нескольким
+ * копированиям массивов. Читается и записывается файл так же,
+ * как {@link SessionFile}.
+ */
+public final class CheckpointFile
+{
+    private static final int MAGIC = 0x5242434B;
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 2 + 8 + 8 + 4 * 4 + 4 + 4 + 1 + 8 * 2 + 4;
+
+    private CheckpointFile()
+    {
+    }
+
+    public static WorldCheckpoint read(Path path) throws IOException
+    {
+        ByteBuffer buffer = SessionFile.readFully(path);
+        try {
+            return decode(buffer);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupted checkpoint file " + path, e);
+        }
+    }
+
+    public static void write(Path path, WorldCheckpoint checkpoint) throws IOException
+    {
+        SessionFile.writeAtomically(path, encode(checkpoint));
+    }
+
+    static WorldCheckpoint decode(ByteBuffer buffer) throws IOException
+    {
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a checkpoint file");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported checkpoint file version " + version);
+        }
+        long tick = buffer.getLong();
+        long randomState = buffer.getLong();
+        int targetX = buffer.getInt();
+        int targetY = buffer.getInt();
+        int fieldWidth = buffer.getInt();
+        int fieldHeight = buffer.getInt();
+        int rgb = buffer.getInt();
+        float transparency = buffer.getFloat();
+        RobotShape shape = RobotShape.values()[buffer.get()];
+        double maxVelocity = buffer.getDouble();
+        double maxAngularVelocity = buffer.getDouble();
+
+        int count = buffer.getInt();
+        if (count < 0 || (long) count * (8 * 3 + 4) != buffer.remaining()) {
+            throw new IOException("Checkpoint columns do not match robot count " + count);
+        }
+        double[] positionsX = new double[count];
+        double[] positionsY = new double[count];
+        double[] directions = new double[count];
+        int[] sizes = new int[count];
+        readColumn(buffer, positionsX);
+        readColumn(buffer, positionsY);
+        readColumn(buffer, directions);
+        buffer.asIntBuffer().get(sizes);
+
+        return new WorldCheckpoint(tick, randomState, targetX, targetY, fieldWidth, fieldHeight,
+                rgb, transparency, shape, maxVelocity, maxAngularVelocity,
+                positionsX, positionsY, directions, sizes);
+    }
+
+    static ByteBuffer encode(WorldCheckpoint checkpoint)
+    {
+        int count = checkpoint.getRobotCount();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + count * (8 * 3 + 4));
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putLong(checkpoint.getTick());
+        buffer.putLong(checkpoint.getRandomState());
+        buffer.putInt(checkpoint.getTargetX());
+        buffer.putInt(checkpoint.getTargetY());
+        buffer.putInt(checkpoint.getFieldWidth());
+        buffer.putInt(checkpoint.getFieldHeight());
+        buffer.putInt(checkpoint.getRgb());
+        buffer.putFloat(checkpoint.getTransparency());
+        buffer.put((byte) checkpoint.getShape().ordinal());
+        buffer.putDouble(checkpoint.getMaxVelocity());
+        buffer.putDouble(checkpoint.getMaxAngularVelocity());
+        buffer.putInt(count);
+
+        writeColumn(buffer, checkpoint.positionsX());
+        writeColumn(buffer, checkpoint.positionsY());
+        writeColumn(buffer, checkpoint.directions());
+        buffer.asIntBuffer().put(checkpoint.sizes());
+        buffer.position(buffer.limit());
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void readColumn(ByteBuffer buffer, double[] column)
+    {
+        buffer.asDoubleBuffer().get(column);
+        buffer.position(buffer.position() + column.length * 8);
+    }
+
+    private static void writeColumn(ByteBuffer buffer, double[] column)
+    {
+        buffer.asDoubleBuffer().put(column);
+        buffer.position(buffer.position() + column.length * 8);
+    }
+}
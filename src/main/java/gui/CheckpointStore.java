@@ -0,0 +1,123 @@
+package gui;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import log.Logger;
+import log.NamedLogger;
+
+/**
+ * Каталог контрольных точек мира.
+ * <p>
+ * Снимок снимается синхронно ({@link GameWorld#checkpoint()}), а файл
+ * пишется в отдельном фоновом потоке, так что симуляция и EDT не ждут
+ * диска. Имя файла содержит номер шага и время снятия, поэтому ветки,
+ * продолженные из одной и той же точки, не затирают друг друга.
+ */
+public class CheckpointStore
+{
+    public static final String DIRECTORY_PROPERTY = "robots.checkpointDir";
+
+    private static final String PREFIX = "checkpoint-";
+    private static final String SUFFIX = ".bin";
+    private static final NamedLogger LOG = Logger.get("sim.checkpoint");
+
+    private final Path directory;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "checkpoint writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CheckpointStore()
+    {
+        this(defaultDirectory());
+    }
+
+    public CheckpointStore(Path directory)
+    {
+        this.directory = directory;
+    }
+
+    public static Path defaultDirectory()
+    {
+        String path = System.getProperty(DIRECTORY_PROPERTY);
+        if (path != null) {
+            return Paths.get(path);
+        }
+        return Paths.get(System.getProperty("user.home"), ".robots", "checkpoints");
+    }
+
+    /**
+     * Снимает контрольную точку мира и записывает ее в фоне.
+     * Возвращает путь к файлу, который появится после окончания записи.
+     */
+    public Future<Path> saveAsync(GameWorld world)
+    {
+        WorldCheckpoint checkpoint = world.checkpoint();
+        Path path = directory.resolve(String.format("%s%012d-%d%s",
+                PREFIX, checkpoint.getTick(), System.currentTimeMillis(), SUFFIX));
+        return writer.submit(() -> {
+            try {
+                CheckpointFile.write(path, checkpoint);
+                LOG.debug("Контрольная точка сохранена: шаг " + checkpoint.getTick()
+                        + ", роботов " + checkpoint.getRobotCount());
+                return path;
+            } catch (IOException e) {
+                LOG.error("Error saving checkpoint: " + e.getMessage());
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Файлы контрольных точек в порядке номера шага.
+     */
+    public List<Path> list()
+    {
+        List<Path> paths = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return paths;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path path : stream) {
+                paths.add(path);
+            }
+        } catch (IOException e) {
+            LOG.error("Error listing checkpoints: " + e.getMessage());
+        }
+        paths.sort(Comparator.comparing(path -> path.getFileName().toString()));
+        return paths;
+    }
+
+    /**
+     * Номер шага по имени файла контрольной точки или -1, если имя не подходит.
+     */
+    public static long tickOf(Path path)
+    {
+        String name = path.getFileName().toString();
+        int end = name.indexOf('-', PREFIX.length());
+        if (!name.startsWith(PREFIX) || end < 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), end));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public void restore(GameWorld world, Path path) throws IOException
+    {
+        world.restore(CheckpointFile.read(path));
+    }
+}
@@ -0,0 +1,253 @@
+package gui;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import log.Logger;
+import log.NamedLogger;
+
+/**
+ * Область жизни контроллеров роботов.
+ * <p>
+ * Все контроллеры, запущенные через {@link #fork}, принадлежат области
+ * и не переживают ее: {@link #close()} прерывает их, дожидается завершения,
+ * отсоединяет область от мира и убирает ее роботов. Если какой-либо
+ * контроллер падает с исключением, область прерывает остальные, а первая
+ * ошибка доступна через {@link #getFailure()}. Это тот же порядок владения,
+ * что у {@code StructuredTaskScope.ShutdownOnFailure}, который в JDK 21
+ * доступен только как предварительная возможность.
+ * <p>
+ * Новые контроллеры допускаются к шагам на границе шага: мир регистрирует
+ * их в барьере после применения команд и запускает их потоки сразу после
+ * того, как отпустит остальных. До этого робот стоит на поле неподвижно.
+ * <p>
+ * Каждый контроллер выполняется в своем виртуальном потоке: ожидание
+ * шага не занимает поток платформы, поэтому контроллеров могут быть
+ * сотни тысяч.
+ */
+public class ControllerScope implements AutoCloseable
+{
+    private static final NamedLogger LOG = Logger.get("sim.controllers");
+    private static final ThreadFactory THREAD_FACTORY = Thread.ofVirtual().name("robot controller ", 0).factory();
+    private static final ThreadLocal<Boolean> CONTROLLER_THREAD = new ThreadLocal<>();
+
+    private final GameWorld world;
+    private final TickBarrier barrier = new TickBarrier();
+    private final List<Thread> threads = new ArrayList<>();
+    private final List<RobotModel> robots = new ArrayList<>();
+    private final List<RobotControl> pendingControls = new ArrayList<>();
+    private final List<Thread> pendingThreads = new ArrayList<>();
+    private volatile Throwable failure;
+    private volatile boolean shutdown;
+    private final AtomicBoolean closing = new AtomicBoolean();
+    private final CompletableFuture<Void> closed = new CompletableFuture<>();
+
+    public ControllerScope(GameWorld world)
+    {
+        this.world = world;
+        world.attachControllers(this);
+    }
+
+    public GameWorld getWorld()
+    {
+        return world;
+    }
+
+    /**
+     * Добавляет на поле робота в точке (x, y) и запускает его контроллер.
+     */
+    public RobotModel fork(double x, double y, RobotController controller)
+    {
+        RobotModel robot = new RobotModel(world.getRobotSettings());
+        robot.setSize(world.getRobotModel().getSize());
+        robot.setPositionX(x);
+        robot.setPositionY(y);
+
+        if (shutdown) {
+            throw new IllegalStateException("Controller scope is closed");
+        }
+        RobotControl control = new RobotControl(robot, world, barrier);
+        robot.setControl(control);
+        Thread thread = THREAD_FACTORY.newThread(() -> runController(control, controller));
+        // Робот попадает на поле раньше, чем в списки области: закрытие,
+        // которое увидит его в списках, уберет его и с поля. Если область
+        // остановилась раньше, робота убирает сам fork.
+        world.addRobot(robot);
+        synchronized (this) {
+            if (!shutdown) {
+                threads.add(thread);
+                robots.add(robot);
+                pendingControls.add(control);
+                pendingThreads.add(thread);
+                return robot;
+            }
+        }
+        world.removeRobots(List.of(robot));
+        throw new IllegalStateException("Controller scope is closed");
+    }
+
+    /**
+     * Выполняется ли текущий поток как контроллер робота.
+     */
+    static boolean isControllerThread()
+    {
+        return CONTROLLER_THREAD.get() != null;
+    }
+
+    private void runController(RobotControl control, RobotController controller)
+    {
+        CONTROLLER_THREAD.set(Boolean.TRUE);
+        try {
+            controller.run(control);
+        } catch (InterruptedException e) {
+            // контроллер остановлен областью
+        } catch (Throwable e) {
+            if (failure == null) {
+                failure = e;
+                LOG.error("Ошибка контроллера робота: " + e);
+            }
+            shutdown();
+        } finally {
+            control.finish();
+        }
+    }
+
+    public Throwable getFailure()
+    {
+        return failure;
+    }
+
+    /**
+     * Останавливает все контроллеры, не дожидаясь их завершения:
+     * ждущие шага выйдут на границе следующего шага, а заблокированные
+     * в собственном коде получат прерывание.
+     */
+    public void shutdown()
+    {
+        synchronized (this) {
+            shutdown = true;
+        }
+        barrier.shutdown();
+        for (Thread thread : snapshotThreads()) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Остановлена ли область: после остановки в нее нельзя добавлять
+     * контроллеры, остается только закрыть ее.
+     */
+    public boolean isShutdown()
+    {
+        return shutdown;
+    }
+
+    /**
+     * Останавливает контроллеры, дожидается их завершения и убирает
+     * роботов области с поля. Закрытие ждет конца текущего шага мира
+     * и выхода всех потоков контроллеров, поэтому из потока событий
+     * лучше вызывать {@link #closeAsync()}. Повторный вызов ждет того же
+     * закрытия. Прерывание не останавливает ожидание, а только
+     * восстанавливается по его окончании.
+     */
+    @Override
+    public void close()
+    {
+        if (closing.compareAndSet(false, true)) {
+            closeNow();
+        }
+        closed.join();
+    }
+
+    /**
+     * Сразу останавливает контроллеры, а остальное закрытие ({@link #close()})
+     * выполняет в отдельном потоке. Новую область на том же мире можно
+     * создать, когда результат завершится.
+     */
+    public CompletableFuture<Void> closeAsync()
+    {
+        shutdown();
+        if (closing.compareAndSet(false, true)) {
+            Thread thread = new Thread(this::closeNow, "controller scope close");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return closed;
+    }
+
+    private void closeNow()
+    {
+        try {
+            shutdown();
+            world.detachControllers(this);
+            // Мир больше не делает шаги за контроллеры, поэтому оставшиеся
+            // шаги до их выхода проводит сама область.
+            synchronized (this) {
+                pendingControls.clear();
+                pendingThreads.clear();
+            }
+            while (barrier.hasParties()) {
+                barrier.awaitCommands();
+                barrier.completeStep();
+            }
+            boolean interrupted = false;
+            for (Thread thread : snapshotThreads()) {
+                while (true) {
+                    try {
+                        thread.join();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            List<RobotModel> ownRobots;
+            synchronized (this) {
+                ownRobots = new ArrayList<>(robots);
+                robots.clear();
+                threads.clear();
+            }
+            world.removeRobots(ownRobots);
+            closed.complete(null);
+        } catch (Throwable e) {
+            closed.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    void awaitCommands()
+    {
+        barrier.awaitCommands();
+    }
+
+    /**
+     * Завершает шаг: допускает ожидающие контроллеры и отпускает всех.
+     */
+    void completeStep()
+    {
+        Thread[] started;
+        synchronized (this) {
+            for (RobotControl control : pendingControls) {
+                control.admit(barrier.register());
+            }
+            started = pendingThreads.toArray(new Thread[0]);
+            pendingControls.clear();
+            pendingThreads.clear();
+        }
+        barrier.completeStep();
+        for (Thread thread : started) {
+            thread.start();
+        }
+    }
+
+    private synchronized Thread[] snapshotThreads()
+    {
+        return threads.toArray(new Thread[0]);
+    }
+}
@@ -0,0 +1,185 @@
+package gui;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+import javax.swing.JComponent;
+
+/**
+ * Отслеживает области панели, которые нужно перерисовать.
+ * Для каждого объекта хранится прямоугольник, в котором он был нарисован
+ * последним проходом paint, и прямоугольник его текущего положения.
+ * При сбросе перерисовывается только их объединение; если изменилось
+ * слишком много объектов или слишком большая площадь - вся панель.
+ */
+public class DirtyRegionTracker
+{
+    private final int maxDirtyRegions;
+    private final double fullRepaintAreaFraction;
+
+    private Rectangle[] painted = new Rectangle[0];
+    private Rectangle[] current = new Rectangle[0];
+    private boolean[] paintedValid = new boolean[0];
+    private boolean[] currentValid = new boolean[0];
+    private Rectangle[] dirty = new Rectangle[0];
+    private boolean fullRepaintRequested = true;
+
+    private volatile long lastFramePixels;
+    private volatile long totalPixels;
+    private volatile long frameCount;
+
+    public DirtyRegionTracker(int maxDirtyRegions, double fullRepaintAreaFraction)
+    {
+        this.maxDirtyRegions = maxDirtyRegions;
+        this.fullRepaintAreaFraction = fullRepaintAreaFraction;
+    }
+
+    /**
+     * Вызывается из paint: объект с номером slot нарисован в прямоугольнике (x, y, width, height).
+     */
+    public synchronized void painted(int slot, int x, int y, int width, int height)
+    {
+        ensureCapacity(slot);
+        if (paintedValid[slot]) {
+            painted[slot].add(x, y);
+            painted[slot].add(x + width, y + height);
+        } else {
+            painted[slot].setBounds(x, y, width, height);
+            paintedValid[slot] = true;
+        }
+    }
+
+    /**
+     * Объект с номером slot сейчас занимает прямоугольник (x, y, width, height) и должен быть
+     * перерисован при следующем сбросе.
+     */
+    public synchronized void moved(int slot, int x, int y, int width, int height)
+    {
+        ensureCapacity(slot);
+        current[slot].setBounds(x, y, width, height);
+        currentValid[slot] = true;
+    }
+
+    public synchronized void invalidateAll()
+    {
+        fullRepaintRequested = true;
+    }
+
+    /**
+     * Запрашивает перерисовку накопленных областей у компонента.
+     * Может вызываться из любого потока: {@link JComponent#repaint(int, int, int, int)}
+     * потокобезопасен.
+     */
+    public void flush(JComponent component)
+    {
+        int componentWidth = component.getWidth();
+        int componentHeight = component.getHeight();
+        long componentArea = (long) componentWidth * componentHeight;
+
+        int dirtyCount = 0;
+        boolean fullRepaint;
+        synchronized (this) {
+            if (dirty.length < current.length) {
+                dirty = Arrays.copyOf(dirty, current.length);
+                for (int i = 0; i < dirty.length; i++) {
+                    if (dirty[i] == null) {
+                        dirty[i] = new Rectangle();
+                    }
+                }
+            }
+            for (int slot = 0; slot < current.length; slot++) {
+                Rectangle region = dirty[dirtyCount];
+                if (currentValid[slot]) {
+                    region.setBounds(current[slot]);
+                    if (paintedValid[slot]) {
+                        region.add(painted[slot]);
+                    }
+                } else if (paintedValid[slot]) {
+                    region.setBounds(painted[slot]);
+                } else {
+                    continue;
+                }
+                currentValid[slot] = false;
+                paintedValid[slot] = false;
+                if (clipToComponent(region, componentWidth, componentHeight)) {
+                    dirtyCount++;
+                }
+            }
+            fullRepaint = fullRepaintRequested || dirtyCount > maxDirtyRegions;
+            fullRepaintRequested = false;
+        }
+
+        long pixels = 0;
+        for (int i = 0; i < dirtyCount && !fullRepaint; i++) {
+            pixels += (long) dirty[i].width * dirty[i].height;
+        }
+        if (pixels > componentArea * fullRepaintAreaFraction) {
+            fullRepaint = true;
+        }
+
+        if (fullRepaint) {
+            component.repaint();
+            pixels = componentArea;
+        } else {
+            for (int i = 0; i < dirtyCount; i++) {
+                component.repaint(dirty[i]);
+            }
+        }
+
+        lastFramePixels = pixels;
+        totalPixels += pixels;
+        frameCount++;
+    }
+
+    private static boolean clipToComponent(Rectangle region, int width, int height)
+    {
+        int x1 = Math.max(region.x, 0);
+        int y1 = Math.max(region.y, 0);
+        int x2 = Math.min(region.x + region.width, width);
+        int y2 = Math.min(region.y + region.height, height);
+        if (x2 <= x1 || y2 <= y1) {
+            return false;
+        }
+        region.setBounds(x1, y1, x2 - x1, y2 - y1);
+        return true;
+    }
+
+    /**
+     * Количество пикселей, запрошенных к перерисовке последним сбросом.
+     */
+    public long getLastFramePixels()
+    {
+        return lastFramePixels;
+    }
+
+    /**
+     * Среднее количество перерисованных пикселей на кадр.
+     */
+    public long getAverageFramePixels()
+    {
+        long frames = frameCount;
+        return frames == 0 ? 0 : totalPixels / frames;
+    }
+
+    public long getFrameCount()
+    {
+        return frameCount;
+    }
+
+    private void ensureCapacity(int slot)
+    {
+        if (slot < current.length) {
+            return;
+        }
+        int oldLength = current.length;
+        int newLength = Math.max(slot + 1, oldLength * 2);
+        painted = Arrays.copyOf(painted, newLength);
+        current = Arrays.copyOf(current, newLength);
+        paintedValid = Arrays.copyOf(paintedValid, newLength);
+        currentValid = Arrays.copyOf(currentValid, newLength);
+        for (int i = oldLength; i < newLength; i++) {
+            painted[i] = new Rectangle();
+            current[i] = new Rectangle();
+        }
+    }
+}
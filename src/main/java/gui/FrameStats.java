@@ -0,0 +1,56 @@
+package gui;
+
+/**
+ * Статистика длительности кадров за последние {@code windowSize} кадров:
+ * частота кадров, средняя и максимальная длительность.
+ * Записывает один поток, читать значения можно из любого.
+ */
+public class FrameStats
+{
+    private final long[] frameNanos;
+    private int nextIndex;
+    private int count;
+
+    private volatile double framesPerSecond;
+    private volatile double averageFrameMillis;
+    private volatile double maxFrameMillis;
+
+    public FrameStats(int windowSize)
+    {
+        this.frameNanos = new long[windowSize];
+    }
+
+    public void record(long nanos)
+    {
+        frameNanos[nextIndex] = nanos;
+        nextIndex = (nextIndex + 1) % frameNanos.length;
+        if (count < frameNanos.length) {
+            count++;
+        }
+
+        long total = 0;
+        long max = 0;
+        for (int i = 0; i < count; i++) {
+            total += frameNanos[i];
+            max = Math.max(max, frameNanos[i]);
+        }
+        averageFrameMillis = total / 1e6 / count;
+        maxFrameMillis = max / 1e6;
+        framesPerSecond = total == 0 ? 0 : count * 1e9 / total;
+    }
+
+    public double getFramesPerSecond()
+    {
+        return framesPerSecond;
+    }
+
+    public double getAverageFrameMillis()
+    {
+        return averageFrameMillis;
+    }
+
+    public double getMaxFrameMillis()
+    {
+        return maxFrameMillis;
+    }
+}
@@ -0,0 +1,124 @@
+package gui;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Отрисовка объектов игрового поля. Общая для пассивной отрисовки
+ * через {@link GameVisualizer#paint} и активной через {@link ActiveGameCanvas}.
+ */
+public class GameRenderer
+{
+    public static final int TARGET_DIAMETER = 5;
+    public static final int BOUNDS_MARGIN = 2;
+    /**
+     * До этого количества роботов каждый рисуется своим спрайтом,
+     * дальше включается пакетная отрисовка.
+     */
+    public static final int SPRITE_LIMIT = 64;
+
+    private final RobotSpriteCache spriteCache = new RobotSpriteCache(8);
+    private final RobotBatchRenderer batchRenderer = new RobotBatchRenderer();
+
+    static int round(double value)
+    {
+        return (int)(value + 0.5);
+    }
+
+    private static void fillOval(Graphics g, int centerX, int centerY, int diam1, int diam2)
+    {
+        g.fillOval(centerX - diam1 / 2, centerY - diam2 / 2, diam1, diam2);
+    }
+
+    private static void drawOval(Graphics g, int centerX, int centerY, int diam1, int diam2)
+    {
+        g.drawOval(centerX - diam1 / 2, centerY - diam2 / 2, diam1, diam2);
+    }
+
+    /**
+     * Половина ширины повернутого ограничивающего прямоугольника робота.
+     * Треугольник выступает вверх на полную высоту, поэтому по вертикали
+     * берется высота целиком, а не ее половина.
+     */
+    static int robotExtentX(double direction, int size)
+    {
+        double halfWidth = size / 2.0;
+        double height = size / 3;
+        return (int) Math.ceil(Math.abs(Math.cos(direction)) * halfWidth
+                + Math.abs(Math.sin(direction)) * height) + BOUNDS_MARGIN;
+    }
+
+    static int robotExtentY(double direction, int size)
+    {
+        double halfWidth = size / 2.0;
+        double height = size / 3;
+        return (int) Math.ceil(Math.abs(Math.sin(direction)) * halfWidth
+                + Math.abs(Math.cos(direction)) * height) + BOUNDS_MARGIN;
+    }
+
+    public void drawRobot(Graphics2D g, RobotModel robotModel)
+    {
+        int robotCenterX = round(robotModel.getPositionX());
+        int robotCenterY = round(robotModel.getPositionY());
+        BufferedImage sprite = spriteCache.getSprite(robotModel.getProfile(), robotModel.getSize(),
+                robotModel.getDirection());
+        g.drawImage(sprite, robotCenterX - sprite.getWidth() / 2, robotCenterY - sprite.getHeight() / 2, null);
+    }
+
+    /**
+     * Рисует всех роботов, выбирая способ по их количеству: спрайты,
+     * составные пути по группам или прямую запись в растр размером
+     * width x height. В растровом режиме растр перекрывает поле целиком
+     * и заливается цветом background.
+     */
+    public void drawRobots(Graphics2D g, RobotModel[] robots, int width, int height, Color background)
+    {
+        drawRobots(g, robots, robots.length, ViewCamera.IDENTITY, width, height, background);
+    }
+
+    /**
+     * Рисует первых count роботов массива в виде camera на панели
+     * width x height; контекст g - в экранных координатах. Способ
+     * выбирается так же, как для всех роботов, но спрайты - только
+     * в исходном масштабе, а если роботы на экране меньше
+     * {@link RobotBatchRenderer#DOT_LENGTH} пикселей (роботы поля одного
+     * размера, поэтому смотрится первый), они рисуются в растр точками.
+     */
+    public void drawRobots(Graphics2D g, RobotModel[] robots, int count, ViewCamera camera,
+                           int width, int height, Color background)
+    {
+        if (count == 0) {
+            return;
+        }
+        if (count >= RobotBatchRenderer.RASTER_THRESHOLD
+                || robots[0].getSize() * camera.getScale() < RobotBatchRenderer.DOT_LENGTH) {
+            batchRenderer.drawRaster(g, robots, count, camera, width, height, background);
+            return;
+        }
+        Graphics2D view = camera.isIdentity() ? g : (Graphics2D) g.create();
+        try {
+            camera.applyTo(view);
+            if (count <= SPRITE_LIMIT && camera.getScale() == 1) {
+                for (int i = 0; i < count; i++) {
+                    drawRobot(view, robots[i]);
+                }
+            } else {
+                batchRenderer.drawPaths(view, robots, count);
+            }
+        } finally {
+            if (view != g) {
+                view.dispose();
+            }
+        }
+    }
+
+    public void drawTarget(Graphics2D g, int x, int y)
+    {
+        g.setColor(Color.GREEN);
+        fillOval(g, x, y, TARGET_DIAMETER, TARGET_DIAMETER);
+        g.setColor(Color.BLACK);
+        drawOval(g, x, y, TARGET_DIAMETER, TARGET_DIAMETER);
+    }
+}
@@ -5,230 +5,394 @@ import java.awt.EventQueue;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.awt.geom.AffineTransform;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.JPanel;
 
+import metrics.Counter;
+import metrics.LatencyHistogram;
+import metrics.MetricsRegistry;
+import metrics.jfr.PaintEvent;
+import metrics.jfr.SimulationTickEvent;
+
+import static gui.GameRenderer.BOUNDS_MARGIN;
+import static gui.GameRenderer.TARGET_DIAMETER;
+import static gui.GameRenderer.round;
+
+/**
+ * Панель игрового поля с видом ({@link ViewCamera}) на мир: колесо мыши
+ * меняет масштаб вокруг указателя, перетаскивание сдвигает вид, щелчок
+ * ставит цель в точку мира под указателем. Рисуются только роботы,
+ * которые могут попасть в перерисовываемую область, - их находит
+ * пространственный индекс мира, поэтому стоимость кадра зависит от числа
+ * видимых роботов, а не от размера роя.
+ */
 public class GameVisualizer extends JPanel
 {
-    private final Timer m_timer = initTimer();
-    private final RobotModel robotModel;
+    private static final int TARGET_SLOT = 0;
+    private static final int HUD_SLOT = 1;
+    private static final int FIRST_ROBOT_SLOT = 2;
+    private static final int MAX_TRACKED_ROBOTS = 32;
+    private static final long TICK_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos((long) GameWorld.TICK_DURATION);
+    private static final int TICKS_PER_REDRAW = 5;
+    private static final Counter TICKS = MetricsRegistry.getDefault().counter("simulation.ticks");
+    private static final LatencyHistogram TICK_NANOS = MetricsRegistry.getDefault().histogram("simulation.tick");
+    private static final Counter FRAMES = MetricsRegistry.getDefault().counter("render.frames");
+    private static final LatencyHistogram PAINT_NANOS = MetricsRegistry.getDefault().histogram("render.paint");
+    private static final double ZOOM_STEP = 1.25;
+
+    private SimulationScheduler.Task simulation;
+    private int ticksSinceRedraw;
+    private final GameWorld world;
+    private final GameRenderer renderer = new GameRenderer();
+    private final DirtyRegionTracker dirtyRegions = new DirtyRegionTracker(32, 0.5);
+    private final PerformanceHud hud = new PerformanceHud();
+    private final Runnable flushDirtyRegions = this::flushDirtyRegions;
+    private volatile long redrawPostedAt;
+    private int lastRobotCount;
+    private volatile ViewCamera camera = ViewCamera.IDENTITY;
+    private RobotModel[] visibleRobots = new RobotModel[64];
+    private int visibleCount;
 
-    private static Timer initTimer()
+    public GameVisualizer()
     {
-        Timer timer = new Timer("events generator", true);
-        return timer;
+        this(new GameWorld());
     }
 
-    private volatile int m_targetPositionX = 150;
-    private volatile int m_targetPositionY = 100;
-
-    public GameVisualizer()
+    public GameVisualizer(GameWorld world)
     {
-        this.robotModel = new RobotModel();
-        m_timer.schedule(new TimerTask()
+        this.world = world;
+        world.setSpatialIndexEnabled(true);
+        MouseAdapter mouse = new MouseAdapter()
         {
+            private Point dragFrom;
+
             @Override
-            public void run()
+            public void mouseClicked(MouseEvent e)
             {
-                onRedrawEvent();
+                setTargetPosition(e.getPoint());
+                repaint();
             }
-        }, 0, 50);
-        m_timer.schedule(new TimerTask()
-        {
+
             @Override
-            public void run()
+            public void mousePressed(MouseEvent e)
             {
-                onModelUpdateEvent();
+                dragFrom = e.getPoint();
             }
-        }, 0, 10);
-        addMouseListener(new MouseAdapter()
-        {
+
             @Override
-            public void mouseClicked(MouseEvent e)
+            public void mouseReleased(MouseEvent e)
             {
-                setTargetPosition(e.getPoint());
-                repaint();
+                dragFrom = null;
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e)
+            {
+                if (dragFrom != null) {
+                    setCamera(camera.panned(e.getX() - dragFrom.x, e.getY() - dragFrom.y));
+                    dragFrom = e.getPoint();
+                }
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e)
+            {
+                setCamera(camera.zoomedAt(e.getX(), e.getY(),
+                        Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation())));
             }
-        });
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
         setDoubleBuffered(true);
     }
 
-    public void setRobotSize(int size) {
-        robotModel.setSize(size);
+    public ViewCamera getCamera() {
+        return camera;
+    }
+
+    public void setCamera(ViewCamera camera) {
+        this.camera = camera;
+        dirtyRegions.invalidateAll();
         repaint();
     }
 
-    public RobotSettings getRobotSettings() {
-        return robotModel.getSettings();
+    /**
+     * Исходный вид: мир в масштабе 1:1 от левого верхнего угла.
+     */
+    public void resetCamera() {
+        setCamera(ViewCamera.IDENTITY);
     }
 
-    public RobotModel getRobotModel() {
-        return robotModel;
+    /**
+     * Вид, в который помещается весь мир.
+     */
+    public void fitWorldToView() {
+        setCamera(ViewCamera.fit(world.getFieldWidth(), world.getFieldHeight(), getWidth(), getHeight()));
     }
 
-    protected void setTargetPosition(Point p)
+    /**
+     * Шаги симуляции и перерисовки выполняет общий
+     * {@link SimulationScheduler}: задача ставится, когда панель попадает
+     * в отображаемую иерархию окон, и приостанавливается, когда панель
+     * из нее убирают (в том числе при сворачивании окна).
+     */
+    @Override
+    public void addNotify()
     {
-        m_targetPositionX = p.x;
-        m_targetPositionY = p.y;
+        super.addNotify();
+        setSimulationPaused(false);
     }
 
-    protected void onRedrawEvent()
+    @Override
+    public void removeNotify()
     {
-        EventQueue.invokeLater(this::repaint);
+        setSimulationPaused(true);
+        super.removeNotify();
     }
 
-    private static double distance(double x1, double y1, double x2, double y2)
+    /**
+     * Приостанавливает или возобновляет симуляцию этого поля.
+     */
+    public void setSimulationPaused(boolean paused)
     {
-        double diffX = x1 - x2;
-        double diffY = y1 - y2;
-        return Math.sqrt(diffX * diffX + diffY * diffY);
+        if (simulation == null || simulation.isCancelled()) {
+            if (paused) {
+                return;
+            }
+            simulation = SimulationScheduler.getDefault().schedule(
+                    "game field", this::onSimulationTick, TICK_PERIOD_NANOS);
+        } else if (paused) {
+            simulation.pause();
+        } else {
+            simulation.resume();
+        }
     }
 
-    private static double angleTo(double fromX, double fromY, double toX, double toY)
+    /**
+     * Снимает поле с планировщика; вызывается, когда окно закрыто.
+     */
+    public void releaseSimulation()
     {
-        double diffX = toX - fromX;
-        double diffY = toY - fromY;
-
-        return asNormalizedRadians(Math.atan2(diffY, diffX));
+        if (simulation != null) {
+            simulation.cancel();
+            simulation = null;
+        }
     }
 
-    protected void onModelUpdateEvent()
+    private void onSimulationTick()
     {
-        checkBoundaries();
-        double distance = distance(m_targetPositionX, m_targetPositionY,
-                robotModel.getPositionX(), robotModel.getPositionY());
-        if (distance < 0.5)
-        {
-            return;
-        }
-        double velocity = robotModel.getSettings().getMaxVelocity();
-        double angleToTarget = angleTo(robotModel.getPositionX(), robotModel.getPositionY(), m_targetPositionX, m_targetPositionY);
-        double angularVelocity = 0;
-        if (angleToTarget > robotModel.getDirection())
-        {
-            angularVelocity = robotModel.getSettings().getMaxAngularVelocity();
-        }
-        if (angleToTarget < robotModel.getDirection())
-        {
-            angularVelocity = -robotModel.getSettings().getMaxAngularVelocity();
+        onModelUpdateEvent();
+        if (ticksSinceRedraw++ % TICKS_PER_REDRAW == 0) {
+            onRedrawEvent();
         }
+    }
 
-        robotModel.move(velocity, angularVelocity, 10);
+    public void setRobotSize(int size) {
+        world.setRobotSize(size);
+        repaint();
     }
 
-    private static int round(double value)
-    {
-        return (int)(value + 0.5);
+    public RobotSettings getRobotSettings() {
+        return world.getRobotSettings();
     }
 
-    private static void fillOval(Graphics g, int centerX, int centerY, int diam1, int diam2)
-    {
-        g.fillOval(centerX - diam1 / 2, centerY - diam2 / 2, diam1, diam2);
+    public RobotModel getRobotModel() {
+        return world.getRobotModel();
+    }
+
+    public GameWorld getWorld() {
+        return world;
+    }
+
+    public DirtyRegionTracker getDirtyRegions() {
+        return dirtyRegions;
+    }
+
+    public PerformanceHud getPerformanceHud() {
+        return hud;
+    }
+
+    public void setPerformanceHudEnabled(boolean enabled) {
+        hud.setEnabled(enabled);
+        dirtyRegions.invalidateAll();
+        repaint();
     }
 
-    private static void drawOval(Graphics g, int centerX, int centerY, int diam1, int diam2)
+    protected void setTargetPosition(Point p)
     {
-        g.drawOval(centerX - diam1 / 2, centerY - diam2 / 2, diam1, diam2);
+        ViewCamera view = camera;
+        world.setTargetPosition((int) Math.round(view.toWorldX(p.x)), (int) Math.round(view.toWorldY(p.y)));
     }
 
-    private void drawRobot(Graphics2D g) {
-        int robotCenterX = round(robotModel.getPositionX());
-        int robotCenterY = round(robotModel.getPositionY());
-        double direction = robotModel.getDirection();
-        AffineTransform t = AffineTransform.getRotateInstance(direction, robotCenterX, robotCenterY);
-        g.setTransform(t);
-        g.setColor(robotModel.getSettings().getRobotColor());
-
-        int width = robotModel.getSize();
-        int height = robotModel.getSize() / 3;
-
-        switch (robotModel.getSettings().getShape()) {
-            case OVAL:
-                fillOval(g, robotCenterX, robotCenterY, width, height);
-                break;
-            case RECTANGLE:
-                g.fillRect(robotCenterX - width/2, robotCenterY - height/2, width, height);
-                break;
-            case TRIANGLE:
-                int[] xPoints = {robotCenterX, robotCenterX + width/2, robotCenterX - width/2};
-                int[] yPoints = {robotCenterY - height, robotCenterY + height/2, robotCenterY + height/2};
-                g.fillPolygon(xPoints, yPoints, 3);
-                break;
+    protected void onRedrawEvent()
+    {
+        RobotModel[] robots = world.getRobots();
+        if (robots.length > MAX_TRACKED_ROBOTS || robots.length != lastRobotCount
+                || world.getOccupancyLayer().isVisible() || !camera.isIdentity()) {
+            lastRobotCount = robots.length;
+            dirtyRegions.invalidateAll();
+        } else {
+            for (int i = 0; i < robots.length; i++) {
+                markRobotMoved(FIRST_ROBOT_SLOT + i, robots[i]);
+            }
+            markTargetMoved();
         }
-
-        g.setColor(Color.BLACK);
-        switch (robotModel.getSettings().getShape()) {
-            case OVAL:
-                drawOval(g, robotCenterX, robotCenterY, width, height);
-                break;
-            case RECTANGLE:
-                g.drawRect(robotCenterX - width/2, robotCenterY - height/2, width, height);
-                break;
-            case TRIANGLE:
-                int[] xPoints = {robotCenterX, robotCenterX + width/2, robotCenterX - width/2};
-                int[] yPoints = {robotCenterY - height, robotCenterY + height/2, robotCenterY + height/2};
-                g.drawPolygon(xPoints, yPoints, 3);
-                break;
+        if (hud.isEnabled()) {
+            dirtyRegions.moved(HUD_SLOT, 0, 0, PerformanceHud.WIDTH, PerformanceHud.HEIGHT);
         }
+        redrawPostedAt = hud.start();
+        EventQueue.invokeLater(flushDirtyRegions);
+    }
 
-        g.setColor(Color.WHITE);
-        fillOval(g, robotCenterX + width/3, robotCenterY, 5, 5);
-        g.setColor(Color.BLACK);
-        drawOval(g, robotCenterX + width/3, robotCenterY, 5, 5);
+    private void flushDirtyRegions()
+    {
+        hud.recordEdtLatency(redrawPostedAt);
+        dirtyRegions.flush(this);
     }
 
-    private void drawTarget(Graphics2D g, int x, int y)
+    private void markRobotMoved(int slot, RobotModel robotModel)
     {
-        AffineTransform t = AffineTransform.getRotateInstance(0, 0, 0);
-        g.setTransform(t);
-        g.setColor(Color.GREEN);
-        fillOval(g, x, y, 5, 5);
-        g.setColor(Color.BLACK);
-        drawOval(g, x, y, 5, 5);
-    }
-
-    private void checkBoundaries() {
-        int panelWidth = getWidth();
-        int panelHeight = getHeight();
-        double robotSize = robotModel.getSize();
-
-        if (robotModel.getPositionX() < robotSize /2) {
-            robotModel.setDirection(Math.PI - robotModel.getDirection());
-            robotModel.setPositionX(robotSize /2);
+        int centerX = round(robotModel.getPositionX());
+        int centerY = round(robotModel.getPositionY());
+        int extentX = GameRenderer.robotExtentX(robotModel.getDirection(), robotModel.getSize());
+        int extentY = GameRenderer.robotExtentY(robotModel.getDirection(), robotModel.getSize());
+        dirtyRegions.moved(slot, centerX - extentX, centerY - extentY, 2 * extentX + 1, 2 * extentY + 1);
+    }
+
+    private void markTargetMoved()
+    {
+        int extent = TARGET_DIAMETER / 2 + BOUNDS_MARGIN;
+        dirtyRegions.moved(TARGET_SLOT, world.getTargetPositionX() - extent, world.getTargetPositionY() - extent,
+                2 * extent + 1, 2 * extent + 1);
+    }
+
+    protected void onModelUpdateEvent()
+    {
+        world.fitFieldToView(getWidth(), getHeight());
+        SimulationTickEvent event = new SimulationTickEvent();
+        event.begin();
+        long startTime = System.nanoTime();
+        world.tick();
+        long elapsed = System.nanoTime() - startTime;
+        TICKS.increment();
+        TICK_NANOS.record(elapsed);
+        hud.recordTick(elapsed);
+        event.end();
+        if (event.shouldCommit()) {
+            event.robotCount = world.getRobots().length;
+            event.substeps = 1;
+            event.commit();
         }
-        else if (robotModel.getPositionX() > panelWidth - robotSize /2) {
-            robotModel.setDirection(Math.PI - robotModel.getDirection());
-            robotModel.setPositionX(panelWidth - robotSize/2);
+    }
+
+    /**
+     * Области экрана, отслеживаемые {@link DirtyRegionTracker}, совпадают
+     * с мировыми только в исходном виде; в остальных перерисовывается
+     * вся панель, и отмечать нарисованное не нужно.
+     */
+    private void drawRobots(Graphics2D g, ViewCamera view) {
+        RobotModel[] robots = world.getRobots();
+        if (robots.length <= MAX_TRACKED_ROBOTS && view.isIdentity()) {
+            for (int i = 0; i < robots.length; i++) {
+                markRobotPainted(FIRST_ROBOT_SLOT + i, robots[i]);
+            }
         }
+        renderer.drawRobots(g, visibleRobots, visibleCount, view, getWidth(), getHeight(), getBackground());
+    }
 
-        if (robotModel.getPositionY() < robotSize/2) {
-            robotModel.setDirection(-robotModel.getDirection());
-            robotModel.setPositionY(robotSize/2);
+    /**
+     * Находит по пространственному индексу мира роботов, которые могут
+     * попасть в область экрана clip, и складывает их в {@link #visibleRobots}.
+     */
+    private void findVisibleRobots(ViewCamera view, Rectangle clip) {
+        int previousCount = visibleCount;
+        SpatialGrid index = world.getSpatialIndex();
+        if (index == null) {
+            RobotModel[] robots = world.getRobots();
+            if (visibleRobots.length < robots.length) {
+                visibleRobots = new RobotModel[robots.length];
+            }
+            System.arraycopy(robots, 0, visibleRobots, 0, robots.length);
+            visibleCount = robots.length;
+        } else {
+            Rectangle2D.Double area = clip != null
+                    ? view.toWorld(clip.x, clip.y, clip.width, clip.height)
+                    : view.toWorld(0, 0, getWidth(), getHeight());
+            int found;
+            while ((found = index.query(area.getMinX(), area.getMinY(), area.getMaxX(), area.getMaxY(),
+                    visibleRobots)) > visibleRobots.length) {
+                visibleRobots = new RobotModel[found + found / 2];
+            }
+            visibleCount = found;
         }
-        else if (robotModel.getPositionY() > panelHeight - robotSize/2) {
-            robotModel.setDirection(-robotModel.getDirection());
-            robotModel.setPositionY(panelHeight - robotSize/2);
+        if (visibleCount < previousCount) {
+            Arrays.fill(visibleRobots, visibleCount, Math.min(previousCount, visibleRobots.length), null);
         }
+    }
 
-        robotModel.setDirection(asNormalizedRadians(robotModel.getDirection()));
+    private void markRobotPainted(int slot, RobotModel robotModel) {
+        int robotCenterX = round(robotModel.getPositionX());
+        int robotCenterY = round(robotModel.getPositionY());
+        double direction = robotModel.getDirection();
+        int extentX = GameRenderer.robotExtentX(direction, robotModel.getSize());
+        int extentY = GameRenderer.robotExtentY(direction, robotModel.getSize());
+        dirtyRegions.painted(slot, robotCenterX - extentX, robotCenterY - extentY,
+                2 * extentX + 1, 2 * extentY + 1);
     }
 
-    private static double asNormalizedRadians(double angle) {
-        while (angle < 0) angle += 2*Math.PI;
-        while (angle >= 2*Math.PI) angle -= 2*Math.PI;
-        return angle;
+    private void drawTarget(Graphics2D g, int x, int y)
+    {
+        renderer.drawTarget(g, x, y);
+        int extent = TARGET_DIAMETER / 2 + BOUNDS_MARGIN;
+        dirtyRegions.painted(TARGET_SLOT, x - extent, y - extent, 2 * extent + 1, 2 * extent + 1);
     }
 
     @Override
     public void paint(Graphics g) {
+        PaintEvent event = new PaintEvent();
+        event.begin();
+        long startTime = System.nanoTime();
         super.paint(g);
         Graphics2D g2d = (Graphics2D)g;
-        drawRobot(g2d);
-        drawTarget(g2d, m_targetPositionX, m_targetPositionY);
+        ViewCamera view = camera;
+        findVisibleRobots(view, g.getClipBounds());
+        drawRobots(g2d, view);
+        Graphics2D worldGraphics = view.isIdentity() ? g2d : (Graphics2D) g2d.create();
+        try {
+            view.applyTo(worldGraphics);
+            world.getOccupancyLayer().draw(worldGraphics);
+            if (world.isWorldSizeFixed()) {
+                worldGraphics.setColor(Color.GRAY);
+                worldGraphics.drawRect(0, 0, world.getFieldWidth(), world.getFieldHeight());
+            }
+            drawTarget(worldGraphics, world.getTargetPositionX(), world.getTargetPositionY());
+        } finally {
+            if (worldGraphics != g2d) {
+                worldGraphics.dispose();
+            }
+        }
+        long elapsed = System.nanoTime() - startTime;
+        FRAMES.increment();
+        PAINT_NANOS.record(elapsed);
+        hud.recordPaint(elapsed);
+        event.end();
+        if (event.shouldCommit()) {
+            Rectangle clip = g.getClipBounds();
+            event.dirtyArea = clip != null ? (long) clip.width * clip.height : (long) getWidth() * getHeight();
+            event.robotsDrawn = visibleCount;
+            event.commit();
+        }
+        if (hud.isEnabled()) {
+            hud.draw(g2d, dirtyRegions);
+            dirtyRegions.painted(HUD_SLOT, 0, 0, PerformanceHud.WIDTH, PerformanceHud.HEIGHT);
+        }
     }
 }
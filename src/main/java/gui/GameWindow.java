@@ -4,22 +4,120 @@ import java.awt.BorderLayout;
 
 import javax.swing.JInternalFrame;
 import javax.swing.JPanel;
+import javax.swing.event.InternalFrameAdapter;
+import javax.swing.event.InternalFrameEvent;
 
 @PersistWindowState
 public class GameWindow extends JInternalFrame
 {
-    private final GameVisualizer m_visualizer;
+    /**
+     * Включает активную отрисовку игрового поля ({@link ActiveGameCanvas})
+     * вместо отрисовки через {@code repaint()}.
+     */
+    public static final String ACTIVE_RENDERING_PROPERTY = "robots.activeRendering";
+    /**
+     * Верхний предел частоты кадров при активной отрисовке.
+     */
+    public static final String FPS_CAP_PROPERTY = "robots.fpsCap";
+
+    private final GameWorld m_world = new GameWorld();
+    private final boolean m_activeRendering;
+    private final JPanel m_panel = new JPanel(new BorderLayout());
+    private GameVisualizer m_visualizer;
+    private ActiveGameCanvas m_canvas;
+    private boolean m_performanceHudEnabled;
+
     public GameWindow()
+    {
+        this(Boolean.getBoolean(ACTIVE_RENDERING_PROPERTY));
+    }
+
+    /**
+     * Панель отрисовки создается не здесь, а при первом показе
+     * несвернутого окна, вместе с ней запускаются таймеры симуляции.
+     */
+    public GameWindow(boolean activeRendering)
     {
         super("Игровое поле", true, true, true, true);
-        m_visualizer = new GameVisualizer();
-        JPanel panel = new JPanel(new BorderLayout());
-        panel.add(m_visualizer, BorderLayout.CENTER);
-        getContentPane().add(panel);
+        m_activeRendering = activeRendering;
+        getContentPane().add(m_panel);
+        LazyFrameContent.install(this, this::createContent);
+        addInternalFrameListener(new SimulationLifecycle());
         pack();
     }
 
+    /**
+     * Свернутое окно не тратит потоки планировщика симуляции,
+     * закрытое снимается с него совсем.
+     */
+    private class SimulationLifecycle extends InternalFrameAdapter
+    {
+        @Override
+        public void internalFrameIconified(InternalFrameEvent e)
+        {
+            if (m_visualizer != null) {
+                m_visualizer.setSimulationPaused(true);
+            }
+        }
+
+        @Override
+        public void internalFrameDeiconified(InternalFrameEvent e)
+        {
+            if (m_visualizer != null && m_visualizer.isDisplayable()) {
+                m_visualizer.setSimulationPaused(false);
+            }
+        }
+
+        @Override
+        public void internalFrameClosed(InternalFrameEvent e)
+        {
+            if (m_visualizer != null) {
+                m_visualizer.releaseSimulation();
+            }
+        }
+    }
+
+    private void createContent()
+    {
+        if (m_activeRendering) {
+            m_canvas = new ActiveGameCanvas(m_world, Integer.getInteger(FPS_CAP_PROPERTY, 60));
+            m_panel.add(m_canvas, BorderLayout.CENTER);
+        } else {
+            m_visualizer = new GameVisualizer(m_world);
+            m_visualizer.setPerformanceHudEnabled(m_performanceHudEnabled);
+            m_panel.add(m_visualizer, BorderLayout.CENTER);
+        }
+    }
+
+    /**
+     * Включает панель показателей производительности. Если панель
+     * отрисовки еще не создана, настройка применится при ее создании.
+     */
+    public void setPerformanceHudEnabled(boolean enabled)
+    {
+        m_performanceHudEnabled = enabled;
+        if (m_visualizer != null) {
+            m_visualizer.setPerformanceHudEnabled(enabled);
+        }
+    }
+
+    public GameWorld getWorld() {
+        return m_world;
+    }
+
+    /**
+     * @return панель пассивной отрисовки или {@code null} в режиме активной отрисовки
+     * или пока окно еще не показывалось
+     */
     public GameVisualizer getVisualizer() {
         return m_visualizer;
     }
+
+    /**
+     * @return холст активной отрисовки или {@code null} в пассивном режиме
+     * или пока окно еще не показывалось
+     */
+    public ActiveGameCanvas getActiveCanvas() {
+        return m_canvas;
+    }
 }
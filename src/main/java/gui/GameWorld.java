@@ -0,0 +1,567 @@
+package gui;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import telemetry.TelemetryRing;
+
+/**
+ * Состояние игрового поля: роботы, цель и размеры поля,
+ * а также один шаг симуляции. Не зависит от способа отрисовки,
+ * поэтому может обновляться как таймером {@link GameVisualizer},
+ * так и потоком активной отрисовки {@link ActiveGameCanvas}.
+ * <p>
+ * Шаг симуляции, изменение состава роботов, снятие контрольной точки
+ * и восстановление из нее выполняются под монитором мира, поэтому
+ * контрольная точка всегда соответствует границе между шагами.
+ * Команд контроллеров роботов шаг ждет без монитора (см. {@link #tick()}).
+ */
+public class GameWorld
+{
+    public static final double TICK_DURATION = 10;
+
+    private static final BatchStepper DEFAULT_STEPPER = BatchStepper.create();
+    private static final SteeringController DEFAULT_STEERING = SteeringController.create();
+
+    private final RobotModel robotModel = new RobotModel();
+    /** Упорядочивает шаги и подключение контроллеров; берется до монитора мира. */
+    private final Object stepLock = new Object();
+    private long randomState = System.nanoTime();
+    private long tickCount;
+    private volatile RobotModel[] robots = {robotModel};
+    private final OccupancyLayer occupancyLayer = new OccupancyLayer();
+    private SpatialGrid spatialIndex = new SpatialGrid();
+    private SpatialGrid spareSpatialIndex = new SpatialGrid();
+    private volatile SpatialGrid publishedSpatialIndex;
+    private final RobotBatch batch = new RobotBatch();
+    private BatchStepper stepper = DEFAULT_STEPPER;
+    private SteeringController steering = DEFAULT_STEERING;
+
+    private volatile int m_targetPositionX = 150;
+    private volatile int m_targetPositionY = 100;
+    private volatile int fieldWidth;
+    private volatile int fieldHeight;
+    private volatile boolean fieldSizeFixed;
+    private volatile ControllerScope controllers;
+    private volatile TelemetryRing telemetry;
+
+    public RobotModel getRobotModel() {
+        return robotModel;
+    }
+
+    public RobotSettings getRobotSettings() {
+        return robotModel.getSettings();
+    }
+
+    /**
+     * Все роботы поля; первый из них - основной робот {@link #getRobotModel()}.
+     * Возвращается внутренний массив, изменять его нельзя: при добавлении
+     * роботов массив заменяется целиком.
+     */
+    public RobotModel[] getRobots() {
+        return robots;
+    }
+
+    /**
+     * Слой тепловой карты и следов. Заполняется только пока он включен.
+     */
+    public OccupancyLayer getOccupancyLayer() {
+        return occupancyLayer;
+    }
+
+    public void setRobotSize(int size) {
+        for (RobotModel robot : robots) {
+            robot.setSize(size);
+        }
+    }
+
+    /**
+     * Добавляет на поле рой роботов в случайных точках со случайным направлением.
+     * Роботы роя разделяют настройки основного робота.
+     */
+    public synchronized void spawnRobots(int count)
+    {
+        RobotModel[] current = robots;
+        RobotModel[] updated = Arrays.copyOf(current, current.length + count);
+        int width = Math.max(1, fieldWidth);
+        int height = Math.max(1, fieldHeight);
+        for (int i = current.length; i < updated.length; i++) {
+            RobotModel robot = new RobotModel(robotModel.getSettings());
+            robot.setSize(robotModel.getSize());
+            robot.setPositionX(nextRandomDouble() * width);
+            robot.setPositionY(nextRandomDouble() * height);
+            robot.setDirection(nextRandomDouble() * 2 * Math.PI);
+            updated[i] = robot;
+        }
+        robots = updated;
+    }
+
+    /**
+     * Добавляет на поле одного робота.
+     */
+    public synchronized void addRobot(RobotModel robot)
+    {
+        RobotModel[] current = robots;
+        RobotModel[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = robot;
+        robots = updated;
+    }
+
+    /**
+     * Убирает с поля перечисленных роботов; основной робот не убирается.
+     */
+    public synchronized void removeRobots(Collection<RobotModel> toRemove)
+    {
+        Set<RobotModel> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        removed.addAll(toRemove);
+        List<RobotModel> kept = new ArrayList<>(robots.length);
+        for (RobotModel robot : robots) {
+            if (robot == robotModel || !removed.contains(robot)) {
+                kept.add(robot);
+            }
+        }
+        robots = kept.toArray(new RobotModel[0]);
+    }
+
+    /**
+     * Подключает область контроллеров: каждый шаг мир сначала ждет
+     * их команд. Одновременно подключена может быть только одна область.
+     */
+    void attachControllers(ControllerScope scope)
+    {
+        synchronized (stepLock) {
+            if (controllers != null) {
+                throw new IllegalStateException("Controllers are already attached");
+            }
+            controllers = scope;
+        }
+    }
+
+    /**
+     * Отключает область контроллеров. Дожидается конца текущего шага,
+     * поэтому после возврата мир больше не ждет команд этой области.
+     */
+    void detachControllers(ControllerScope scope)
+    {
+        synchronized (stepLock) {
+            if (controllers == scope) {
+                controllers = null;
+            }
+        }
+    }
+
+    /**
+     * Убирает с поля все роботы, кроме основного.
+     */
+    public synchronized void removeSpawnedRobots()
+    {
+        robots = new RobotModel[] {robotModel};
+    }
+
+    public int getTargetPositionX() {
+        return m_targetPositionX;
+    }
+
+    public int getTargetPositionY() {
+        return m_targetPositionY;
+    }
+
+    public void setTargetPosition(int x, int y)
+    {
+        m_targetPositionX = x;
+        m_targetPositionY = y;
+    }
+
+    public void setFieldSize(int width, int height)
+    {
+        fieldWidth = width;
+        fieldHeight = height;
+    }
+
+    public int getFieldWidth() {
+        return fieldWidth;
+    }
+
+    public int getFieldHeight() {
+        return fieldHeight;
+    }
+
+    /**
+     * Подгоняет размер поля под панель отрисовки размером width x height,
+     * если размер мира не задан явно через {@link #setWorldSize}.
+     */
+    public void fitFieldToView(int width, int height)
+    {
+        if (!fieldSizeFixed) {
+            setFieldSize(width, height);
+        }
+    }
+
+    /**
+     * Задает размер мира, не зависящий от панели: роботы отражаются
+     * от его границ, а панель показывает ту часть мира, что попала
+     * в вид. Нулевой или отрицательный размер возвращает прежнее
+     * поведение - поле по размеру панели.
+     */
+    public void setWorldSize(int width, int height)
+    {
+        if (width > 0 && height > 0) {
+            fieldSizeFixed = true;
+            setFieldSize(width, height);
+        } else {
+            fieldSizeFixed = false;
+        }
+    }
+
+    public boolean isWorldSizeFixed() {
+        return fieldSizeFixed;
+    }
+
+    /**
+     * Включает пространственный индекс роботов ({@link #getSpatialIndex()}):
+     * пока он включен, индекс перестраивается после каждого шага.
+     */
+    public synchronized void setSpatialIndexEnabled(boolean enabled)
+    {
+        if (enabled) {
+            rebuildSpatialIndex(robots);
+        } else {
+            publishedSpatialIndex = null;
+        }
+    }
+
+    /**
+     * Индекс положений роботов на конец последнего шага или {@code null},
+     * если индекс не включен. Роботы, добавленные после шага, попадают
+     * в индекс на следующем шаге.
+     */
+    SpatialGrid getSpatialIndex() {
+        return publishedSpatialIndex;
+    }
+
+    /**
+     * Строит индекс в запасном объекте и публикует его, поэтому
+     * отрисовка дочитывает прежний индекс без ожидания, а ждет только
+     * если задержалась в нем дольше, чем на шаг.
+     */
+    private void rebuildSpatialIndex(RobotModel[] current)
+    {
+        SpatialGrid next = spareSpatialIndex;
+        next.build(current, fieldWidth, fieldHeight);
+        spareSpatialIndex = spatialIndex;
+        spatialIndex = next;
+        publishedSpatialIndex = next;
+    }
+
+    /**
+     * Подключает кольцо телеметрии: после каждого шага в него пишется
+     * состояние всех роботов. В кольцо должен писать только один мир;
+     * под монитором подключение дожидается конца текущего шага, так что
+     * при переключении кольца между мирами писатели не пересекаются.
+     * {@code null} отключает телеметрию.
+     */
+    public synchronized void setTelemetry(TelemetryRing ring)
+    {
+        telemetry = ring;
+    }
+
+    /**
+     * Заменяет реализацию пакетного шага, например на скалярную
+     * для сравнения с векторной.
+     */
+    synchronized void setBatchStepper(BatchStepper stepper)
+    {
+        this.stepper = stepper;
+    }
+
+    /**
+     * Заменяет правило наведения роботов на цель.
+     */
+    synchronized void setSteering(SteeringController steering)
+    {
+        this.steering = steering;
+    }
+
+    synchronized SteeringController getSteering()
+    {
+        return steering;
+    }
+
+    /**
+     * Число выполненных шагов симуляции.
+     */
+    public synchronized long getTickCount()
+    {
+        return tickCount;
+    }
+
+    /**
+     * Один шаг симуляции. Команды контроллеров роботов шаг ждет до того,
+     * как занять монитор мира: пока контроллеры решают, что делать,
+     * они, отрисовка и снятие контрольной точки могут свободно вызывать
+     * синхронизированные методы мира. Сами шаги выполняются по одному.
+     */
+    public void tick()
+    {
+        synchronized (stepLock) {
+            ControllerScope scope = controllers;
+            if (scope != null) {
+                if (ControllerScope.isControllerThread()) {
+                    throw new IllegalStateException("A robot controller cannot step the world");
+                }
+                scope.awaitCommands();
+            }
+            synchronized (this) {
+                applyStep();
+            }
+            if (scope != null) {
+                scope.completeStep();
+            }
+        }
+    }
+
+    private void applyStep()
+    {
+        tickCount++;
+        int targetX = m_targetPositionX;
+        int targetY = m_targetPositionY;
+        RobotModel[] current = robots;
+        batch.load(current);
+        stepper.step(batch, steering, targetX, targetY, fieldWidth, fieldHeight, TICK_DURATION);
+        batch.store();
+        for (RobotModel robot : current) {
+            RobotControl control = robot.getControl();
+            if (control != null) {
+                checkBoundaries(robot);
+                robot.move(control.getVelocity(), control.getAngularVelocity(), TICK_DURATION);
+            }
+        }
+        if (occupancyLayer.isVisible()) {
+            occupancyLayer.accumulate(current, fieldWidth, fieldHeight);
+        }
+        if (publishedSpatialIndex != null) {
+            rebuildSpatialIndex(current);
+        }
+        TelemetryRing ring = telemetry;
+        if (ring != null) {
+            publishTelemetry(ring, current, targetX, targetY);
+        }
+    }
+
+    private void publishTelemetry(TelemetryRing ring, RobotModel[] current, int targetX, int targetY)
+    {
+        for (RobotModel robot : current) {
+            int flags = robot == robotModel ? TelemetryRing.FLAG_MAIN : 0;
+            double robotTargetX = targetX;
+            double robotTargetY = targetY;
+            if (robot.getControl() != null) {
+                flags |= TelemetryRing.FLAG_CONTROLLED;
+                robotTargetX = Double.NaN;
+                robotTargetY = Double.NaN;
+            }
+            ring.write(tickCount, robot.getId(), flags, robot.getPositionX(), robot.getPositionY(),
+                    robot.getDirection(), robotTargetX, robotTargetY);
+        }
+        ring.publish();
+    }
+
+    /**
+     * Снимает контрольную точку на границе шагов. Под монитором мира
+     * только копируются значения в столбцы, поэтому симуляция
+     * останавливается на время копирования, а не записи на диск.
+     * <p>
+     * Копия полная, а не разностная и не копирование при записи: состояние
+     * роботов хранится в объектах {@link RobotModel}, а не в общих столбцах,
+     * которые можно было бы разделить с точкой, и каждый шаг меняет
+     * положение и направление всех роботов, так что разность с предыдущей
+     * точкой была бы не меньше самой точки. Копирование четырех чисел
+     * на робота занимает около 0,1 мс на 10 000 роботов и 1,1 мс на
+     * 100 000 ({@code GameWorldBenchmark.checkpoint}) - меньше шага мира
+     * с тем же числом роботов.
+     */
+    public synchronized WorldCheckpoint checkpoint()
+    {
+        RobotModel[] current = robots;
+        int count = current.length;
+        double[] positionsX = new double[count];
+        double[] positionsY = new double[count];
+        double[] directions = new double[count];
+        int[] sizes = new int[count];
+        for (int i = 0; i < count; i++) {
+            RobotModel robot = current[i];
+            positionsX[i] = robot.getPositionX();
+            positionsY[i] = robot.getPositionY();
+            directions[i] = robot.getDirection();
+            sizes[i] = robot.getSize();
+        }
+        RobotProfile profile = robotModel.getProfile();
+        return new WorldCheckpoint(tickCount, randomState,
+                m_targetPositionX, m_targetPositionY, fieldWidth, fieldHeight,
+                profile.getBaseColor().getRGB() & 0xFFFFFF, profile.getTransparency(), profile.getShape(),
+                profile.getMaxVelocity(), profile.getMaxAngularVelocity(),
+                positionsX, positionsY, directions, sizes);
+    }
+
+    /**
+     * Возвращает мир в состояние контрольной точки, включая счетчик шагов
+     * и состояние генератора случайных чисел, так что дальнейшая симуляция
+     * повторяет ту, что шла после снятия точки. Состояние регулятора
+     * наведения в точку не входит и сбрасывается, поэтому с {@link PidSteering}
+     * траектории могут немного отличаться.
+     * <p>
+     * Если размер поля в точке отличается от текущего, он закрепляется
+     * так же, как {@link #setWorldSize}, иначе роботы оказались бы за
+     * границами поля. Подключенная область контроллеров отключается
+     * и закрывается ({@link ControllerScope#closeAsync()}): ее роботы
+     * заменены восстановленными, которые становятся обычными роботами.
+     */
+    public void restore(WorldCheckpoint checkpoint)
+    {
+        synchronized (stepLock) {
+            ControllerScope scope = controllers;
+            if (scope != null) {
+                if (ControllerScope.isControllerThread()) {
+                    throw new IllegalStateException("A robot controller cannot restore the world");
+                }
+                controllers = null;
+                scope.closeAsync();
+            }
+            synchronized (this) {
+                restoreState(checkpoint);
+            }
+        }
+    }
+
+    private void restoreState(WorldCheckpoint checkpoint)
+    {
+        int width = checkpoint.getFieldWidth();
+        int height = checkpoint.getFieldHeight();
+        if (width > 0 && height > 0 && (width != fieldWidth || height != fieldHeight)) {
+            setWorldSize(width, height);
+        }
+
+        RobotSettings settings = robotModel.getSettings();
+        settings.setProfile(RobotProfile.of(new Color(checkpoint.getRgb()), checkpoint.getTransparency(),
+                checkpoint.getShape(), checkpoint.getMaxVelocity(), checkpoint.getMaxAngularVelocity()));
+
+        int count = checkpoint.getRobotCount();
+        RobotModel[] restored = new RobotModel[Math.max(1, count)];
+        restored[0] = robotModel;
+        robotModel.setSteeringState(0, 0);
+        for (int i = 1; i < count; i++) {
+            restored[i] = new RobotModel(settings);
+        }
+        for (int i = 0; i < count; i++) {
+            RobotModel robot = restored[i];
+            robot.setPositionX(checkpoint.getPositionX(i));
+            robot.setPositionY(checkpoint.getPositionY(i));
+            robot.setDirection(checkpoint.getDirection(i));
+            robot.setSize(checkpoint.getSize(i));
+        }
+        robots = restored;
+        if (publishedSpatialIndex != null) {
+            rebuildSpatialIndex(restored);
+        }
+
+        m_targetPositionX = checkpoint.getTargetX();
+        m_targetPositionY = checkpoint.getTargetY();
+        tickCount = checkpoint.getTick();
+        randomState = checkpoint.getRandomState();
+        occupancyLayer.clear();
+    }
+
+    /**
+     * SplitMix64: все состояние генератора - одно число,
+     * которое сохраняется в контрольной точке.
+     */
+    private double nextRandomDouble()
+    {
+        long z = (randomState += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Шаг одного робота с прежним релейным наведением ({@link BangBangSteering});
+     * эталон для пакетного шага и замеров.
+     */
+    void step(RobotModel robotModel, int targetX, int targetY)
+    {
+        checkBoundaries(robotModel);
+        double distance = distance(targetX, targetY,
+                robotModel.getPositionX(), robotModel.getPositionY());
+        if (distance < 0.5)
+        {
+            return;
+        }
+        RobotProfile profile = robotModel.getProfile();
+        double velocity = profile.getMaxVelocity();
+        double angleToTarget = angleTo(robotModel.getPositionX(), robotModel.getPositionY(), targetX, targetY);
+        double angularVelocity = 0;
+        if (angleToTarget > robotModel.getDirection())
+        {
+            angularVelocity = profile.getMaxAngularVelocity();
+        }
+        if (angleToTarget < robotModel.getDirection())
+        {
+            angularVelocity = -profile.getMaxAngularVelocity();
+        }
+
+        robotModel.move(velocity, angularVelocity, TICK_DURATION);
+    }
+
+    static double distance(double x1, double y1, double x2, double y2)
+    {
+        double diffX = x1 - x2;
+        double diffY = y1 - y2;
+        return Math.sqrt(diffX * diffX + diffY * diffY);
+    }
+
+    static double angleTo(double fromX, double fromY, double toX, double toY)
+    {
+        double diffX = toX - fromX;
+        double diffY = toY - fromY;
+
+        return asNormalizedRadians(Math.atan2(diffY, diffX));
+    }
+
+    void checkBoundaries(RobotModel robotModel) {
+        int panelWidth = fieldWidth;
+        int panelHeight = fieldHeight;
+        double robotSize = robotModel.getSize();
+
+        if (robotModel.getPositionX() < robotSize /2) {
+            robotModel.setDirection(Math.PI - robotModel.getDirection());
+            robotModel.setPositionX(robotSize /2);
+        }
+        else if (robotModel.getPositionX() > panelWidth - robotSize /2) {
+            robotModel.setDirection(Math.PI - robotModel.getDirection());
+            robotModel.setPositionX(panelWidth - robotSize/2);
+        }
+
+        if (robotModel.getPositionY() < robotSize/2) {
+            robotModel.setDirection(-robotModel.getDirection());
+            robotModel.setPositionY(robotSize/2);
+        }
+        else if (robotModel.getPositionY() > panelHeight - robotSize/2) {
+            robotModel.setDirection(-robotModel.getDirection());
+            robotModel.setPositionY(panelHeight - robotSize/2);
+        }
+
+        robotModel.setDirection(asNormalizedRadians(robotModel.getDirection()));
+    }
+
+    private static double asNormalizedRadians(double angle) {
+        while (angle < 0) angle += 2*Math.PI;
+        while (angle >= 2*Math.PI) angle -= 2*Math.PI;
+        return angle;
+    }
+}
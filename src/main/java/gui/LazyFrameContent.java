@@ -0,0 +1,52 @@
+package gui;
+
+import javax.swing.JInternalFrame;
+import javax.swing.event.InternalFrameAdapter;
+import javax.swing.event.InternalFrameEvent;
+
+/**
+ * Откладывает создание содержимого внутреннего окна до момента,
+ * когда окно впервые показано и не свернуто. Окна, которые при запуске
+ * восстанавливаются свернутыми, не создают содержимое и не запускают
+ * связанные с ним потоки, пока их не развернут.
+ */
+final class LazyFrameContent extends InternalFrameAdapter
+{
+    private final Runnable createContent;
+    private boolean created;
+
+    private LazyFrameContent(Runnable createContent)
+    {
+        this.createContent = createContent;
+    }
+
+    static void install(JInternalFrame frame, Runnable createContent)
+    {
+        frame.addInternalFrameListener(new LazyFrameContent(createContent));
+    }
+
+    @Override
+    public void internalFrameOpened(InternalFrameEvent e)
+    {
+        if (!e.getInternalFrame().isIcon()) {
+            ensureCreated(e.getInternalFrame());
+        }
+    }
+
+    @Override
+    public void internalFrameDeiconified(InternalFrameEvent e)
+    {
+        ensureCreated(e.getInternalFrame());
+    }
+
+    private void ensureCreated(JInternalFrame frame)
+    {
+        if (created) {
+            return;
+        }
+        created = true;
+        createContent.run();
+        frame.revalidate();
+        frame.repaint();
+    }
+}
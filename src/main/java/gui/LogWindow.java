@@ -6,22 +6,28 @@ import java.awt.TextArea;
 
 import javax.swing.JInternalFrame;
 import javax.swing.JPanel;
+import javax.swing.event.InternalFrameAdapter;
+import javax.swing.event.InternalFrameEvent;
 
 import log.LogChangeListener;
 import log.LogEntry;
-import log.LogWindowSource;
+import log.NamedLogger;
 
 @PersistWindowState
 public class LogWindow extends JInternalFrame implements LogChangeListener
 {
-    private LogWindowSource m_logSource;
+    private NamedLogger m_logger;
     private TextArea m_logContent;
 
-    public LogWindow(LogWindowSource logSource) 
+    /**
+     * Окно показывает записи протокола и всех его потомков. Подписка
+     * на протокол и заполнение текста откладываются до первого показа
+     * несвернутого окна, а при закрытии окно отписывается.
+     */
+    public LogWindow(NamedLogger logger) 
     {
-        super("Протокол работы", true, true, true, true);
-        m_logSource = logSource;
-        m_logSource.registerListener(this);
+        super(titleOf(logger), true, true, true, true);
+        m_logger = logger;
         m_logContent = new TextArea("");
         m_logContent.setSize(200, 500);
         
@@ -29,14 +35,39 @@ public class LogWindow extends JInternalFrame implements LogChangeListener
         panel.add(m_logContent, BorderLayout.CENTER);
         getContentPane().add(panel);
         pack();
+        LazyFrameContent.install(this, this::createContent);
+        addInternalFrameListener(new InternalFrameAdapter() {
+            @Override
+            public void internalFrameClosed(InternalFrameEvent e) {
+                m_logger.unregisterListener(LogWindow.this);
+            }
+        });
+    }
+
+    private static String titleOf(NamedLogger logger)
+    {
+        return logger.getName().isEmpty() ? "Протокол работы" : "Протокол работы: " + logger.getName();
+    }
+
+    public NamedLogger getLogger()
+    {
+        return m_logger;
+    }
+
+    private void createContent()
+    {
+        m_logger.registerListener(this);
         updateLogContent();
     }
 
     private void updateLogContent()
     {
         StringBuilder content = new StringBuilder();
-        for (LogEntry entry : m_logSource.all())
+        for (LogEntry entry : m_logger.entries())
         {
+            if (!entry.getSource().equals(m_logger.getName())) {
+                content.append('[').append(entry.getSource()).append("] ");
+            }
             content.append(entry.getMessage()).append("\n");
         }
         m_logContent.setText(content.toString());
@@ -4,14 +4,22 @@ import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 import javax.swing.*;
 import javax.swing.event.InternalFrameAdapter;
 import javax.swing.event.InternalFrameEvent;
+import javax.swing.event.MenuEvent;
+import javax.swing.event.MenuListener;
 
 import log.Logger;
+import log.NamedLogger;
+import telemetry.TelemetryRing;
 
 /**
  * Что требуется сделать:
@@ -22,9 +30,18 @@ import log.Logger;
 @PersistWindowState
 public class MainApplicationFrame extends JFrame
 {
+    private static final NamedLogger UI_LOG = Logger.get("ui");
+    private static final NamedLogger TELEMETRY_LOG = Logger.get("sim.telemetry");
+    private static final NamedLogger CHECKPOINT_LOG = Logger.get("sim.checkpoint");
+
     private final JDesktopPane desktopPane = new JDesktopPane();
     private final WindowStateManager windowStateManager;
     private final List<JInternalFrame> closedWindows = new ArrayList<>();
+    private final CheckpointStore checkpointStore = new CheckpointStore();
+    private ControllerScope controllerScope;
+    private CompletableFuture<Void> controllersClosed = CompletableFuture.completedFuture(null);
+    private TelemetryRing telemetryRing;
+    private GameWorld telemetryWorld;
 
     public MainApplicationFrame() {
         int inset = 50;
@@ -36,17 +53,28 @@ public class MainApplicationFrame extends JFrame
         setContentPane(desktopPane);
         windowStateManager = new WindowStateManager(this, desktopPane);
 
-        LogWindow logWindow = createLogWindow();
-        addWindow(logWindow);
-
+        long phaseStart = StartupProfiler.start();
+        LogWindow logWindow = createLogWindow(Logger.getRoot());
+        registerWindow(logWindow);
         GameWindow gameWindow = new GameWindow();
         gameWindow.setSize(400,  400);
-        addWindow(gameWindow);
+        registerWindow(gameWindow);
+        StartupProfiler.record("Окна", phaseStart);
 
+        phaseStart = StartupProfiler.start();
         setJMenuBar(generateMenuBar());
         setDefaultCloseOperation(EXIT_ON_CLOSE);
+        StartupProfiler.record("Меню", phaseStart);
 
+        phaseStart = StartupProfiler.start();
         windowStateManager.loadWindowStates();
+        windowStateManager.startTracking();
+        StartupProfiler.record("Восстановление состояния", phaseStart);
+
+        // Окна показываются после восстановления состояния, чтобы
+        // свернутые окна не создавали содержимое раньше времени.
+        logWindow.setVisible(true);
+        gameWindow.setVisible(true);
 
         addWindowListener(new WindowAdapter() {
             @Override
@@ -56,9 +84,9 @@ public class MainApplicationFrame extends JFrame
         });
     }
 
-    protected LogWindow createLogWindow()
+    protected LogWindow createLogWindow(NamedLogger logger)
     {
-        LogWindow logWindow = new LogWindow(Logger.getDefaultLogSource());
+        LogWindow logWindow = new LogWindow(logger);
         logWindow.setLocation(10,10);
         logWindow.setSize(300, 800);
         setMinimumSize(logWindow.getSize());
@@ -69,8 +97,13 @@ public class MainApplicationFrame extends JFrame
 
     protected void addWindow(JInternalFrame frame)
     {
-        desktopPane.add(frame);
+        registerWindow(frame);
         frame.setVisible(true);
+    }
+
+    private void registerWindow(JInternalFrame frame)
+    {
+        desktopPane.add(frame);
         frame.addInternalFrameListener(new InternalFrameAdapter() {
             @Override
             public void internalFrameClosed(InternalFrameEvent e) {
@@ -86,6 +119,9 @@ public class MainApplicationFrame extends JFrame
         menuBar.add(createLookAndFeelMenu());
         menuBar.add(createTestMenu());
         menuBar.add(createRobotMenu());
+        menuBar.add(createLayersMenu());
+        menuBar.add(createViewMenu());
+        menuBar.add(createSimulationMenu());
 
         return menuBar;
     }
@@ -98,6 +134,23 @@ public class MainApplicationFrame extends JFrame
         restoreWindowsItem.addActionListener(event -> restoreClosedWindows());
         fileMenu.add(restoreWindowsItem);
 
+        JMenu subsystemLogMenu = new JMenu("Протокол подсистемы");
+        subsystemLogMenu.addMenuListener(new MenuListener() {
+            @Override
+            public void menuSelected(MenuEvent e) {
+                fillSubsystemLogMenu(subsystemLogMenu);
+            }
+
+            @Override
+            public void menuDeselected(MenuEvent e) {
+            }
+
+            @Override
+            public void menuCanceled(MenuEvent e) {
+            }
+        });
+        fileMenu.add(subsystemLogMenu);
+
         JMenuItem exitItem = new JMenuItem("Выход", KeyEvent.VK_X);
         exitItem.addActionListener(event -> confirmExit());
         fileMenu.add(exitItem);
@@ -105,6 +158,33 @@ public class MainApplicationFrame extends JFrame
         return fileMenu;
     }
 
+    /**
+     * Заполняет меню протоколами подсистем: пункт на каждый протокол,
+     * потомки идут сразу за предком. Окно протокола показывает и записи
+     * его потомков.
+     */
+    private void fillSubsystemLogMenu(JMenu menu) {
+        menu.removeAll();
+        if (Logger.getRoot().getChildren().isEmpty()) {
+            JMenuItem emptyItem = new JMenuItem("Нет протоколов подсистем");
+            emptyItem.setEnabled(false);
+            menu.add(emptyItem);
+            return;
+        }
+        for (NamedLogger logger : Logger.getRoot().getChildren()) {
+            addSubsystemLogItems(menu, logger);
+        }
+    }
+
+    private void addSubsystemLogItems(JMenu menu, NamedLogger logger) {
+        JMenuItem item = new JMenuItem(logger.getName());
+        item.addActionListener(e -> addWindow(createLogWindow(logger)));
+        menu.add(item);
+        for (NamedLogger child : logger.getChildren()) {
+            addSubsystemLogItems(menu, child);
+        }
+    }
+
     private JMenu createRobotMenu() {
         JMenu robotMenu = new JMenu("Робот");
         robotMenu.setMnemonic(KeyEvent.VK_R);
@@ -113,10 +193,79 @@ public class MainApplicationFrame extends JFrame
         robotMenu.add(createShapeMenu());
         robotMenu.add(createColorMenu());
         robotMenu.add(createSpeedMenu());
+        robotMenu.add(createSwarmMenu());
 
         return robotMenu;
     }
 
+    private JMenu createSwarmMenu() {
+        JMenu swarmMenu = new JMenu("Рой");
+
+        addSwarmMenuItem(swarmMenu, "Добавить 100 роботов", 100);
+        addSwarmMenuItem(swarmMenu, "Добавить 1000 роботов", 1000);
+        addSwarmMenuItem(swarmMenu, "Добавить 10000 роботов", 10000);
+
+        JMenuItem clearItem = new JMenuItem("Убрать рой");
+        clearItem.addActionListener(e -> getGameWindow().getWorld().removeSpawnedRobots());
+        swarmMenu.add(clearItem);
+
+        swarmMenu.addSeparator();
+
+        JMenuItem patrolItem = new JMenuItem("Добавить 100 патрульных с контроллерами");
+        patrolItem.addActionListener(e -> addPatrolControllers(100));
+        swarmMenu.add(patrolItem);
+
+        JMenuItem stopControllersItem = new JMenuItem("Остановить контроллеры");
+        stopControllersItem.addActionListener(e -> closeControllers());
+        swarmMenu.add(stopControllersItem);
+
+        return swarmMenu;
+    }
+
+    private void addPatrolControllers(int count) {
+        GameWorld world = getGameWindow().getWorld();
+        // Область могла остановиться сама: при ошибке контроллера или
+        // при восстановлении мира из контрольной точки.
+        if (controllerScope != null && (controllerScope.getWorld() != world || controllerScope.isShutdown())) {
+            closeControllers();
+        }
+        if (controllerScope == null && !controllersClosed.isDone()) {
+            // Прежняя область еще закрывается и может держать мир.
+            controllersClosed.whenComplete((result, error) ->
+                    EventQueue.invokeLater(() -> addPatrolControllers(count)));
+            return;
+        }
+        if (controllerScope == null) {
+            controllerScope = new ControllerScope(world);
+        }
+        Random random = new Random();
+        int width = Math.max(1, world.getFieldWidth());
+        int height = Math.max(1, world.getFieldHeight());
+        for (int i = 0; i < count; i++) {
+            controllerScope.fork(random.nextInt(width), random.nextInt(height),
+                    RobotController.patrol(random.nextInt(width), random.nextInt(height),
+                            random.nextInt(width), random.nextInt(height), 50));
+        }
+    }
+
+    /**
+     * Закрывает область контроллеров в фоне: с тысячами контроллеров
+     * ожидание их выхода заметно, и поток событий его не ждет.
+     */
+    private void closeControllers() {
+        if (controllerScope == null) {
+            return;
+        }
+        controllersClosed = controllerScope.closeAsync();
+        controllerScope = null;
+    }
+
+    private void addSwarmMenuItem(JMenu menu, String text, int count) {
+        JMenuItem item = new JMenuItem(text);
+        item.addActionListener(e -> getGameWindow().getWorld().spawnRobots(count));
+        menu.add(item);
+    }
+
     private JMenu createSizeMenu() {
         JMenu sizeMenu = new JMenu("Размер робота");
         ButtonGroup sizeGroup = new ButtonGroup();
@@ -130,7 +279,7 @@ public class MainApplicationFrame extends JFrame
 
     private void addSizeMenuItem(JMenu menu, ButtonGroup group, String text, int size, boolean selected) {
         JRadioButtonMenuItem item = new JRadioButtonMenuItem(text, selected);
-        item.addActionListener(e -> getGameWindow().getVisualizer().setRobotSize(size));
+        item.addActionListener(e -> getGameWindow().getWorld().setRobotSize(size));
         menu.add(item);
         group.add(item);
     }
@@ -148,7 +297,7 @@ public class MainApplicationFrame extends JFrame
 
     private void addShapeMenuItem(JMenu menu, ButtonGroup group, String text, RobotShape shape, boolean selected) {
         JRadioButtonMenuItem item = new JRadioButtonMenuItem(text, selected);
-        item.addActionListener(e -> getGameWindow().getVisualizer().getRobotSettings().setShape(shape));
+        item.addActionListener(e -> getGameWindow().getWorld().getRobotSettings().setShape(shape));
         menu.add(item);
         group.add(item);
     }
@@ -165,10 +314,10 @@ public class MainApplicationFrame extends JFrame
             Color newColor = JColorChooser.showDialog(
                     MainApplicationFrame.this,
                     "Выберите цвет робота",
-                    getGameWindow().getVisualizer().getRobotSettings().getRobotColor()
+                    getGameWindow().getWorld().getRobotSettings().getRobotColor()
             );
             if (newColor != null) {
-                getGameWindow().getVisualizer().getRobotSettings().setRobotColor(newColor);
+                getGameWindow().getWorld().getRobotSettings().setRobotColor(newColor);
             }
         });
         colorMenu.add(customColor);
@@ -178,7 +327,7 @@ public class MainApplicationFrame extends JFrame
 
     private void addColorMenuItem(JMenu menu, String text, Color color) {
         JMenuItem item = new JMenuItem(text);
-        item.addActionListener(e -> getGameWindow().getVisualizer().getRobotSettings().setRobotColor(color));
+        item.addActionListener(e -> getGameWindow().getWorld().getRobotSettings().setRobotColor(color));
         menu.add(item);
     }
 
@@ -197,14 +346,204 @@ public class MainApplicationFrame extends JFrame
                                   double maxVelocity, double maxAngularVelocity, boolean selected) {
         JRadioButtonMenuItem item = new JRadioButtonMenuItem(text, selected);
         item.addActionListener(e -> {
-            RobotSettings settings = getGameWindow().getVisualizer().getRobotSettings();
-            settings.setMaxVelocity(maxVelocity);
-            settings.setMaxAngularVelocity(maxAngularVelocity);
+            getGameWindow().getWorld().getRobotSettings()
+                    .update(profile -> profile.withSpeed(maxVelocity, maxAngularVelocity));
         });
         menu.add(item);
         group.add(item);
     }
 
+    private JMenu createLayersMenu() {
+        JMenu layersMenu = new JMenu("Слои");
+        layersMenu.setMnemonic(KeyEvent.VK_L);
+
+        JCheckBoxMenuItem heatmapItem = new JCheckBoxMenuItem("Тепловая карта");
+        heatmapItem.addActionListener(e -> getGameWindow().getWorld().getOccupancyLayer()
+                .setShowHeatmap(heatmapItem.isSelected()));
+        layersMenu.add(heatmapItem);
+
+        JCheckBoxMenuItem trailsItem = new JCheckBoxMenuItem("Следы");
+        trailsItem.addActionListener(e -> getGameWindow().getWorld().getOccupancyLayer()
+                .setShowTrails(trailsItem.isSelected()));
+        layersMenu.add(trailsItem);
+
+        JMenuItem clearItem = new JMenuItem("Очистить");
+        clearItem.addActionListener(e -> getGameWindow().getWorld().getOccupancyLayer().clear());
+        layersMenu.add(clearItem);
+
+        return layersMenu;
+    }
+
+    private JMenu createViewMenu() {
+        JMenu viewMenu = new JMenu("Вид");
+        viewMenu.setMnemonic(KeyEvent.VK_V);
+
+        JMenu worldSizeMenu = new JMenu("Размер мира");
+        ButtonGroup worldSizeGroup = new ButtonGroup();
+        addWorldSizeMenuItem(worldSizeMenu, worldSizeGroup, "По размеру окна", 0, 0, true);
+        addWorldSizeMenuItem(worldSizeMenu, worldSizeGroup, "2000 x 1500", 2000, 1500, false);
+        addWorldSizeMenuItem(worldSizeMenu, worldSizeGroup, "8000 x 6000", 8000, 6000, false);
+        viewMenu.add(worldSizeMenu);
+
+        viewMenu.addSeparator();
+
+        JMenuItem fitItem = new JMenuItem("Весь мир");
+        fitItem.addActionListener(e -> {
+            GameVisualizer visualizer = getGameWindow().getVisualizer();
+            if (visualizer != null) {
+                visualizer.fitWorldToView();
+            }
+        });
+        viewMenu.add(fitItem);
+
+        JMenuItem resetItem = new JMenuItem("Масштаб 1:1");
+        resetItem.addActionListener(e -> {
+            GameVisualizer visualizer = getGameWindow().getVisualizer();
+            if (visualizer != null) {
+                visualizer.resetCamera();
+            }
+        });
+        viewMenu.add(resetItem);
+
+        return viewMenu;
+    }
+
+    /**
+     * Пункт размера мира; нулевой размер - поле по размеру окна.
+     * Мир заданного размера сразу показывается целиком.
+     */
+    private void addWorldSizeMenuItem(JMenu menu, ButtonGroup group, String text,
+                                      int width, int height, boolean selected) {
+        JRadioButtonMenuItem item = new JRadioButtonMenuItem(text, selected);
+        item.addActionListener(e -> {
+            GameWindow gameWindow = getGameWindow();
+            gameWindow.getWorld().setWorldSize(width, height);
+            GameVisualizer visualizer = gameWindow.getVisualizer();
+            if (visualizer != null) {
+                if (width > 0) {
+                    visualizer.fitWorldToView();
+                } else {
+                    visualizer.resetCamera();
+                }
+            }
+        });
+        menu.add(item);
+        group.add(item);
+    }
+
+    private JMenu createSimulationMenu() {
+        JMenu simulationMenu = new JMenu("Симуляция");
+        simulationMenu.setMnemonic(KeyEvent.VK_S);
+
+        JMenuItem saveItem = new JMenuItem("Сохранить контрольную точку", KeyEvent.VK_S);
+        saveItem.addActionListener(e -> checkpointStore.saveAsync(getGameWindow().getWorld()));
+        simulationMenu.add(saveItem);
+
+        JMenu restoreMenu = new JMenu("Восстановить");
+        restoreMenu.addMenuListener(new MenuListener() {
+            @Override
+            public void menuSelected(MenuEvent e) {
+                fillRestoreMenu(restoreMenu);
+            }
+
+            @Override
+            public void menuDeselected(MenuEvent e) {
+            }
+
+            @Override
+            public void menuCanceled(MenuEvent e) {
+            }
+        });
+        simulationMenu.add(restoreMenu);
+
+        simulationMenu.addSeparator();
+
+        simulationMenu.add(createSteeringMenu());
+
+        JCheckBoxMenuItem telemetryItem = new JCheckBoxMenuItem("Публиковать телеметрию");
+        telemetryItem.addActionListener(e -> telemetryItem.setSelected(setTelemetryEnabled(telemetryItem.isSelected())));
+        if (System.getProperty(TelemetryRing.PATH_PROPERTY) != null) {
+            telemetryItem.setSelected(setTelemetryEnabled(true));
+        }
+        simulationMenu.add(telemetryItem);
+
+        return simulationMenu;
+    }
+
+    private JMenu createSteeringMenu() {
+        JMenu steeringMenu = new JMenu("Наведение");
+        ButtonGroup steeringGroup = new ButtonGroup();
+        String current = System.getProperty(SteeringController.PROPERTY, "pid");
+
+        addSteeringMenuItem(steeringMenu, steeringGroup, "ПИД-регулятор", "pid", current);
+        addSteeringMenuItem(steeringMenu, steeringGroup, "По дуге", "pursuit", current);
+        addSteeringMenuItem(steeringMenu, steeringGroup, "Релейное (прежнее)", "bangbang", current);
+
+        return steeringMenu;
+    }
+
+    private void addSteeringMenuItem(JMenu menu, ButtonGroup group, String text, String kind, String current) {
+        JRadioButtonMenuItem item = new JRadioButtonMenuItem(text, kind.equals(current));
+        item.addActionListener(e -> getGameWindow().getWorld().setSteering(SteeringController.create(kind)));
+        menu.add(item);
+        group.add(item);
+    }
+
+    /**
+     * Подключает кольцо телеметрии к миру текущего игрового поля или
+     * отключает его. Возвращает, включена ли телеметрия в итоге.
+     */
+    private boolean setTelemetryEnabled(boolean enabled) {
+        if (telemetryWorld != null) {
+            telemetryWorld.setTelemetry(null);
+            telemetryWorld = null;
+        }
+        if (telemetryRing != null) {
+            try {
+                telemetryRing.close();
+            } catch (IOException e) {
+                TELEMETRY_LOG.error("Error closing telemetry ring: " + e.getMessage());
+            }
+            telemetryRing = null;
+        }
+        if (!enabled) {
+            return false;
+        }
+        Path path = TelemetryRing.defaultPath();
+        try {
+            telemetryRing = TelemetryRing.create(path, TelemetryRing.DEFAULT_CAPACITY);
+        } catch (IOException e) {
+            TELEMETRY_LOG.error("Error creating telemetry ring: " + e.getMessage());
+            return false;
+        }
+        telemetryWorld = getGameWindow().getWorld();
+        telemetryWorld.setTelemetry(telemetryRing);
+        TELEMETRY_LOG.info("Телеметрия пишется в " + path);
+        return true;
+    }
+
+    private void fillRestoreMenu(JMenu restoreMenu) {
+        restoreMenu.removeAll();
+        List<Path> checkpoints = checkpointStore.list();
+        if (checkpoints.isEmpty()) {
+            JMenuItem emptyItem = new JMenuItem("Нет контрольных точек");
+            emptyItem.setEnabled(false);
+            restoreMenu.add(emptyItem);
+            return;
+        }
+        for (Path path : checkpoints) {
+            JMenuItem item = new JMenuItem("Шаг " + CheckpointStore.tickOf(path));
+            item.addActionListener(e -> {
+                try {
+                    checkpointStore.restore(getGameWindow().getWorld(), path);
+                } catch (Exception ex) {
+                    CHECKPOINT_LOG.error("Ошибка при восстановлении контрольной точки: " + ex.getMessage());
+                }
+            });
+            restoreMenu.add(item);
+        }
+    }
+
     private JMenu createLookAndFeelMenu() {
         JMenu lookAndFeelMenu = new JMenu("Режим отображения");
         lookAndFeelMenu.setMnemonic(KeyEvent.VK_V);
@@ -235,6 +574,10 @@ public class MainApplicationFrame extends JFrame
         addLogMessageItem.addActionListener(event -> Logger.debug("Новая строка"));
         testMenu.add(addLogMessageItem);
 
+        JCheckBoxMenuItem hudItem = new JCheckBoxMenuItem("Показатели производительности");
+        hudItem.addActionListener(event -> getGameWindow().setPerformanceHudEnabled(hudItem.isSelected()));
+        testMenu.add(hudItem);
+
         return testMenu;
     }
 
@@ -281,7 +624,7 @@ public class MainApplicationFrame extends JFrame
         for (JInternalFrame frame : windowsToRestore) {
             try {
                 if (frame instanceof LogWindow) {
-                    LogWindow logWindow = createLogWindow();
+                    LogWindow logWindow = createLogWindow(((LogWindow) frame).getLogger());
                     addWindow(logWindow);
                 } else if (frame instanceof GameWindow) {
                     GameWindow gameWindow = new GameWindow();
@@ -289,7 +632,7 @@ public class MainApplicationFrame extends JFrame
                     addWindow(gameWindow);
                 }
             } catch (Exception e) {
-                Logger.error("Ошибка при восстановлении окна: " + e.getMessage());
+                UI_LOG.error("Ошибка при восстановлении окна: " + e.getMessage());
             }
         }
     }
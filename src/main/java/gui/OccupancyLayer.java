@@ -0,0 +1,199 @@
+package gui;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Слой тепловой карты присутствия роботов и их следов.
+ * <p>
+ * Поле разбито на клетки {@link #CELL_SIZE} x {@link #CELL_SIZE} пикселей.
+ * Каждый шаг симуляции добавляет в клетку под каждым роботом единицу
+ * и экспоненциально затухает все накопленное. Затухание не проходит
+ * по всей сетке: хранится общий множитель масштаба, который уменьшается
+ * на каждом шаге, а новые вклады делятся на него. Когда множитель
+ * становится слишком маленьким, сетка один раз перенормируется.
+ * Поэтому шаг стоит O(число роботов), а память определяется только
+ * размером поля и не растет со временем.
+ * <p>
+ * Изображение слоя пересобирается только при отрисовке и только если
+ * с прошлого раза были новые шаги, и выводится на экран одним вызовом.
+ */
+public class OccupancyLayer
+{
+    public static final int CELL_SIZE = 4;
+
+    private static final float HEAT_DECAY = 0.9995f;
+    private static final float TRAIL_DECAY = 0.99f;
+    private static final float HEAT_HALF_SATURATION = 200f;
+    private static final float RENORMALIZE_BELOW = 1e-20f;
+    private static final int[] HEAT_PALETTE = createHeatPalette();
+
+    private float[] heat = new float[0];
+    private float[] trails = new float[0];
+    private float heatScale = 1;
+    private float trailScale = 1;
+    private int columns;
+    private int rows;
+
+    private BufferedImage image;
+    private int[] pixels;
+    private boolean imageStale = true;
+
+    private volatile boolean showHeatmap;
+    private volatile boolean showTrails;
+
+    public boolean isShowHeatmap()
+    {
+        return showHeatmap;
+    }
+
+    public void setShowHeatmap(boolean show)
+    {
+        showHeatmap = show;
+    }
+
+    public boolean isShowTrails()
+    {
+        return showTrails;
+    }
+
+    public void setShowTrails(boolean show)
+    {
+        showTrails = show;
+    }
+
+    public boolean isVisible()
+    {
+        return showHeatmap || showTrails;
+    }
+
+    /**
+     * Добавляет в слой текущие положения роботов и применяет затухание
+     * за один шаг симуляции. Поле размером width x height; при изменении
+     * размера накопленные данные сбрасываются.
+     */
+    public synchronized void accumulate(RobotModel[] robots, int width, int height)
+    {
+        resize(width, height);
+        if (columns == 0 || rows == 0) {
+            return;
+        }
+
+        heatScale *= HEAT_DECAY;
+        trailScale *= TRAIL_DECAY;
+        if (heatScale < RENORMALIZE_BELOW) {
+            renormalize(heat, heatScale);
+            heatScale = 1;
+        }
+        if (trailScale < RENORMALIZE_BELOW) {
+            renormalize(trails, trailScale);
+            trailScale = 1;
+        }
+
+        float heatIncrement = 1 / heatScale;
+        float trailIncrement = 1 / trailScale;
+        for (RobotModel robot : robots) {
+            int column = (int) (robot.getPositionX() / CELL_SIZE);
+            int row = (int) (robot.getPositionY() / CELL_SIZE);
+            if (column < 0 || row < 0 || column >= columns || row >= rows) {
+                continue;
+            }
+            int index = row * columns + column;
+            heat[index] += heatIncrement;
+            trails[index] = trailIncrement;
+        }
+        imageStale = true;
+    }
+
+    public synchronized void clear()
+    {
+        Arrays.fill(heat, 0);
+        Arrays.fill(trails, 0);
+        heatScale = 1;
+        trailScale = 1;
+        imageStale = true;
+    }
+
+    public synchronized void draw(Graphics2D g)
+    {
+        if (!isVisible() || columns == 0 || rows == 0) {
+            return;
+        }
+        if (imageStale) {
+            rebuildImage();
+            imageStale = false;
+        }
+        g.drawImage(image, 0, 0, columns * CELL_SIZE, rows * CELL_SIZE, null);
+    }
+
+    private void resize(int width, int height)
+    {
+        int newColumns = Math.max(0, (width + CELL_SIZE - 1) / CELL_SIZE);
+        int newRows = Math.max(0, (height + CELL_SIZE - 1) / CELL_SIZE);
+        if (newColumns == columns && newRows == rows) {
+            return;
+        }
+        columns = newColumns;
+        rows = newRows;
+        heat = new float[columns * rows];
+        trails = new float[columns * rows];
+        heatScale = 1;
+        trailScale = 1;
+        if (columns > 0 && rows > 0) {
+            image = new BufferedImage(columns, rows, BufferedImage.TYPE_INT_ARGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        } else {
+            image = null;
+            pixels = null;
+        }
+    }
+
+    private static void renormalize(float[] values, float scale)
+    {
+        for (int i = 0; i < values.length; i++) {
+            values[i] *= scale;
+        }
+    }
+
+    private void rebuildImage()
+    {
+        boolean drawHeat = showHeatmap;
+        boolean drawTrails = showTrails;
+        for (int i = 0; i < pixels.length; i++) {
+            int pixel = 0;
+            if (drawHeat) {
+                float value = heat[i] * heatScale;
+                if (value > 0) {
+                    float intensity = value / (value + HEAT_HALF_SATURATION);
+                    pixel = HEAT_PALETTE[(int) (intensity * (HEAT_PALETTE.length - 1))];
+                }
+            }
+            if (drawTrails) {
+                float value = trails[i] * trailScale;
+                int alpha = (int) (Math.min(1f, value) * 0xC0);
+                if (alpha > (pixel >>> 24)) {
+                    pixel = alpha << 24;
+                }
+            }
+            pixels[i] = pixel;
+        }
+    }
+
+    /**
+     * Палитра от прозрачного синего к полупрозрачному красному.
+     */
+    private static int[] createHeatPalette()
+    {
+        int[] palette = new int[256];
+        for (int i = 0; i < palette.length; i++) {
+            float t = i / (float) (palette.length - 1);
+            int alpha = (int) (t * 0xA0);
+            int red = (int) (t * 0xFF);
+            int blue = (int) ((1 - t) * 0xFF);
+            palette[i] = alpha << 24 | red << 16 | blue;
+        }
+        return palette;
+    }
+}
@@ -0,0 +1,161 @@
+package gui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+import metrics.LatencyHistogram;
+
+/**
+ * Панель показателей производительности поверх игрового поля:
+ * частота кадров, перцентили длительности шага симуляции, отрисовки
+ * и задержки очереди событий EDT, скорость выделения памяти.
+ * <p>
+ * Пока панель выключена (по умолчанию), методы записи сводятся к чтению
+ * одного volatile-поля. Длительности шага и отрисовки замеряет сам
+ * {@link GameVisualizer} для общего реестра показателей, панели передается
+ * уже готовое значение. Во включенном состоянии значения пишутся в
+ * гистограммы без блокировок, а текст панели пересчитывается раз в секунду.
+ */
+public class PerformanceHud
+{
+    public static final int WIDTH = 330;
+    public static final int HEIGHT = 100;
+    private static final long REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int LINE_HEIGHT = 15;
+    private static final Color BACKGROUND = new Color(0, 0, 0, 0xA0);
+
+    private final LatencyHistogram tickNanos = new LatencyHistogram();
+    private final LatencyHistogram paintNanos = new LatencyHistogram();
+    private final LatencyHistogram edtLatencyNanos = new LatencyHistogram();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private volatile boolean enabled;
+    private long framesSinceRefresh;
+    private long lastRefreshTime;
+    private long lastAllocatedBytes = -1;
+    private String[] lines = new String[0];
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Время начала измеряемого участка или 0, если панель выключена.
+     */
+    public long start()
+    {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Длительность шага симуляции; учитывается, только пока панель включена.
+     */
+    public void recordTick(long elapsedNanos)
+    {
+        if (enabled) {
+            tickNanos.record(elapsedNanos);
+        }
+    }
+
+    public void recordPaint(long elapsedNanos)
+    {
+        if (enabled) {
+            paintNanos.record(elapsedNanos);
+        }
+    }
+
+    /**
+     * Задержка между постановкой задачи в очередь EDT и ее выполнением.
+     */
+    public void recordEdtLatency(long postedNanos)
+    {
+        if (postedNanos != 0) {
+            edtLatencyNanos.record(System.nanoTime() - postedNanos);
+        }
+    }
+
+    /**
+     * Рисует панель в левом верхнем углу. Вызывается из paint на EDT.
+     */
+    public void draw(Graphics2D g, DirtyRegionTracker dirtyRegions)
+    {
+        if (!enabled) {
+            return;
+        }
+        framesSinceRefresh++;
+        long now = System.nanoTime();
+        if (lastRefreshTime == 0) {
+            lastRefreshTime = now;
+        } else if (now - lastRefreshTime >= REFRESH_NANOS) {
+            refresh(now, dirtyRegions);
+        }
+
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+        g.setColor(Color.WHITE);
+        for (int i = 0; i < lines.length; i++) {
+            g.drawString(lines[i], 5, LINE_HEIGHT * (i + 1));
+        }
+    }
+
+    private void refresh(long now, DirtyRegionTracker dirtyRegions)
+    {
+        double seconds = (now - lastRefreshTime) / 1e9;
+        long allocatedBytes = totalAllocatedBytes();
+        String allocationRate = "н/д";
+        if (allocatedBytes >= 0 && lastAllocatedBytes >= 0) {
+            long allocatedSinceRefresh = Math.max(0, allocatedBytes - lastAllocatedBytes);
+            allocationRate = String.format("%.1f МБ/с", allocatedSinceRefresh / seconds / (1 << 20));
+        }
+
+        lines = new String[] {
+                String.format("FPS: %.1f", framesSinceRefresh / seconds),
+                "Шаг симуляции: " + describe(tickNanos.drain()),
+                "Отрисовка: " + describe(paintNanos.drain()),
+                "Очередь EDT: " + describe(edtLatencyNanos.drain()),
+                "Выделение памяти: " + allocationRate,
+                "Перерисовано: " + dirtyRegions.getLastFramePixels() + " пикс./кадр"
+        };
+
+        lastAllocatedBytes = allocatedBytes;
+        lastRefreshTime = now;
+        framesSinceRefresh = 0;
+    }
+
+    private static String describe(LatencyHistogram.Snapshot snapshot)
+    {
+        return String.format("p50 %.2f  p99 %.2f  max %.2f мс",
+                snapshot.getPercentile(50) / 1e6,
+                snapshot.getPercentile(99) / 1e6,
+                snapshot.getMax() / 1e6);
+    }
+
+    /**
+     * Суммарный объем памяти, выделенной всеми живыми потоками,
+     * или -1, если JVM этого не поддерживает.
+     */
+    private long totalAllocatedBytes()
+    {
+        if (!(threads instanceof com.sun.management.ThreadMXBean allocationBean)
+                || !allocationBean.isThreadAllocatedMemorySupported()
+                || !allocationBean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long total = 0;
+        for (long allocated : allocationBean.getThreadAllocatedBytes(allocationBean.getAllThreadIds())) {
+            if (allocated > 0) {
+                total += allocated;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,72 @@
+package gui;
+
+/**
+ * ПИД-регулятор направления: угловая скорость пропорциональна ошибке
+ * направления на цель, ее накопленной сумме и скорости изменения. Выход
+ * регулятора - доля предельной угловой скорости робота, так что
+ * коэффициенты не зависят от настроек скорости.
+ * <p>
+ * Ошибка считается через проекции на направление робота, без
+ * арктангенса: это синус угла на цель, а для цели сзади - {@code ±(2 - |sin|)}.
+ * Такая ошибка растет вместе с углом на всем (-π, π), у нуля совпадает
+ * с самим углом и сама учитывает переход через 0 и 2π - робот всегда
+ * поворачивает кратчайшим путем.
+ * <p>
+ * Линейная скорость падает вместе с косинусом угла (цель сбоку или
+ * сзади - робот разворачивается почти на месте) и ограничена так же,
+ * как в {@link PurePursuitSteering}: дуга через цель должна укладываться
+ * в предельную угловую скорость, а у цели робот не проскакивает ее.
+ * <p>
+ * Сумма ошибки и прошлая ошибка хранятся в столбцах пакета
+ * {@link RobotBatch#headingIntegral} и {@link RobotBatch#headingError}.
+ * Сумма не копится, пока выход упирается в предел, и сбрасывается
+ * по прибытии.
+ */
+final class PidSteering implements SteeringController
+{
+    static final double PROPORTIONAL = 10;
+    /** На единицу ошибки за миллисекунду. */
+    static final double INTEGRAL = 0.0005;
+    /** На единицу ошибки в миллисекунду. */
+    static final double DERIVATIVE = 50;
+
+    @Override
+    public void steer(RobotBatch batch, int from, int to, double targetX, double targetY, double duration)
+    {
+        for (int i = from; i < to; i++) {
+            double diffX = targetX - batch.positionX[i];
+            double diffY = targetY - batch.positionY[i];
+            double distance = Math.sqrt(diffX * diffX + diffY * diffY);
+            if (distance < ARRIVAL_DISTANCE) {
+                batch.velocity[i] = 0;
+                batch.angularVelocity[i] = 0;
+                batch.headingIntegral[i] = 0;
+                batch.headingError[i] = 0;
+                continue;
+            }
+            double dir = batch.direction[i];
+            double cos = Math.cos(dir);
+            double sin = Math.sin(dir);
+            double cosAlpha = (cos * diffX + sin * diffY) / distance;
+            double sinAlpha = (cos * diffY - sin * diffX) / distance;
+            double error = cosAlpha >= 0 ? sinAlpha : Math.copySign(2 - Math.abs(sinAlpha), sinAlpha);
+
+            double integral = batch.headingIntegral[i];
+            double output = PROPORTIONAL * error + INTEGRAL * integral
+                    + DERIVATIVE * (error - batch.headingError[i]) / duration;
+            if (Math.abs(output) < 1) {
+                batch.headingIntegral[i] = integral + error * duration;
+            }
+            batch.headingError[i] = error;
+
+            double maxAngularVelocity = batch.maxAngularVelocity[i];
+            double velocity = Math.min(batch.maxVelocity[i] * Math.max(0, cosAlpha), distance / duration);
+            double sinAbs = Math.abs(sinAlpha);
+            if (2 * sinAbs * velocity > maxAngularVelocity * distance) {
+                velocity = maxAngularVelocity * distance / (2 * sinAbs);
+            }
+            batch.velocity[i] = velocity;
+            batch.angularVelocity[i] = ScalarBatchStepper.clamp(output, -1, 1) * maxAngularVelocity;
+        }
+    }
+}
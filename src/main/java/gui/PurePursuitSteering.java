@@ -0,0 +1,53 @@
+package gui;
+
+/**
+ * Наведение по дуге (pure pursuit): робот едет по дуге окружности,
+ * которая касается его направления и проходит через цель. Кривизна
+ * такой дуги {@code 2 sin(α) / d}, где α - угол от направления на цель,
+ * а d - расстояние до нее. Если цель сзади (|α| > π/2), робот
+ * разворачивается с предельной угловой скоростью по кругу не шире d/2,
+ * чтобы цель осталась снаружи круга.
+ * <p>
+ * Если для дуги не хватает предельной угловой скорости, робот сбавляет
+ * линейную скорость, а не проезжает мимо, поэтому он не облетает цель
+ * по кругу. У самой цели скорость снижается так, чтобы не проскочить ее
+ * за шаг. Угол считается через проекции, без арктангенса.
+ */
+final class PurePursuitSteering implements SteeringController
+{
+    @Override
+    public void steer(RobotBatch batch, int from, int to, double targetX, double targetY, double duration)
+    {
+        for (int i = from; i < to; i++) {
+            double diffX = targetX - batch.positionX[i];
+            double diffY = targetY - batch.positionY[i];
+            double distance = Math.sqrt(diffX * diffX + diffY * diffY);
+            if (distance < ARRIVAL_DISTANCE) {
+                batch.velocity[i] = 0;
+                batch.angularVelocity[i] = 0;
+                continue;
+            }
+            double dir = batch.direction[i];
+            double cos = Math.cos(dir);
+            double sin = Math.sin(dir);
+            // Синус угла на цель: положительный, если цель левее направления
+            // (в сторону роста угла).
+            double sinAlpha = (cos * diffY - sin * diffX) / distance;
+            double maxAngularVelocity = batch.maxAngularVelocity[i];
+            double velocity = Math.min(batch.maxVelocity[i], distance / duration);
+            if (cos * diffX + sin * diffY < 0) {
+                velocity = Math.min(velocity, maxAngularVelocity * distance / 2);
+                batch.velocity[i] = velocity;
+                batch.angularVelocity[i] = Math.copySign(maxAngularVelocity, sinAlpha);
+                continue;
+            }
+            double curvature = 2 * sinAlpha / distance;
+            if (Math.abs(curvature) * velocity > maxAngularVelocity) {
+                velocity = maxAngularVelocity / Math.abs(curvature);
+            }
+            batch.velocity[i] = velocity;
+            batch.angularVelocity[i] = ScalarBatchStepper.clamp(velocity * curvature,
+                    -maxAngularVelocity, maxAngularVelocity);
+        }
+    }
+}
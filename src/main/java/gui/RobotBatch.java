@@ -0,0 +1,101 @@
+package gui;
+
+/**
+ * Роботы мира в виде столбцов примитивных массивов для пакетного шага
+ * {@link BatchStepper}. Перед шагом значения собираются из моделей
+ * ({@link #load}), после шага раскладываются обратно ({@link #store()}).
+ * Массивы переиспользуются между шагами и растут только вместе с роем.
+ * <p>
+ * Роботы под управлением контроллера в пакет не попадают: их команды
+ * приходят из {@link RobotControl}, а не от наведения на цель.
+ */
+final class RobotBatch
+{
+    private RobotModel[] models = new RobotModel[0];
+
+    int count;
+    double[] positionX = new double[0];
+    double[] positionY = new double[0];
+    double[] direction = new double[0];
+    double[] size = new double[0];
+    double[] maxVelocity = new double[0];
+    double[] maxAngularVelocity = new double[0];
+    /** Команды текущего шага; заполняются наведением {@link SteeringController}. */
+    double[] velocity = new double[0];
+    double[] angularVelocity = new double[0];
+    /** Состояние регулятора наведения, переживающее шаг ({@link PidSteering}). */
+    double[] headingIntegral = new double[0];
+    double[] headingError = new double[0];
+
+    void load(RobotModel[] robots)
+    {
+        ensureCapacity(robots.length);
+        int n = 0;
+        for (RobotModel robot : robots) {
+            if (robot.getControl() != null) {
+                continue;
+            }
+            RobotProfile profile = robot.getProfile();
+            models[n] = robot;
+            positionX[n] = robot.getPositionX();
+            positionY[n] = robot.getPositionY();
+            direction[n] = robot.getDirection();
+            size[n] = robot.getSize();
+            maxVelocity[n] = profile.getMaxVelocity();
+            maxAngularVelocity[n] = profile.getMaxAngularVelocity();
+            headingIntegral[n] = robot.getHeadingIntegral();
+            headingError[n] = robot.getHeadingError();
+            n++;
+        }
+        count = n;
+    }
+
+    /**
+     * Пакет из одного робота, в том числе под управлением контроллера:
+     * так {@link RobotControl#driveTo} наводится тем же правилом, что и рой.
+     * Состояние регулятора наведения остается в пакете между вызовами,
+     * а {@link #store()} для такого пакета не вызывается - робота двигает мир.
+     */
+    void loadSingle(RobotModel robot)
+    {
+        ensureCapacity(1);
+        RobotProfile profile = robot.getProfile();
+        positionX[0] = robot.getPositionX();
+        positionY[0] = robot.getPositionY();
+        direction[0] = robot.getDirection();
+        size[0] = robot.getSize();
+        maxVelocity[0] = profile.getMaxVelocity();
+        maxAngularVelocity[0] = profile.getMaxAngularVelocity();
+        count = 1;
+    }
+
+    void store()
+    {
+        for (int i = 0; i < count; i++) {
+            RobotModel robot = models[i];
+            robot.setPositionX(positionX[i]);
+            robot.setPositionY(positionY[i]);
+            robot.setDirection(direction[i]);
+            robot.setSteeringState(headingIntegral[i], headingError[i]);
+            models[i] = null;
+        }
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (models.length >= capacity) {
+            return;
+        }
+        models = new RobotModel[capacity];
+        positionX = new double[capacity];
+        positionY = new double[capacity];
+        direction = new double[capacity];
+        size = new double[capacity];
+        maxVelocity = new double[capacity];
+        maxAngularVelocity = new double[capacity];
+        velocity = new double[capacity];
+        angularVelocity = new double[capacity];
+        headingIntegral = new double[capacity];
+        headingError = new double[capacity];
+    }
+}
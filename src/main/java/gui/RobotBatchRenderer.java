@@ -0,0 +1,282 @@
+package gui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Пакетная отрисовка большого количества роботов.
+ * <p>
+ * Роботы группируются по профилю {@link RobotProfile} и размеру, для каждой группы
+ * строится один составной {@link Path2D}: корпуса всех роботов группы
+ * заливаются и обводятся одним вызовом, глаза - еще двумя. Пути
+ * переиспользуются между кадрами, поэтому после прогрева кадр не
+ * выделяет памяти.
+ * <p>
+ * Когда роботов так много, что даже пакетные вызовы Java2D не успевают,
+ * используется растровый режим: каждый робот записывается прямо
+ * в массив пикселей {@link BufferedImage} как короткий отрезок вдоль
+ * направления движения, а на экран выводится одно изображение.
+ * Растр всегда в пикселях экрана: при отдаленном виде ({@link ViewCamera})
+ * отрезки укорачиваются, а роботы меньше {@link #DOT_LENGTH} пикселей
+ * рисуются точками.
+ */
+public class RobotBatchRenderer
+{
+    public static final int RASTER_THRESHOLD = 500;
+    /**
+     * Робот, который на экране короче этого числа пикселей, рисуется
+     * в растре точкой 2 x 2 без направления.
+     */
+    public static final int DOT_LENGTH = 4;
+
+    private static final double KAPPA = 0.5522847498;
+    private static final float EYE_RADIUS = 2.5f;
+    private static final int EYE_COLOR = 0xFFFFFFFF;
+
+    private RobotProfile[] groupProfiles = new RobotProfile[0];
+    private int[] groupSizes = new int[0];
+    private Path2D.Float[] groupBodies = new Path2D.Float[0];
+    private int groupCount;
+    private final Path2D.Float eyes = new Path2D.Float();
+
+    private BufferedImage raster;
+    private int[] pixels;
+    private RobotProfile lastProfile;
+    private int lastColor;
+
+    public void drawPaths(Graphics2D g, RobotModel[] robots)
+    {
+        drawPaths(g, robots, robots.length);
+    }
+
+    /**
+     * Рисует первых count роботов массива в координатах мира
+     * контекста g.
+     */
+    public void drawPaths(Graphics2D g, RobotModel[] robots, int count)
+    {
+        groupCount = 0;
+        eyes.reset();
+        for (int i = 0; i < count; i++) {
+            RobotModel robot = robots[i];
+            RobotProfile profile = robot.getProfile();
+            Path2D.Float body = groupBody(profile, robot.getSize());
+            appendRobot(body, robot, profile.getShape());
+        }
+
+        for (int i = 0; i < groupCount; i++) {
+            g.setColor(groupProfiles[i].getRobotColor());
+            g.fill(groupBodies[i]);
+            g.setColor(Color.BLACK);
+            g.draw(groupBodies[i]);
+            groupProfiles[i] = null;
+        }
+        g.setColor(Color.WHITE);
+        g.fill(eyes);
+        g.setColor(Color.BLACK);
+        g.draw(eyes);
+    }
+
+    /**
+     * Рисует роботов в непрозрачный растр, залитый цветом фона: вывод
+     * такого изображения - простое копирование без смешивания, которое
+     * при плотном рое обходится дороже самой растеризации.
+     */
+    public void drawRaster(Graphics2D g, RobotModel[] robots, int width, int height, Color background)
+    {
+        drawRaster(g, robots, robots.length, ViewCamera.IDENTITY, width, height, background);
+    }
+
+    /**
+     * Рисует первых count роботов массива в растр размером с панель
+     * width x height, пересчитывая положения через вид camera;
+     * контекст g - в экранных координатах.
+     */
+    public void drawRaster(Graphics2D g, RobotModel[] robots, int count, ViewCamera camera,
+                           int width, int height, Color background)
+    {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        if (raster == null || raster.getWidth() != width || raster.getHeight() != height) {
+            raster = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) raster.getRaster().getDataBuffer()).getData();
+        }
+        Arrays.fill(pixels, background.getRGB());
+
+        double scale = camera.getScale();
+        double offsetX = camera.getOffsetX();
+        double offsetY = camera.getOffsetY();
+        for (int i = 0; i < count; i++) {
+            plotRobot(robots[i], offsetX, offsetY, scale, width, height);
+        }
+        g.drawImage(raster, 0, 0, null);
+    }
+
+    private Path2D.Float groupBody(RobotProfile profile, int size)
+    {
+        for (int i = groupCount - 1; i >= 0; i--) {
+            if (groupProfiles[i] == profile && groupSizes[i] == size) {
+                return groupBodies[i];
+            }
+        }
+        if (groupCount == groupBodies.length) {
+            int newLength = Math.max(4, groupCount * 2);
+            groupProfiles = Arrays.copyOf(groupProfiles, newLength);
+            groupSizes = Arrays.copyOf(groupSizes, newLength);
+            groupBodies = Arrays.copyOf(groupBodies, newLength);
+        }
+        if (groupBodies[groupCount] == null) {
+            groupBodies[groupCount] = new Path2D.Float();
+        }
+        Path2D.Float body = groupBodies[groupCount];
+        body.reset();
+        groupProfiles[groupCount] = profile;
+        groupSizes[groupCount] = size;
+        groupCount++;
+        return body;
+    }
+
+    private void appendRobot(Path2D.Float body, RobotModel robot, RobotShape shape)
+    {
+        double centerX = GameRenderer.round(robot.getPositionX());
+        double centerY = GameRenderer.round(robot.getPositionY());
+        double cos = Math.cos(robot.getDirection());
+        double sin = Math.sin(robot.getDirection());
+        int width = robot.getSize();
+        int height = robot.getSize() / 3;
+        double halfWidth = width / 2.0;
+        double halfHeight = height / 2.0;
+
+        switch (shape) {
+            case OVAL:
+                appendEllipse(body, centerX, centerY, cos, sin, halfWidth, halfHeight);
+                break;
+            case RECTANGLE:
+                moveTo(body, centerX, centerY, cos, sin, -halfWidth, -halfHeight);
+                lineTo(body, centerX, centerY, cos, sin, halfWidth, -halfHeight);
+                lineTo(body, centerX, centerY, cos, sin, halfWidth, halfHeight);
+                lineTo(body, centerX, centerY, cos, sin, -halfWidth, halfHeight);
+                body.closePath();
+                break;
+            case TRIANGLE:
+                moveTo(body, centerX, centerY, cos, sin, 0, -height);
+                lineTo(body, centerX, centerY, cos, sin, halfWidth, halfHeight);
+                lineTo(body, centerX, centerY, cos, sin, -halfWidth, halfHeight);
+                body.closePath();
+                break;
+        }
+
+        double eyeX = centerX + cos * width / 3;
+        double eyeY = centerY + sin * width / 3;
+        appendEllipse(eyes, eyeX, eyeY, 1, 0, EYE_RADIUS, EYE_RADIUS);
+    }
+
+    /**
+     * Добавляет в путь эллипс с полуосями a и b, повернутый на угол
+     * с косинусом cos и синусом sin: четыре кубические кривые Безье.
+     */
+    private static void appendEllipse(Path2D.Float path, double centerX, double centerY,
+                                      double cos, double sin, double a, double b)
+    {
+        double ka = KAPPA * a;
+        double kb = KAPPA * b;
+        moveTo(path, centerX, centerY, cos, sin, a, 0);
+        curveTo(path, centerX, centerY, cos, sin, a, kb, ka, b, 0, b);
+        curveTo(path, centerX, centerY, cos, sin, -ka, b, -a, kb, -a, 0);
+        curveTo(path, centerX, centerY, cos, sin, -a, -kb, -ka, -b, 0, -b);
+        curveTo(path, centerX, centerY, cos, sin, ka, -b, a, -kb, a, 0);
+        path.closePath();
+    }
+
+    private static void moveTo(Path2D.Float path, double centerX, double centerY,
+                               double cos, double sin, double u, double v)
+    {
+        path.moveTo(centerX + u * cos - v * sin, centerY + u * sin + v * cos);
+    }
+
+    private static void lineTo(Path2D.Float path, double centerX, double centerY,
+                               double cos, double sin, double u, double v)
+    {
+        path.lineTo(centerX + u * cos - v * sin, centerY + u * sin + v * cos);
+    }
+
+    private static void curveTo(Path2D.Float path, double centerX, double centerY, double cos, double sin,
+                                double u1, double v1, double u2, double v2, double u3, double v3)
+    {
+        path.curveTo(centerX + u1 * cos - v1 * sin, centerY + u1 * sin + v1 * cos,
+                centerX + u2 * cos - v2 * sin, centerY + u2 * sin + v2 * cos,
+                centerX + u3 * cos - v3 * sin, centerY + u3 * sin + v3 * cos);
+    }
+
+    /**
+     * Рисует робота отрезком толщиной 2 пикселя вдоль направления движения
+     * с белой точкой на переднем конце, а если отрезок короче
+     * {@link #DOT_LENGTH} - одной точкой 2 x 2. Полупрозрачный цвет
+     * смешивается с уже записанным пикселем.
+     */
+    private void plotRobot(RobotModel robot, double offsetX, double offsetY, double scale, int width, int height)
+    {
+        RobotProfile profile = robot.getProfile();
+        if (profile != lastProfile) {
+            lastProfile = profile;
+            lastColor = profile.getRobotColor().getRGB();
+        }
+        int color = lastColor;
+        int alpha = color >>> 24;
+        double screenX = (robot.getPositionX() - offsetX) * scale;
+        double screenY = (robot.getPositionY() - offsetY) * scale;
+        int halfLength = (int) (robot.getSize() * scale / 2);
+        if (2 * halfLength < DOT_LENGTH) {
+            plotSquare((int) screenX, (int) screenY, width, height, color, alpha);
+            return;
+        }
+        double cos = Math.cos(robot.getDirection());
+        double sin = Math.sin(robot.getDirection());
+        double x = screenX - halfLength * cos;
+        double y = screenY - halfLength * sin;
+
+        for (int t = 0; t < 2 * halfLength; t++) {
+            plotSquare((int) x, (int) y, width, height, color, alpha);
+            x += cos;
+            y += sin;
+        }
+        int px = (int) x;
+        int py = (int) y;
+        if (px >= 0 && py >= 0 && px < width && py < height) {
+            pixels[py * width + px] = EYE_COLOR;
+        }
+    }
+
+    private void plotSquare(int px, int py, int width, int height, int color, int alpha)
+    {
+        if (px >= 0 && py >= 0 && px + 1 < width && py + 1 < height) {
+            int index = py * width + px;
+            if (alpha == 0xFF) {
+                pixels[index] = color;
+                pixels[index + 1] = color;
+                pixels[index + width] = color;
+                pixels[index + width + 1] = color;
+            } else {
+                blend(index, color, alpha);
+                blend(index + 1, color, alpha);
+                blend(index + width, color, alpha);
+                blend(index + width + 1, color, alpha);
+            }
+        }
+    }
+
+    private void blend(int index, int color, int alpha)
+    {
+        int pixel = pixels[index];
+        int inverse = 0xFF - alpha;
+        int red = (((color >> 16) & 0xFF) * alpha + ((pixel >> 16) & 0xFF) * inverse) / 0xFF;
+        int green = (((color >> 8) & 0xFF) * alpha + ((pixel >> 8) & 0xFF) * inverse) / 0xFF;
+        int blue = ((color & 0xFF) * alpha + (pixel & 0xFF) * inverse) / 0xFF;
+        pixels[index] = (red << 16) | (green << 8) | blue;
+    }
+}
@@ -0,0 +1,150 @@
+package gui;
+
+import java.util.concurrent.Phaser;
+
+/**
+ * Управление одним роботом из его контроллера.
+ * <p>
+ * Методы, которые двигают робота, задают команду на шаг и ждут, пока мир
+ * его выполнит, поэтому поведение пишется последовательно, без конечных
+ * автоматов. Состояние робота можно читать между шагами: в это время мир
+ * его не меняет. Методы {@link GameWorld} из контроллера вызывать можно:
+ * мир ждет команд, не занимая своего монитора. Нельзя только делать шаг
+ * мира из контроллера - {@link GameWorld#tick()} в этом случае бросает
+ * {@link IllegalStateException}.
+ */
+public class RobotControl
+{
+    private static final double ARRIVAL_DISTANCE = SteeringController.ARRIVAL_DISTANCE;
+    /** Во сколько раз {@link #driveTo(double, double)} ждет дольше оценки пути. */
+    static final int DRIVE_TICKS_MARGIN = 4;
+    /** Предел шагов {@link #driveTo(double, double)}: 1000 с модельного времени. */
+    static final long MAX_DRIVE_TICKS = 100_000;
+
+    private final RobotModel robot;
+    private final GameWorld world;
+    private final TickBarrier barrier;
+    private final RobotBatch steeringBatch = new RobotBatch();
+    private Phaser leaf;
+    private double velocity;
+    private double angularVelocity;
+    private long ticks;
+
+    RobotControl(RobotModel robot, GameWorld world, TickBarrier barrier)
+    {
+        this.robot = robot;
+        this.world = world;
+        this.barrier = barrier;
+    }
+
+    /**
+     * Вызывается при допуске контроллера к шагам, до запуска его потока.
+     */
+    void admit(Phaser leaf)
+    {
+        this.leaf = leaf;
+    }
+
+    public double getPositionX()
+    {
+        return robot.getPositionX();
+    }
+
+    public double getPositionY()
+    {
+        return robot.getPositionY();
+    }
+
+    public double getDirection()
+    {
+        return robot.getDirection();
+    }
+
+    /**
+     * Число шагов, прошедших с запуска контроллера.
+     */
+    public long getTicks()
+    {
+        return ticks;
+    }
+
+    /**
+     * Задает скорость и угловую скорость на следующий шаг и ждет его.
+     * Значения ограничиваются настройками робота.
+     */
+    public void step(double velocity, double angularVelocity) throws InterruptedException
+    {
+        this.velocity = velocity;
+        this.angularVelocity = angularVelocity;
+        barrier.arriveAndAwaitStep(leaf);
+        ticks++;
+    }
+
+    /**
+     * Стоит на месте заданное число шагов.
+     */
+    public void waitTicks(int count) throws InterruptedException
+    {
+        for (int i = 0; i < count; i++) {
+            step(0, 0);
+        }
+    }
+
+    /**
+     * Едет к точке по правилу наведения мира ({@link GameWorld#getSteering()},
+     * по умолчанию {@link PidSteering}) и возвращается, когда доехал.
+     * Если правило не приводит робота к точке (например, {@link BangBangSteering}
+     * кружит вокруг нее) или скорость робота нулевая, возвращается
+     * после {@value #DRIVE_TICKS_MARGIN}-кратного запаса шагов на разворот
+     * и путь по прямой, но не позже чем через {@value #MAX_DRIVE_TICKS} шагов.
+     *
+     * @return доехал ли робот
+     */
+    public boolean driveTo(double x, double y) throws InterruptedException
+    {
+        RobotProfile profile = robot.getProfile();
+        double distance = GameWorld.distance(x, y, robot.getPositionX(), robot.getPositionY());
+        double ticks = (distance / profile.getMaxVelocity() + 2 * Math.PI / profile.getMaxAngularVelocity())
+                / GameWorld.TICK_DURATION;
+        return driveTo(x, y, (long) Math.min(MAX_DRIVE_TICKS, DRIVE_TICKS_MARGIN * ticks + 1));
+    }
+
+    /**
+     * Едет к точке не дольше maxTicks шагов.
+     *
+     * @return доехал ли робот
+     */
+    public boolean driveTo(double x, double y, long maxTicks) throws InterruptedException
+    {
+        SteeringController steering = world.getSteering();
+        steeringBatch.loadSingle(robot);
+        steeringBatch.headingIntegral[0] = 0;
+        steeringBatch.headingError[0] = 0;
+        for (long tick = 0; tick < maxTicks; tick++) {
+            if (GameWorld.distance(x, y, robot.getPositionX(), robot.getPositionY()) < ARRIVAL_DISTANCE) {
+                return true;
+            }
+            steeringBatch.loadSingle(robot);
+            steering.steer(steeringBatch, 0, 1, x, y, GameWorld.TICK_DURATION);
+            step(steeringBatch.velocity[0], steeringBatch.angularVelocity[0]);
+        }
+        return GameWorld.distance(x, y, robot.getPositionX(), robot.getPositionY()) < ARRIVAL_DISTANCE;
+    }
+
+    double getVelocity()
+    {
+        return velocity;
+    }
+
+    double getAngularVelocity()
+    {
+        return angularVelocity;
+    }
+
+    void finish()
+    {
+        velocity = 0;
+        angularVelocity = 0;
+        barrier.deregister(leaf);
+    }
+}
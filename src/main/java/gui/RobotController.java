@@ -0,0 +1,29 @@
+package gui;
+
+/**
+ * Поведение робота, записанное обычным блокирующим кодом: «доехать до A,
+ * подождать, доехать до B». Каждый контроллер выполняется в своем потоке
+ * в {@link ControllerScope} и синхронизируется с шагами мира через
+ * методы {@link RobotControl}, которые ждут следующего шага.
+ */
+@FunctionalInterface
+public interface RobotController
+{
+    void run(RobotControl control) throws InterruptedException;
+
+    /**
+     * Бесконечно ездит между двумя точками, останавливаясь в каждой
+     * на pauseTicks шагов.
+     */
+    static RobotController patrol(double ax, double ay, double bx, double by, int pauseTicks)
+    {
+        return control -> {
+            while (true) {
+                control.driveTo(ax, ay);
+                control.waitTicks(pauseTicks);
+                control.driveTo(bx, by);
+                control.waitTicks(pauseTicks);
+            }
+        };
+    }
+}
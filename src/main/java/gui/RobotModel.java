@@ -1,13 +1,40 @@
 package gui;
 
 import java.awt.Color;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class RobotModel {
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    private final int id = nextId.getAndIncrement();
     private double positionX = 100;
     private double positionY = 100;
     private double direction = 0;
-    private final RobotSettings settings = new RobotSettings();
+    private final RobotSettings settings;
     private int size = 30;
+    private RobotControl control;
+    private double headingIntegral;
+    private double headingError;
+
+    public RobotModel() {
+        this(new RobotSettings());
+    }
+
+    /**
+     * Создает робота с общими настройками: так все роботы роя
+     * меняют цвет, форму и скорость вместе с основным.
+     */
+    public RobotModel(RobotSettings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Номер робота, уникальный в пределах процесса; по нему внешние
+     * программы различают роботов в телеметрии.
+     */
+    public int getId() {
+        return id;
+    }
 
     public void setPositionX(double positionX) {
         this.positionX = positionX;
@@ -22,8 +49,9 @@ public class RobotModel {
     }
 
     public void move(double velocity, double angularVelocity, double duration) {
-        velocity = applyLimits(velocity, 0, settings.getMaxVelocity());
-        angularVelocity = applyLimits(angularVelocity, -settings.getMaxAngularVelocity(), settings.getMaxAngularVelocity());
+        RobotProfile profile = settings.getProfile();
+        velocity = applyLimits(velocity, 0, profile.getMaxVelocity());
+        angularVelocity = applyLimits(angularVelocity, -profile.getMaxAngularVelocity(), profile.getMaxAngularVelocity());
 
         double newX = positionX + velocity / angularVelocity *
                 (Math.sin(direction + angularVelocity * duration) -
@@ -44,6 +72,23 @@ public class RobotModel {
         direction = asNormalizedRadians(direction + angularVelocity * duration);
     }
 
+    /**
+     * Состояние регулятора наведения между шагами: накопленная и прошлая
+     * ошибка направления на цель.
+     */
+    double getHeadingIntegral() {
+        return headingIntegral;
+    }
+
+    double getHeadingError() {
+        return headingError;
+    }
+
+    void setSteeringState(double headingIntegral, double headingError) {
+        this.headingIntegral = headingIntegral;
+        this.headingError = headingError;
+    }
+
     public void setSize(int size) {
         this.size = size;
     }
@@ -52,10 +97,29 @@ public class RobotModel {
         return size;
     }
 
+    /**
+     * Управление роботом из контроллера или {@code null}, если робот
+     * ведет себя как обычно и едет к цели.
+     */
+    RobotControl getControl() {
+        return control;
+    }
+
+    void setControl(RobotControl control) {
+        this.control = control;
+    }
+
     public RobotSettings getSettings() {
         return settings;
     }
 
+    /**
+     * Текущий профиль настроек; все значения профиля согласованы между собой.
+     */
+    public RobotProfile getProfile() {
+        return settings.getProfile();
+    }
+
     public double getPositionX() {
         return positionX;
     }
@@ -0,0 +1,140 @@
+package gui;
+
+import java.awt.Color;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+
+/**
+ * Неизменяемый набор настроек робота: цвет, прозрачность, форма
+ * и пределы скоростей. Профили интернируются: одинаковые значения дают
+ * один и тот же объект, поэтому рой из любого числа роботов держит
+ * несколько профилей, а кэши отрисовки сравнивают профили по ссылке.
+ * Таблица интернирования держит профили слабо: профиль, на который
+ * больше не ссылаются ни настройки, ни кэши, уходит вместе со сборкой
+ * мусора, так что перебор цветов и скоростей не копит профили.
+ * <p>
+ * Цвет с учетом прозрачности вычисляется один раз при создании профиля.
+ * Изменение настройки создает (или находит) другой профиль, а {@link RobotSettings}
+ * подменяет ссылку на него атомарно, так что читатели без блокировок
+ * всегда видят согласованный набор значений.
+ */
+public final class RobotProfile
+{
+    private static final Map<RobotProfile, WeakReference<RobotProfile>> interned = new WeakHashMap<>();
+
+    public static final RobotProfile DEFAULT = of(Color.MAGENTA, 1.0f, RobotShape.OVAL, 0.1, 0.001);
+
+    private final Color color;
+    private final float transparency;
+    private final RobotShape shape;
+    private final double maxVelocity;
+    private final double maxAngularVelocity;
+    private final Color effectiveColor;
+
+    private RobotProfile(Color color, float transparency, RobotShape shape,
+                         double maxVelocity, double maxAngularVelocity)
+    {
+        this.color = color;
+        this.transparency = transparency;
+        this.shape = shape;
+        this.maxVelocity = maxVelocity;
+        this.maxAngularVelocity = maxAngularVelocity;
+        this.effectiveColor = new Color(color.getRed(), color.getGreen(), color.getBlue(),
+                (int) (transparency * 255));
+    }
+
+    /**
+     * Профиль с указанными значениями; прозрачность приводится к [0, 1],
+     * альфа-канал цвета не учитывается.
+     */
+    public static RobotProfile of(Color color, float transparency, RobotShape shape,
+                                  double maxVelocity, double maxAngularVelocity)
+    {
+        RobotProfile profile = new RobotProfile(new Color(color.getRGB() & 0xFFFFFF),
+                Math.max(0, Math.min(1, transparency)), Objects.requireNonNull(shape),
+                maxVelocity, maxAngularVelocity);
+        synchronized (interned) {
+            WeakReference<RobotProfile> reference = interned.get(profile);
+            RobotProfile existing = reference != null ? reference.get() : null;
+            if (existing != null) {
+                return existing;
+            }
+            interned.put(profile, new WeakReference<>(profile));
+            return profile;
+        }
+    }
+
+    static int internedCount()
+    {
+        synchronized (interned) {
+            return interned.size();
+        }
+    }
+
+    /**
+     * Цвет робота с учетом прозрачности.
+     */
+    public Color getRobotColor() { return effectiveColor; }
+
+    /**
+     * Цвет без учета прозрачности.
+     */
+    public Color getBaseColor() { return color; }
+
+    public float getTransparency() { return transparency; }
+
+    public RobotShape getShape() { return shape; }
+
+    public double getMaxVelocity() { return maxVelocity; }
+
+    public double getMaxAngularVelocity() { return maxAngularVelocity; }
+
+    public RobotProfile withColor(Color color)
+    {
+        return of(color, transparency, shape, maxVelocity, maxAngularVelocity);
+    }
+
+    public RobotProfile withTransparency(float transparency)
+    {
+        return of(color, transparency, shape, maxVelocity, maxAngularVelocity);
+    }
+
+    public RobotProfile withShape(RobotShape shape)
+    {
+        return of(color, transparency, shape, maxVelocity, maxAngularVelocity);
+    }
+
+    public RobotProfile withSpeed(double maxVelocity, double maxAngularVelocity)
+    {
+        return of(color, transparency, shape, maxVelocity, maxAngularVelocity);
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (!(o instanceof RobotProfile)) return false;
+        RobotProfile other = (RobotProfile) o;
+        return color.getRGB() == other.color.getRGB()
+                && Float.compare(transparency, other.transparency) == 0
+                && shape == other.shape
+                && Double.compare(maxVelocity, other.maxVelocity) == 0
+                && Double.compare(maxAngularVelocity, other.maxAngularVelocity) == 0;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(color.getRGB(), transparency, shape, maxVelocity, maxAngularVelocity);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RobotProfile[color=" + Integer.toHexString(color.getRGB() & 0xFFFFFF)
+                + ", transparency=" + transparency + ", shape=" + shape
+                + ", maxVelocity=" + maxVelocity + ", maxAngularVelocity=" + maxAngularVelocity + "]";
+    }
+}
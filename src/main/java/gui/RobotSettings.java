@@ -1,37 +1,65 @@
 package gui;
 
 import java.awt.Color;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
+/**
+ * Изменяемые настройки группы роботов: ссылка на текущий неизменяемый
+ * {@link RobotProfile}. Роботы роя делят один объект настроек, поэтому
+ * команда меню меняет их всех разом.
+ * <p>
+ * Каждое изменение атомарно подменяет профиль целиком. Симуляция
+ * и отрисовка берут профиль один раз ({@link #getProfile()}) и читают
+ * из него все значения, так что не видят наполовину примененных
+ * изменений из потока событий.
+ */
 public class RobotSettings {
-    private Color robotColor = Color.MAGENTA;
-    private double maxVelocity = 0.1;
-    private double maxAngularVelocity = 0.001;
-    private RobotShape shape = RobotShape.OVAL;
-    private float transparency = 1.0f;
-
-    public Color getRobotColor() {
-        return new Color(
-                robotColor.getRed(),
-                robotColor.getGreen(),
-                robotColor.getBlue(),
-                (int)(transparency * 255)
-        );
+    private final AtomicReference<RobotProfile> profile;
+
+    public RobotSettings() {
+        this(RobotProfile.DEFAULT);
     }
 
-    public void setRobotColor(Color color) {
-        this.robotColor = color;
+    public RobotSettings(RobotProfile profile) {
+        this.profile = new AtomicReference<>(profile);
     }
 
-    public double getMaxVelocity() { return maxVelocity; }
-    public void setMaxVelocity(double velocity) { this.maxVelocity = velocity; }
+    public RobotProfile getProfile() {
+        return profile.get();
+    }
 
-    public double getMaxAngularVelocity() { return maxAngularVelocity; }
-    public void setMaxAngularVelocity(double velocity) { this.maxAngularVelocity = velocity; }
+    public void setProfile(RobotProfile profile) {
+        this.profile.set(profile);
+    }
+
+    /**
+     * Заменяет профиль результатом функции; при одновременных
+     * изменениях функция может вызываться повторно.
+     */
+    public RobotProfile update(UnaryOperator<RobotProfile> change) {
+        return profile.updateAndGet(change);
+    }
 
-    public RobotShape getShape() { return shape; }
-    public void setShape(RobotShape shape) { this.shape = shape; }
+    /**
+     * Цвет робота с учетом прозрачности.
+     */
+    public Color getRobotColor() { return getProfile().getRobotColor(); }
+    public void setRobotColor(Color color) { update(p -> p.withColor(color)); }
 
-    public void setTransparency(float value) {
-        this.transparency = Math.max(0, Math.min(1, value));
+    public double getMaxVelocity() { return getProfile().getMaxVelocity(); }
+    public void setMaxVelocity(double velocity) {
+        update(p -> p.withSpeed(velocity, p.getMaxAngularVelocity()));
     }
-}
\ No newline at end of file
+
+    public double getMaxAngularVelocity() { return getProfile().getMaxAngularVelocity(); }
+    public void setMaxAngularVelocity(double velocity) {
+        update(p -> p.withSpeed(p.getMaxVelocity(), velocity));
+    }
+
+    public RobotShape getShape() { return getProfile().getShape(); }
+    public void setShape(RobotShape shape) { update(p -> p.withShape(shape)); }
+
+    public float getTransparency() { return getProfile().getTransparency(); }
+    public void setTransparency(float value) { update(p -> p.withTransparency(value)); }
+}
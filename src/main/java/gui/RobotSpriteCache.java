@@ -0,0 +1,163 @@
+package gui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Кэш заранее отрисованных спрайтов робота.
+ * Спрайты хранятся наборами по ключу (форма, размер, цвет с прозрачностью),
+ * внутри набора - по квантованному углу поворота. Наборы вытесняются
+ * по принципу LRU. Пока профиль робота не меняется, получение спрайта
+ * не выделяет памяти: набор текущего профиля запоминается отдельно, а
+ * спрайты для новых углов дорисовываются по мере надобности. Профили
+ * неизменяемы и интернированы, поэтому их достаточно сравнивать по ссылке.
+ */
+public class RobotSpriteCache
+{
+    public static final int ROTATION_BUCKETS = 128;
+    private static final int SPRITE_MARGIN = 2;
+    private static final int EYE_DIAMETER = 5;
+
+    private final Map<SpriteKey, BufferedImage[]> spriteSets;
+
+    private RobotProfile currentProfile;
+    private int currentSize;
+    private SpriteKey currentKey;
+    private BufferedImage[] currentSprites;
+
+    public RobotSpriteCache(int maxSpriteSets)
+    {
+        this.spriteSets = new LinkedHashMap<>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SpriteKey, BufferedImage[]> eldest)
+            {
+                return size() > maxSpriteSets;
+            }
+        };
+    }
+
+    public synchronized BufferedImage getSprite(RobotProfile profile, int size, double direction)
+    {
+        if (profile != currentProfile || size != currentSize) {
+            selectSpriteSet(profile, size);
+        }
+        int bucket = rotationBucket(direction);
+        BufferedImage sprite = currentSprites[bucket];
+        if (sprite == null) {
+            sprite = renderSprite(currentKey, bucket);
+            currentSprites[bucket] = sprite;
+        }
+        return sprite;
+    }
+
+    /**
+     * Сбрасывает все закэшированные спрайты.
+     */
+    public synchronized void invalidate()
+    {
+        spriteSets.clear();
+        currentProfile = null;
+        currentKey = null;
+        currentSprites = null;
+    }
+
+    private void selectSpriteSet(RobotProfile profile, int size)
+    {
+        currentProfile = profile;
+        currentSize = size;
+        currentKey = new SpriteKey(profile.getShape(), size, profile.getRobotColor().getRGB());
+        currentSprites = spriteSets.computeIfAbsent(currentKey, key -> new BufferedImage[ROTATION_BUCKETS]);
+    }
+
+    private static int rotationBucket(double direction)
+    {
+        int bucket = (int) Math.round(direction / (2 * Math.PI) * ROTATION_BUCKETS) % ROTATION_BUCKETS;
+        return bucket < 0 ? bucket + ROTATION_BUCKETS : bucket;
+    }
+
+    private static BufferedImage renderSprite(SpriteKey key, int bucket)
+    {
+        int width = key.size();
+        int height = key.size() / 3;
+        int radius = (int) Math.ceil(Math.hypot(width / 2.0, height)) + SPRITE_MARGIN;
+        int side = 2 * radius + 1;
+
+        BufferedImage sprite = createCompatibleImage(side, side);
+        Graphics2D g = sprite.createGraphics();
+        try {
+            g.rotate(2 * Math.PI * bucket / ROTATION_BUCKETS, radius, radius);
+            drawRobotShape(g, key.shape(), new Color(key.argb(), true), radius, radius, width, height);
+        } finally {
+            g.dispose();
+        }
+        return sprite;
+    }
+
+    private static BufferedImage createCompatibleImage(int width, int height)
+    {
+        if (GraphicsEnvironment.isHeadless()) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        return GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice()
+                .getDefaultConfiguration()
+                .createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+    }
+
+    private static void drawRobotShape(Graphics2D g, RobotShape shape, Color color,
+                                       int centerX, int centerY, int width, int height)
+    {
+        g.setColor(color);
+        switch (shape) {
+            case OVAL:
+                g.fillOval(centerX - width / 2, centerY - height / 2, width, height);
+                break;
+            case RECTANGLE:
+                g.fillRect(centerX - width / 2, centerY - height / 2, width, height);
+                break;
+            case TRIANGLE:
+                g.fillPolygon(triangleX(centerX, width), triangleY(centerY, height), 3);
+                break;
+        }
+
+        g.setColor(Color.BLACK);
+        switch (shape) {
+            case OVAL:
+                g.drawOval(centerX - width / 2, centerY - height / 2, width, height);
+                break;
+            case RECTANGLE:
+                g.drawRect(centerX - width / 2, centerY - height / 2, width, height);
+                break;
+            case TRIANGLE:
+                g.drawPolygon(triangleX(centerX, width), triangleY(centerY, height), 3);
+                break;
+        }
+
+        int eyeX = centerX + width / 3 - EYE_DIAMETER / 2;
+        int eyeY = centerY - EYE_DIAMETER / 2;
+        g.setColor(Color.WHITE);
+        g.fillOval(eyeX, eyeY, EYE_DIAMETER, EYE_DIAMETER);
+        g.setColor(Color.BLACK);
+        g.drawOval(eyeX, eyeY, EYE_DIAMETER, EYE_DIAMETER);
+    }
+
+    private static int[] triangleX(int centerX, int width)
+    {
+        return new int[] {centerX, centerX + width / 2, centerX - width / 2};
+    }
+
+    private static int[] triangleY(int centerY, int height)
+    {
+        return new int[] {centerY - height, centerY + height / 2, centerY + height / 2};
+    }
+
+    private record SpriteKey(RobotShape shape, int size, int argb)
+    {
+    }
+}
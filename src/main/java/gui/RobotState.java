@@ -0,0 +1,39 @@
+package gui;
+
+import java.awt.Color;
+
+public record RobotState(int rgb,
+                         float transparency,
+                         RobotShape shape,
+                         double maxVelocity,
+                         double maxAngularVelocity,
+                         int size,
+                         double positionX,
+                         double positionY,
+                         double direction) {
+    public static RobotState fromModel(RobotModel model) {
+        RobotProfile profile = model.getProfile();
+        return new RobotState(
+                profile.getBaseColor().getRGB() & 0xFFFFFF,
+                profile.getTransparency(),
+                profile.getShape(),
+                profile.getMaxVelocity(),
+                profile.getMaxAngularVelocity(),
+                model.getSize(),
+                model.getPositionX(),
+                model.getPositionY(),
+                model.getDirection()
+        );
+    }
+
+    public void applyTo(GameWorld world) {
+        world.getRobotSettings().setProfile(
+                RobotProfile.of(new Color(rgb), transparency, shape, maxVelocity, maxAngularVelocity));
+        world.setRobotSize(size);
+
+        RobotModel model = world.getRobotModel();
+        model.setPositionX(positionX);
+        model.setPositionY(positionY);
+        model.setDirection(direction);
+    }
+}
@@ -1,13 +1,27 @@
 package gui;
 
+import java.awt.EventQueue;
 import java.awt.Frame;
+import java.io.IOException;
+import java.util.Arrays;
 
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 
+import analysis.OfflineAnalyzer;
+import log.LogFileWriter;
+import log.Logger;
+
 public class RobotsProgram
 {
     public static void main(String[] args) {
+      if (args.length > 0 && args[0].equals(OfflineAnalyzer.FLAG)) {
+        OfflineAnalyzer.main(Arrays.copyOfRange(args, 1, args.length));
+        return;
+      }
+      openLogFile();
+      StartupProfiler.setPrintReport(Arrays.asList(args).contains(StartupProfiler.REPORT_FLAG));
+      long phaseStart = StartupProfiler.start();
       try {
         UIManager.setLookAndFeel("javax.swing.plaf.nimbus.NimbusLookAndFeel");
 //        UIManager.setLookAndFeel("javax.swing.plaf.metal.MetalLookAndFeel");
@@ -16,10 +30,38 @@ public class RobotsProgram
       } catch (Exception e) {
         e.printStackTrace();
       }
+      StartupProfiler.record("Оформление (L&F)", phaseStart);
       SwingUtilities.invokeLater(() -> {
         MainApplicationFrame frame = new MainApplicationFrame();
+        long showStart = StartupProfiler.start();
         frame.pack();
         frame.setVisible(true);
         frame.setExtendedState(Frame.MAXIMIZED_BOTH);
+        StartupProfiler.record("Показ главного окна", showStart);
+        EventQueue.invokeLater(StartupProfiler::finish);
       });
+    }
+
+    /**
+     * Если задано свойство {@value LogFileWriter#PATH_PROPERTY}, протоколы
+     * дублируются в файл для последующего разбора ({@link OfflineAnalyzer}).
+     */
+    private static void openLogFile() {
+      if (System.getProperty(LogFileWriter.PATH_PROPERTY) == null) {
+        return;
+      }
+      try {
+        LogFileWriter writer = LogFileWriter.open(LogFileWriter.defaultPath());
+        Logger.setFileWriter(writer);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+          Logger.setFileWriter(null);
+          try {
+            writer.close();
+          } catch (IOException e) {
+            e.printStackTrace();
+          }
+        }, "log file close"));
+      } catch (IOException e) {
+        Logger.error("Не удалось открыть файл протокола: " + e.getMessage());
+      }
     }}
@@ -0,0 +1,107 @@
+package gui;
+
+/**
+ * Пакетный шаг без векторных инструкций. Повторяет арифметику
+ * {@link GameWorld#step} и {@link RobotModel#move} операция в операцию,
+ * поэтому с наведением {@link BangBangSteering} результаты совпадают
+ * с пошаговым вариантом бит в бит; служит эталоном для
+ * {@link VectorBatchStepper} и обрабатывает его хвост.
+ */
+final class ScalarBatchStepper implements BatchStepper
+{
+    private static final double TWO_PI = 2 * Math.PI;
+
+    @Override
+    public void step(RobotBatch batch, SteeringController steering, double targetX, double targetY,
+                     int fieldWidth, int fieldHeight, double duration)
+    {
+        stepRange(batch, 0, batch.count, steering, targetX, targetY, fieldWidth, fieldHeight, duration);
+    }
+
+    static void stepRange(RobotBatch batch, int from, int to, SteeringController steering,
+                          double targetX, double targetY, int fieldWidth, int fieldHeight, double duration)
+    {
+        reflectFromWalls(batch, from, to, fieldWidth, fieldHeight);
+        steering.steer(batch, from, to, targetX, targetY, duration);
+        move(batch, from, to, duration);
+    }
+
+    private static void reflectFromWalls(RobotBatch batch, int from, int to, int fieldWidth, int fieldHeight)
+    {
+        double[] positionX = batch.positionX;
+        double[] positionY = batch.positionY;
+        double[] direction = batch.direction;
+        for (int i = from; i < to; i++) {
+            double x = positionX[i];
+            double y = positionY[i];
+            double dir = direction[i];
+            double half = batch.size[i] / 2;
+
+            if (x < half) {
+                dir = Math.PI - dir;
+                x = half;
+            } else if (x > fieldWidth - half) {
+                dir = Math.PI - dir;
+                x = fieldWidth - half;
+            }
+            if (y < half) {
+                dir = -dir;
+                y = half;
+            } else if (y > fieldHeight - half) {
+                dir = -dir;
+                y = fieldHeight - half;
+            }
+
+            positionX[i] = x;
+            positionY[i] = y;
+            direction[i] = normalize(dir);
+        }
+    }
+
+    /**
+     * Движение по командам наведения. Нулевая команда оставляет робота
+     * на месте, как и пропуск движения в {@link GameWorld#step}.
+     */
+    private static void move(RobotBatch batch, int from, int to, double duration)
+    {
+        double[] positionX = batch.positionX;
+        double[] positionY = batch.positionY;
+        double[] direction = batch.direction;
+        for (int i = from; i < to; i++) {
+            double x = positionX[i];
+            double y = positionY[i];
+            double dir = direction[i];
+            double maxVelocity = batch.maxVelocity[i];
+            double maxAngularVelocity = batch.maxAngularVelocity[i];
+            double velocity = clamp(batch.velocity[i], 0, maxVelocity);
+            double angularVelocity = clamp(batch.angularVelocity[i], -maxAngularVelocity, maxAngularVelocity);
+
+            double turned = dir + angularVelocity * duration;
+            double newX = x + velocity / angularVelocity * (Math.sin(turned) - Math.sin(dir));
+            if (!Double.isFinite(newX)) {
+                newX = x + velocity * duration * Math.cos(dir);
+            }
+            double newY = y - velocity / angularVelocity * (Math.cos(turned) - Math.cos(dir));
+            if (!Double.isFinite(newY)) {
+                newY = y + velocity * duration * Math.sin(dir);
+            }
+            positionX[i] = newX;
+            positionY[i] = newY;
+            direction[i] = normalize(turned);
+        }
+    }
+
+    static double clamp(double value, double min, double max)
+    {
+        if (value < min) return min;
+        if (value > max) return max;
+        return value;
+    }
+
+    static double normalize(double angle)
+    {
+        while (angle < 0) angle += TWO_PI;
+        while (angle >= TWO_PI) angle -= TWO_PI;
+        return angle;
+    }
+}
@@ -0,0 +1,231 @@
+package gui;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Двоичный файл сессии.
+ * <p>
+ * Формат (big-endian): сигнатура {@code RBSS}, номер версии (short),
+ * флаги присутствующих секций (byte), затем секции главного окна,
+ * внутренних окон и робота. Строки записываются как длина (short)
+ * и байты UTF-8. Файл читается за один проход в буфер в куче,
+ * а записывается во временный файл, который затем атомарно
+ * переименовывается, так что при сбое на диске остается либо старая,
+ * либо новая версия целиком.
+ * <p>
+ * Файл не отображается в память: отображение живет до сборки мусора,
+ * и пока оно живо, Windows не дает заменить файл переименованием.
+ * Тем же чтением ({@link #readFully}) и записью ({@link #writeAtomically})
+ * пользуется {@link CheckpointFile}.
+ */
+public final class SessionFile
+{
+    public static final String PATH_PROPERTY = "robots.sessionFile";
+
+    private static final int MAGIC = 0x52425353;
+    private static final short VERSION = 1;
+    private static final int HAS_MAIN_FRAME = 1;
+    private static final int HAS_ROBOT = 2;
+    private static final int INTERNAL_FRAME_MINIMIZED = 1;
+    private static final int INTERNAL_FRAME_MAXIMIZED = 2;
+
+    private SessionFile()
+    {
+    }
+
+    public static Path defaultPath()
+    {
+        String path = System.getProperty(PATH_PROPERTY);
+        if (path != null) {
+            return Paths.get(path);
+        }
+        return Paths.get(System.getProperty("user.home"), ".robots", "session.bin");
+    }
+
+    public static SessionState read(Path path) throws IOException
+    {
+        ByteBuffer buffer = readFully(path);
+        try {
+            return decode(buffer);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupted session file " + path, e);
+        }
+    }
+
+    /**
+     * Читает файл целиком в буфер в куче, готовый к разбору.
+     */
+    static ByteBuffer readFully(Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException("File too large: " + path);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    public static void write(Path path, SessionState state) throws IOException
+    {
+        writeAtomically(path, encode(state));
+    }
+
+    /**
+     * Записывает буфер во временный файл рядом с path и атомарно
+     * переименовывает его в path.
+     */
+    static void writeAtomically(Path path, ByteBuffer buffer) throws IOException
+    {
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    static SessionState decode(ByteBuffer buffer) throws IOException
+    {
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a session file");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported session file version " + version);
+        }
+        int sections = buffer.get();
+
+        MainFrameState mainFrame = null;
+        if ((sections & HAS_MAIN_FRAME) != 0) {
+            mainFrame = new MainFrameState(readGeometry(buffer), buffer.getInt());
+        }
+
+        int internalFrameCount = buffer.getInt();
+        Map<String, InternalFrameState> internalFrames = new LinkedHashMap<>();
+        for (int i = 0; i < internalFrameCount; i++) {
+            String key = readString(buffer);
+            WindowGeometry geometry = readGeometry(buffer);
+            int flags = buffer.get();
+            internalFrames.put(key, new InternalFrameState(geometry,
+                    (flags & INTERNAL_FRAME_MINIMIZED) != 0,
+                    (flags & INTERNAL_FRAME_MAXIMIZED) != 0));
+        }
+
+        RobotState robot = null;
+        if ((sections & HAS_ROBOT) != 0) {
+            robot = new RobotState(
+                    buffer.getInt(),
+                    buffer.getFloat(),
+                    RobotShape.values()[buffer.get()],
+                    buffer.getDouble(),
+                    buffer.getDouble(),
+                    buffer.getInt(),
+                    buffer.getDouble(),
+                    buffer.getDouble(),
+                    buffer.getDouble());
+        }
+        return new SessionState(mainFrame, internalFrames, robot);
+    }
+
+    static ByteBuffer encode(SessionState state)
+    {
+        int size = 4 + 2 + 1 + 4 * 5 + 4;
+        Map<String, byte[]> keys = new LinkedHashMap<>();
+        for (String key : state.internalFrames().keySet()) {
+            byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+            keys.put(key, bytes);
+            size += 2 + bytes.length + 4 * 4 + 1;
+        }
+        size += 4 + 4 + 1 + 8 * 2 + 4 + 8 * 3;
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        int sections = (state.mainFrame() != null ? HAS_MAIN_FRAME : 0)
+                | (state.robot() != null ? HAS_ROBOT : 0);
+        buffer.put((byte) sections);
+
+        if (state.mainFrame() != null) {
+            writeGeometry(buffer, state.mainFrame().geometry());
+            buffer.putInt(state.mainFrame().extendedState());
+        }
+
+        buffer.putInt(state.internalFrames().size());
+        for (Map.Entry<String, InternalFrameState> entry : state.internalFrames().entrySet()) {
+            byte[] key = keys.get(entry.getKey());
+            buffer.putShort((short) key.length);
+            buffer.put(key);
+            writeGeometry(buffer, entry.getValue().geometry());
+            int flags = (entry.getValue().isMinimized() ? INTERNAL_FRAME_MINIMIZED : 0)
+                    | (entry.getValue().isMaximized() ? INTERNAL_FRAME_MAXIMIZED : 0);
+            buffer.put((byte) flags);
+        }
+
+        RobotState robot = state.robot();
+        if (robot != null) {
+            buffer.putInt(robot.rgb());
+            buffer.putFloat(robot.transparency());
+            buffer.put((byte) robot.shape().ordinal());
+            buffer.putDouble(robot.maxVelocity());
+            buffer.putDouble(robot.maxAngularVelocity());
+            buffer.putInt(robot.size());
+            buffer.putDouble(robot.positionX());
+            buffer.putDouble(robot.positionY());
+            buffer.putDouble(robot.direction());
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static WindowGeometry readGeometry(ByteBuffer buffer)
+    {
+        return new WindowGeometry(buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+    }
+
+    private static void writeGeometry(ByteBuffer buffer, WindowGeometry geometry)
+    {
+        buffer.putInt(geometry.x());
+        buffer.putInt(geometry.y());
+        buffer.putInt(geometry.width());
+        buffer.putInt(geometry.height());
+    }
+
+    private static String readString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
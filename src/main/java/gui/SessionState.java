@@ -0,0 +1,19 @@
+package gui;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Все, что сохраняется между запусками: геометрия главного окна,
+ * геометрия внутренних окон по их ключам и состояние основного робота.
+ */
+public record SessionState(MainFrameState mainFrame,
+                           Map<String, InternalFrameState> internalFrames,
+                           RobotState robot) {
+    public static final SessionState EMPTY = new SessionState(null, Map.of(), null);
+
+    public SessionState {
+        internalFrames = Collections.unmodifiableMap(new LinkedHashMap<>(internalFrames));
+    }
+}
@@ -0,0 +1,250 @@
+package gui;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import log.Logger;
+import log.NamedLogger;
+import metrics.Counter;
+import metrics.LatencyHistogram;
+import metrics.MetricsRegistry;
+
+/**
+ * Общий планировщик шагов симуляции для всех игровых полей процесса.
+ * Вместо потока-таймера на каждое поле шаги выполняет ограниченное
+ * число рабочих потоков ({@value #THREADS_PROPERTY}, по умолчанию не
+ * больше числа процессоров и не больше четырех).
+ * <p>
+ * Задачи стоят в одной очереди по времени следующего шага. Выполненная
+ * задача встает в очередь со сроком на период позже прежнего, поэтому
+ * при перегрузке поля обслуживаются по кругу и отстают одинаково,
+ * а не одно за счет другого. Отставание больше {@value #MAX_LAG_PERIODS}
+ * периодов не догоняется: пропущенные шаги отбрасываются.
+ * <p>
+ * Приостановленная задача убирается из очереди и не занимает потоки;
+ * отмененная больше не выполняется, и планировщик не держит на нее ссылок.
+ * Задача, бросившая исключение, отменяется.
+ */
+public final class SimulationScheduler
+{
+    public static final String THREADS_PROPERTY = "robots.simulationThreads";
+
+    private static final NamedLogger LOG = Logger.get("sim.scheduler");
+    private static final int MAX_LAG_PERIODS = 25;
+    private static final SimulationScheduler defaultScheduler = new SimulationScheduler(
+            Integer.getInteger(THREADS_PROPERTY,
+                    Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()))));
+
+    private static final Counter SKIPPED = MetricsRegistry.getDefault().counter("scheduler.skippedTicks");
+    private static final LatencyHistogram LAG_NANOS = MetricsRegistry.getDefault().histogram("scheduler.lag");
+
+    private final DelayQueue<Task> queue = new DelayQueue<>();
+    private final Thread[] workers;
+    private final AtomicInteger activeTasks = new AtomicInteger();
+    private boolean started;
+
+    static {
+        MetricsRegistry.getDefault().gauge("scheduler.activeTasks", () -> defaultScheduler.getActiveTaskCount());
+    }
+
+    public SimulationScheduler(int threads)
+    {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        workers = new Thread[threads];
+    }
+
+    public static SimulationScheduler getDefault()
+    {
+        return defaultScheduler;
+    }
+
+    /**
+     * Ставит задачу с периодом {@code periodNanos}; первый шаг выполняется
+     * сразу. Рабочие потоки запускаются при первой постановке задачи.
+     */
+    public Task schedule(String name, Runnable action, long periodNanos)
+    {
+        if (periodNanos <= 0) {
+            throw new IllegalArgumentException("period must be positive: " + periodNanos);
+        }
+        startWorkers();
+        Task task = new Task(name, action, periodNanos);
+        task.resume();
+        return task;
+    }
+
+    public int getThreadCount()
+    {
+        return workers.length;
+    }
+
+    /**
+     * Число задач, которые не приостановлены и не отменены.
+     */
+    public int getActiveTaskCount()
+    {
+        return activeTasks.get();
+    }
+
+    private synchronized void startWorkers()
+    {
+        if (started) {
+            return;
+        }
+        started = true;
+        for (int i = 0; i < workers.length; i++) {
+            Thread worker = new Thread(this::runWorker, "simulation " + i);
+            worker.setDaemon(true);
+            workers[i] = worker;
+            worker.start();
+        }
+    }
+
+    private void runWorker()
+    {
+        while (true) {
+            Task task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            task.runOnce();
+        }
+    }
+
+    /**
+     * Задача планировщика: одно игровое поле или другая периодическая работа.
+     * Одна и та же задача никогда не выполняется в двух потоках сразу.
+     */
+    public final class Task implements Delayed
+    {
+        private final String name;
+        private final Runnable action;
+        private final long periodNanos;
+        private long nextRunNanos;
+        private boolean paused = true;
+        private boolean cancelled;
+        /** Задача в очереди или уже взята рабочим потоком. */
+        private boolean scheduled;
+
+        private Task(String name, Runnable action, long periodNanos)
+        {
+            this.name = name;
+            this.action = action;
+            this.periodNanos = periodNanos;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * Снимает задачу с расписания до {@link #resume()}. Если шаг
+         * уже выполняется, он доработает, но следующий не начнется.
+         */
+        public synchronized void pause()
+        {
+            if (paused || cancelled) {
+                return;
+            }
+            paused = true;
+            activeTasks.decrementAndGet();
+            if (queue.remove(this)) {
+                scheduled = false;
+            }
+        }
+
+        /**
+         * Возвращает задачу в расписание; пропущенные за паузу шаги
+         * не догоняются.
+         */
+        public synchronized void resume()
+        {
+            if (!paused || cancelled) {
+                return;
+            }
+            paused = false;
+            activeTasks.incrementAndGet();
+            if (!scheduled) {
+                scheduled = true;
+                nextRunNanos = System.nanoTime();
+                queue.add(this);
+            }
+        }
+
+        /**
+         * Окончательно убирает задачу из планировщика.
+         */
+        public synchronized void cancel()
+        {
+            if (cancelled) {
+                return;
+            }
+            pause();
+            cancelled = true;
+        }
+
+        public synchronized boolean isPaused()
+        {
+            return paused;
+        }
+
+        public synchronized boolean isCancelled()
+        {
+            return cancelled;
+        }
+
+        private void runOnce()
+        {
+            long lag;
+            synchronized (this) {
+                if (paused) {
+                    scheduled = false;
+                    return;
+                }
+                lag = System.nanoTime() - nextRunNanos;
+            }
+            LAG_NANOS.record(Math.max(0, lag));
+            try {
+                action.run();
+            } catch (RuntimeException | Error e) {
+                // Как и прежний таймер, упавшая задача больше не выполняется,
+                // но рабочий поток остается обслуживать остальные.
+                LOG.error("Simulation task " + name + " failed: " + e);
+                cancel();
+            } finally {
+                synchronized (this) {
+                    if (paused) {
+                        scheduled = false;
+                    } else {
+                        nextRunNanos += periodNanos;
+                        long now = System.nanoTime();
+                        if (now - nextRunNanos > MAX_LAG_PERIODS * periodNanos) {
+                            SKIPPED.add((now - nextRunNanos) / periodNanos);
+                            nextRunNanos = now;
+                        }
+                        queue.add(this);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit)
+        {
+            return unit.convert(nextRunNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other)
+        {
+            return Long.compare(nextRunNanos, ((Task) other).nextRunNanos);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package gui;
+
+import java.util.Arrays;
+
+/**
+ * Пространственный индекс роботов: равномерная сетка из клеток
+ * {@link #CELL_SIZE} x {@link #CELL_SIZE} единиц мира.
+ * <p>
+ * Индекс строится целиком по снимку положений сортировкой подсчетом:
+ * сначала считается число роботов в каждой клетке, затем номера роботов
+ * раскладываются в один массив так, что роботы одной клетки идут подряд.
+ * Построение стоит O(число роботов + число клеток) и после прогрева не
+ * выделяет памяти, а запрос прямоугольной области проходит только
+ * по клеткам, которые ее пересекают, и стоит O(найденных роботов).
+ * <p>
+ * Роботы за границей поля попадают в крайние клетки. Построение
+ * и запросы синхронизированы на объекте индекса.
+ */
+final class SpatialGrid
+{
+    static final int CELL_SIZE = 64;
+
+    /**
+     * Запас по краям запрашиваемой области сверх размера робота: роботы
+     * рисуются по текущим положениям, которые успевают немного уйти
+     * от снимка, по которому построен индекс.
+     */
+    static final double QUERY_MARGIN = 8;
+
+    private RobotModel[] robots = new RobotModel[0];
+    private double[] positionsX = new double[0];
+    private double[] positionsY = new double[0];
+    private int[] cellStart = new int[1];
+    private int[] order = new int[0];
+    private int columns;
+    private int rows;
+    private int count;
+    private int maxRobotSize;
+
+    /**
+     * Строит индекс по текущим положениям роботов на поле width x height.
+     */
+    synchronized void build(RobotModel[] robots, int width, int height)
+    {
+        this.robots = robots;
+        count = robots.length;
+        columns = Math.max(1, (width + CELL_SIZE - 1) / CELL_SIZE);
+        rows = Math.max(1, (height + CELL_SIZE - 1) / CELL_SIZE);
+        int cells = columns * rows;
+        if (cellStart.length < cells + 1) {
+            cellStart = new int[cells + 1];
+        } else {
+            Arrays.fill(cellStart, 0, cells + 1, 0);
+        }
+        if (order.length < count) {
+            int capacity = Math.max(count, order.length * 2);
+            order = new int[capacity];
+            positionsX = new double[capacity];
+            positionsY = new double[capacity];
+        }
+
+        int maxSize = 0;
+        for (int i = 0; i < count; i++) {
+            RobotModel robot = robots[i];
+            double x = robot.getPositionX();
+            double y = robot.getPositionY();
+            positionsX[i] = x;
+            positionsY[i] = y;
+            maxSize = Math.max(maxSize, robot.getSize());
+            cellStart[cellOf(x, y) + 1]++;
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        // cellStart[cell] служит курсором записи и после раскладки
+        // сдвигается на начало следующей клетки, поэтому потом
+        // массив сдвигается обратно на одну клетку.
+        for (int i = 0; i < count; i++) {
+            order[cellStart[cellOf(positionsX[i], positionsY[i])]++] = i;
+        }
+        System.arraycopy(cellStart, 0, cellStart, 1, cells);
+        cellStart[0] = 0;
+        maxRobotSize = maxSize;
+    }
+
+    /**
+     * Записывает в result роботов, которые могут быть видны в области
+     * мира (minX, minY) - (maxX, maxY): область расширяется на размер
+     * самого большого робота и {@link #QUERY_MARGIN}. Возвращает число
+     * найденных роботов; если оно больше длины result, записываются только
+     * первые, и вызывающий повторяет запрос с массивом побольше.
+     */
+    synchronized int query(double minX, double minY, double maxX, double maxY, RobotModel[] result)
+    {
+        double margin = maxRobotSize + QUERY_MARGIN;
+        int firstColumn = column(minX - margin);
+        int lastColumn = column(maxX + margin);
+        int firstRow = row(minY - margin);
+        int lastRow = row(maxY + margin);
+        double left = minX - margin;
+        double right = maxX + margin;
+        double top = minY - margin;
+        double bottom = maxY + margin;
+
+        int found = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            boolean edgeRow = row == firstRow || row == lastRow;
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                boolean edge = edgeRow || column == firstColumn || column == lastColumn;
+                int cell = row * columns + column;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int i = order[k];
+                    if (edge) {
+                        double x = positionsX[i];
+                        double y = positionsY[i];
+                        if (x < left || x > right || y < top || y > bottom) {
+                            continue;
+                        }
+                    }
+                    if (found < result.length) {
+                        result[found] = robots[i];
+                    }
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    private int cellOf(double x, double y)
+    {
+        return row(y) * columns + column(x);
+    }
+
+    private int column(double x)
+    {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor(x / CELL_SIZE)));
+    }
+
+    private int row(double y)
+    {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor(y / CELL_SIZE)));
+    }
+}
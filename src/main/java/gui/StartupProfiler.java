@@ -0,0 +1,81 @@
+package gui;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import log.Logger;
+import log.NamedLogger;
+
+/**
+ * Замеры длительности этапов запуска приложения.
+ * <p>
+ * Этапы выполняются по очереди (сначала в главном потоке, потом на EDT),
+ * каждый отмечается парой {@link #start()} и {@link #record(String, long)}.
+ * После показа главного окна {@link #finish()} пишет отчет в протокол,
+ * а если приложение запущено с ключом {@value #REPORT_FLAG}, то и в
+ * стандартный вывод.
+ */
+public final class StartupProfiler
+{
+    public static final String REPORT_FLAG = "--startup-report";
+
+    private static final NamedLogger LOG = Logger.get("app.startup");
+
+    private static final List<String> phases = new ArrayList<>();
+    private static final List<Long> durations = new ArrayList<>();
+    private static boolean printReport;
+    private static boolean finished;
+
+    private StartupProfiler()
+    {
+    }
+
+    public static synchronized void setPrintReport(boolean print)
+    {
+        printReport = print;
+    }
+
+    public static long start()
+    {
+        return System.nanoTime();
+    }
+
+    public static synchronized void record(String phase, long startNanos)
+    {
+        if (!finished) {
+            phases.add(phase);
+            durations.add(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Завершает замеры и выводит отчет. Повторные вызовы ничего не делают.
+     */
+    public static synchronized void finish()
+    {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        String report = buildReport();
+        LOG.debug(report);
+        if (printReport) {
+            System.out.println(report);
+        }
+    }
+
+    private static String buildReport()
+    {
+        StringBuilder report = new StringBuilder("Запуск:");
+        long total = 0;
+        for (int i = 0; i < phases.size(); i++) {
+            total += durations.get(i);
+            report.append(String.format("%n  %-28s %8.1f мс", phases.get(i), durations.get(i) / 1e6));
+        }
+        report.append(String.format("%n  %-28s %8.1f мс", "Всего по этапам", total / 1e6));
+        report.append(String.format("%n  %-28s %8d мс", "С момента старта JVM",
+                ManagementFactory.getRuntimeMXBean().getUptime()));
+        return report.toString();
+    }
+}
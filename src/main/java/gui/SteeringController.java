@@ -0,0 +1,48 @@
+package gui;
+
+/**
+ * Правило наведения на цель: по положению и направлению робота выбирает
+ * команду шага - линейную и угловую скорость. Команды пишутся в столбцы
+ * {@link RobotBatch#velocity} и {@link RobotBatch#angularVelocity}, а само
+ * движение выполняет {@link BatchStepper}, поэтому наведение не создает
+ * объектов на шаге.
+ * <p>
+ * Реализация выбирается свойством {@value #PROPERTY}: {@code pid}
+ * (по умолчанию, доходит до цели быстрее остальных), {@code pursuit}
+ * или {@code bangbang} - прежнее правило.
+ */
+interface SteeringController
+{
+    String PROPERTY = "robots.steering";
+
+    /** Робот ближе этого расстояния к цели считается прибывшим и стоит. */
+    double ARRIVAL_DISTANCE = 0.5;
+
+    /**
+     * Заполняет команды роботов пакета с номерами от {@code from}
+     * до {@code to}. Положения и направления уже отражены от стен.
+     * Прибывшие роботы получают нулевую команду и остаются на месте.
+     * Команды не обязаны укладываться в пределы скоростей: движение
+     * все равно их ограничивает, но правила ниже их соблюдают сами.
+     */
+    void steer(RobotBatch batch, int from, int to, double targetX, double targetY, double duration);
+
+    static SteeringController create()
+    {
+        return create(System.getProperty(PROPERTY, "pid"));
+    }
+
+    static SteeringController create(String kind)
+    {
+        switch (kind) {
+            case "pursuit":
+                return new PurePursuitSteering();
+            case "pid":
+                return new PidSteering();
+            case "bangbang":
+                return new BangBangSteering();
+            default:
+                throw new IllegalArgumentException("Unknown steering: " + kind);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package gui;
+
+import java.util.concurrent.Phaser;
+
+/**
+ * Барьер шага для контроллеров роботов.
+ * <p>
+ * Шаг состоит из двух фаз. Контроллеры задают команды и отмечаются
+ * в фазере команд, где мир - тоже участник, так что фаза команд не
+ * может закончиться без него. Мир ждет, пока отметятся все, применяет команды
+ * и открывает фазер шага, на котором контроллеры ждут продолжения.
+ * Пока мир двигает роботов, контроллеры стоят, а пока работают
+ * контроллеры, мир ждет, поэтому состояние роботов не читается
+ * и не пишется одновременно.
+ * <p>
+ * Фазер команд многоуровневый: контроллеры отмечаются в листовых
+ * фазерах не больше чем по {@value #LEAF_PARTIES} участников, и только
+ * последний в листе передает отметку в корень. Так сотни тысяч
+ * участников не конкурируют за одно поле состояния.
+ * <p>
+ * Прерывание не снимает контроллер с ожидания шага: участник, уже
+ * отметившийся в фазе, не может из нее выйти, не нарушив счет. Вместо
+ * этого после {@link #shutdown()} контроллеры выходят на ближайшей
+ * границе шага, до отметки в следующей фазе.
+ */
+final class TickBarrier
+{
+    private static final int LEAF_PARTIES = 256;
+
+    private final Phaser commands = new Phaser(1)
+    {
+        @Override
+        protected boolean onAdvance(int phase, int registeredParties)
+        {
+            return false;
+        }
+    };
+    private final Phaser steps = new Phaser(1)
+    {
+        @Override
+        protected boolean onAdvance(int phase, int registeredParties)
+        {
+            return false;
+        }
+    };
+    private Phaser leaf;
+    private int leafParties;
+    private volatile boolean shutdown;
+
+    /**
+     * Регистрирует нового участника и возвращает его листовой фазер.
+     * Вызывается только между применением команд и {@link #completeStep()}:
+     * в этот момент фаза команд только что сменилась и никто еще не
+     * отметился в новой, поэтому регистрация не ждет и не может
+     * пересечься с отметкой другого участника.
+     */
+    Phaser register()
+    {
+        if (leaf == null || leafParties == LEAF_PARTIES) {
+            leaf = new Phaser(commands);
+            leafParties = 0;
+        }
+        leaf.register();
+        leafParties++;
+        return leaf;
+    }
+
+    /**
+     * Вызывается контроллером: команды заданы, ждем, пока мир сделает шаг.
+     */
+    void arriveAndAwaitStep(Phaser leaf) throws InterruptedException
+    {
+        checkShutdown();
+        int step = steps.getPhase();
+        leaf.arrive();
+        steps.awaitAdvance(step);
+        checkShutdown();
+    }
+
+    private void checkShutdown() throws InterruptedException
+    {
+        if (shutdown) {
+            throw new InterruptedException("Controller scope is shut down");
+        }
+    }
+
+    void shutdown()
+    {
+        shutdown = true;
+    }
+
+    boolean hasParties()
+    {
+        return commands.getRegisteredParties() > 1;
+    }
+
+    /**
+     * Вызывается контроллером при завершении, в том числе по прерыванию.
+     */
+    void deregister(Phaser leaf)
+    {
+        leaf.arriveAndDeregister();
+    }
+
+    /**
+     * Вызывается миром (или областью контроллеров при закрытии)
+     * перед применением команд: ждет, пока все
+     * контроллеры отметятся в текущем шаге.
+     */
+    void awaitCommands()
+    {
+        commands.arriveAndAwaitAdvance();
+    }
+
+    /**
+     * Вызывается миром после применения команд: отпускает контроллеры.
+     */
+    void completeStep()
+    {
+        steps.arrive();
+    }
+}
@@ -0,0 +1,237 @@
+package gui;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Пакетный шаг на Vector API: роботы обрабатываются группами по числу
+ * дорожек предпочтительного вектора, ветвления скалярного шага заменены
+ * масками. Остаток пакета, не кратный длине вектора, доделывает
+ * {@link ScalarBatchStepper}.
+ * <p>
+ * Сложение, умножение, деление и корень дают те же результаты, что
+ * и скалярный шаг, а синус, косинус и арктангенс могут отличаться
+ * в последних битах, поэтому траектории совпадают с точностью до
+ * погрешности вычислений, а не бит в бит.
+ */
+final class VectorBatchStepper implements BatchStepper
+{
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final double TWO_PI = 2 * Math.PI;
+
+    @Override
+    public void step(RobotBatch batch, SteeringController steering, double targetX, double targetY,
+                     int fieldWidth, int fieldHeight, double duration)
+    {
+        int bound = SPECIES.loopBound(batch.count);
+        reflectFromWalls(batch, bound, fieldWidth, fieldHeight);
+        if (steering instanceof BangBangSteering) {
+            steer(batch, bound, targetX, targetY);
+        } else if (steering instanceof PidSteering) {
+            steerPid(batch, bound, targetX, targetY, duration);
+        } else {
+            steering.steer(batch, 0, bound, targetX, targetY, duration);
+        }
+        move(batch, bound, duration);
+        normalizeDirections(batch, bound);
+        ScalarBatchStepper.stepRange(batch, bound, batch.count, steering,
+                targetX, targetY, fieldWidth, fieldHeight, duration);
+    }
+
+    /**
+     * Отражение от стен, как в {@link GameWorld#checkBoundaries}.
+     * <p>
+     * Шаг разбит на несколько проходов по массивам, чтобы каждый цикл
+     * целиком компилировался C2 без упаковки векторов в объекты: один
+     * общий цикл превышает его предел на размер встраивания.
+     */
+    private static void reflectFromWalls(RobotBatch batch, int bound, int fieldWidth, int fieldHeight)
+    {
+        double[] positionX = batch.positionX;
+        double[] positionY = batch.positionY;
+        double[] direction = batch.direction;
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            DoubleVector x = DoubleVector.fromArray(SPECIES, positionX, i);
+            DoubleVector y = DoubleVector.fromArray(SPECIES, positionY, i);
+            DoubleVector dir = DoubleVector.fromArray(SPECIES, direction, i);
+            DoubleVector half = DoubleVector.fromArray(SPECIES, batch.size, i).div(2);
+
+            DoubleVector right = half.neg().add(fieldWidth);
+            VectorMask<Double> hitLeft = x.lt(half);
+            VectorMask<Double> hitRight = x.compare(VectorOperators.GT, right).andNot(hitLeft);
+            dir = dir.blend(dir.neg().add(Math.PI), hitLeft.or(hitRight));
+            x = x.blend(half, hitLeft).blend(right, hitRight);
+
+            DoubleVector bottom = half.neg().add(fieldHeight);
+            VectorMask<Double> hitTop = y.lt(half);
+            VectorMask<Double> hitBottom = y.compare(VectorOperators.GT, bottom).andNot(hitTop);
+            dir = dir.blend(dir.neg(), hitTop.or(hitBottom));
+            y = y.blend(half, hitTop).blend(bottom, hitBottom);
+
+            x.intoArray(positionX, i);
+            y.intoArray(positionY, i);
+            normalize(dir).intoArray(direction, i);
+        }
+    }
+
+    /**
+     * Векторный вариант {@link BangBangSteering}: команда записывается
+     * в столбцы скоростей. Роботы ближе 0.5 к цели получают нулевую
+     * команду - при ней {@link #move} оставляет их на месте. Правила
+     * наведения без векторного варианта выполняются своим скалярным циклом.
+     */
+    private static void steer(RobotBatch batch, int bound, double targetX, double targetY)
+    {
+        DoubleVector zero = DoubleVector.zero(SPECIES);
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            DoubleVector x = DoubleVector.fromArray(SPECIES, batch.positionX, i);
+            DoubleVector y = DoubleVector.fromArray(SPECIES, batch.positionY, i);
+            DoubleVector dir = DoubleVector.fromArray(SPECIES, batch.direction, i);
+
+            DoubleVector diffX = zero.add(targetX).sub(x);
+            DoubleVector diffY = zero.add(targetY).sub(y);
+            VectorMask<Double> arrived = diffX.mul(diffX).add(diffY.mul(diffY)).sqrt().lt(0.5);
+            DoubleVector angle = normalize(diffY.lanewise(VectorOperators.ATAN2, diffX));
+
+            DoubleVector maxVelocity = DoubleVector.fromArray(SPECIES, batch.maxVelocity, i);
+            DoubleVector maxAngularVelocity = DoubleVector.fromArray(SPECIES, batch.maxAngularVelocity, i);
+            DoubleVector angularVelocity = zero
+                    .blend(maxAngularVelocity, angle.compare(VectorOperators.GT, dir))
+                    .blend(maxAngularVelocity.neg(), angle.lt(dir));
+            maxVelocity.blend(zero, arrived).intoArray(batch.velocity, i);
+            angularVelocity.blend(zero, arrived).intoArray(batch.angularVelocity, i);
+        }
+    }
+
+    /**
+     * Векторный вариант {@link PidSteering} с теми же операциями в том же
+     * порядке; отличаться могут только синус и косинус направления. Выход
+     * ограничивается через min/max, а не {@link #clamp}, чтобы цикл
+     * уложился в предел встраивания C2.
+     */
+    private static void steerPid(RobotBatch batch, int bound, double targetX, double targetY, double duration)
+    {
+        DoubleVector zero = DoubleVector.zero(SPECIES);
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            DoubleVector diffX = DoubleVector.broadcast(SPECIES, targetX)
+                    .sub(DoubleVector.fromArray(SPECIES, batch.positionX, i));
+            DoubleVector diffY = DoubleVector.broadcast(SPECIES, targetY)
+                    .sub(DoubleVector.fromArray(SPECIES, batch.positionY, i));
+            DoubleVector distance = diffX.mul(diffX).add(diffY.mul(diffY)).sqrt();
+            VectorMask<Double> arrived = distance.lt(SteeringController.ARRIVAL_DISTANCE);
+
+            DoubleVector dir = DoubleVector.fromArray(SPECIES, batch.direction, i);
+            DoubleVector cos = dir.lanewise(VectorOperators.COS);
+            DoubleVector sin = dir.lanewise(VectorOperators.SIN);
+            DoubleVector cosAlpha = cos.mul(diffX).add(sin.mul(diffY)).div(distance);
+            DoubleVector sinAlpha = cos.mul(diffY).sub(sin.mul(diffX)).div(distance);
+            DoubleVector sinAbs = sinAlpha.abs();
+            DoubleVector behindError = sinAbs.neg().add(2);
+            behindError = behindError.blend(behindError.neg(), sinAlpha.test(VectorOperators.IS_NEGATIVE));
+            DoubleVector error = sinAlpha.blend(behindError, cosAlpha.lt(0));
+
+            DoubleVector integral = DoubleVector.fromArray(SPECIES, batch.headingIntegral, i);
+            DoubleVector output = error.mul(PidSteering.PROPORTIONAL)
+                    .add(integral.mul(PidSteering.INTEGRAL))
+                    .add(error.sub(DoubleVector.fromArray(SPECIES, batch.headingError, i))
+                            .mul(PidSteering.DERIVATIVE).div(duration));
+            integral = integral.add(error.mul(duration))
+                    .blend(integral, output.abs().lt(1).not())
+                    .blend(zero, arrived);
+            integral.intoArray(batch.headingIntegral, i);
+            error.blend(zero, arrived).intoArray(batch.headingError, i);
+
+            DoubleVector maxAngularVelocity = DoubleVector.fromArray(SPECIES, batch.maxAngularVelocity, i);
+            DoubleVector velocity = DoubleVector.fromArray(SPECIES, batch.maxVelocity, i).mul(cosAlpha.max(0))
+                    .min(distance.div(duration));
+            velocity = velocity.blend(maxAngularVelocity.mul(distance).div(sinAbs.mul(2)),
+                    sinAbs.mul(2).mul(velocity).compare(VectorOperators.GT, maxAngularVelocity.mul(distance)));
+            velocity.blend(zero, arrived).intoArray(batch.velocity, i);
+            output.max(-1).min(1).mul(maxAngularVelocity).blend(zero, arrived)
+                    .intoArray(batch.angularVelocity, i);
+        }
+    }
+
+    /**
+     * Движение по дуге, как в {@link RobotModel#move}. При нулевой
+     * угловой скорости формула дуги дает не число, и робот едет по прямой.
+     * Новое направление приводится к [0, 2π) отдельным проходом.
+     */
+    private static void move(RobotBatch batch, int bound, double duration)
+    {
+        double[] positionX = batch.positionX;
+        double[] positionY = batch.positionY;
+        double[] direction = batch.direction;
+        DoubleVector zero = DoubleVector.zero(SPECIES);
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            DoubleVector x = DoubleVector.fromArray(SPECIES, positionX, i);
+            DoubleVector y = DoubleVector.fromArray(SPECIES, positionY, i);
+            DoubleVector dir = DoubleVector.fromArray(SPECIES, direction, i);
+            DoubleVector maxVelocity = DoubleVector.fromArray(SPECIES, batch.maxVelocity, i);
+            DoubleVector maxAngularVelocity = DoubleVector.fromArray(SPECIES, batch.maxAngularVelocity, i);
+            DoubleVector velocity = clamp(DoubleVector.fromArray(SPECIES, batch.velocity, i),
+                    zero, maxVelocity);
+            DoubleVector angularVelocity = clamp(DoubleVector.fromArray(SPECIES, batch.angularVelocity, i),
+                    maxAngularVelocity.neg(), maxAngularVelocity);
+
+            DoubleVector turned = dir.add(angularVelocity.mul(duration));
+            DoubleVector sin = dir.lanewise(VectorOperators.SIN);
+            DoubleVector cos = dir.lanewise(VectorOperators.COS);
+            DoubleVector radius = velocity.div(angularVelocity);
+            DoubleVector path = velocity.mul(duration);
+
+            DoubleVector newX = x.add(radius.mul(turned.lanewise(VectorOperators.SIN).sub(sin)));
+            newX.blend(x.add(path.mul(cos)), newX.test(VectorOperators.IS_FINITE).not())
+                    .intoArray(positionX, i);
+            DoubleVector newY = y.sub(radius.mul(turned.lanewise(VectorOperators.COS).sub(cos)));
+            newY.blend(y.add(path.mul(sin)), newY.test(VectorOperators.IS_FINITE).not())
+                    .intoArray(positionY, i);
+            turned.intoArray(direction, i);
+        }
+    }
+
+    private static void normalizeDirections(RobotBatch batch, int bound)
+    {
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            normalize(DoubleVector.fromArray(SPECIES, batch.direction, i)).intoArray(batch.direction, i);
+        }
+    }
+
+    /**
+     * Ограничение по правилам {@link ScalarBatchStepper#clamp}: нижняя
+     * граница проверяется первой.
+     */
+    private static DoubleVector clamp(DoubleVector value, DoubleVector min, DoubleVector max)
+    {
+        VectorMask<Double> belowMin = value.lt(min);
+        VectorMask<Double> aboveMax = value.compare(VectorOperators.GT, max).andNot(belowMin);
+        return value.blend(min, belowMin).blend(max, aboveMax);
+    }
+
+    /**
+     * Приводит углы к [0, 2π). Обычно хватает одной поправки на дорожку;
+     * если угол был дальше, дорожки доводятся скалярным циклом.
+     */
+    private static DoubleVector normalize(DoubleVector angle)
+    {
+        // Поправка выбирается через blend, как в clamp: на JDK 21
+        // маскированные add/sub работают с той же скоростью, а не быстрее.
+        angle = angle.blend(angle.add(TWO_PI), angle.lt(0));
+        angle = angle.blend(angle.sub(TWO_PI), angle.compare(VectorOperators.GE, TWO_PI));
+        if (angle.lt(0).or(angle.compare(VectorOperators.GE, TWO_PI)).anyTrue()) {
+            angle = normalizeLanes(angle);
+        }
+        return angle;
+    }
+
+    private static DoubleVector normalizeLanes(DoubleVector angle)
+    {
+        double[] lanes = angle.toArray();
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = ScalarBatchStepper.normalize(lanes[i]);
+        }
+        return DoubleVector.fromArray(SPECIES, lanes, 0);
+    }
+}
@@ -0,0 +1,125 @@
+package gui;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Вид на игровое поле: какая точка мира находится в левом верхнем углу
+ * панели и сколько пикселей экрана приходится на единицу мира.
+ * Экранная точка (x, y) соответствует точке мира
+ * (offsetX + x / scale, offsetY + y / scale).
+ * <p>
+ * Объект неизменяемый: сдвиг и масштабирование возвращают новый вид,
+ * поэтому поток отрисовки берет вид один раз за кадр и не видит
+ * изменений, сделанных посередине кадра.
+ */
+public final class ViewCamera
+{
+    public static final double MIN_SCALE = 1 / 64.0;
+    public static final double MAX_SCALE = 16;
+
+    /** Исходный вид: единица мира - один пиксель, начало мира в углу панели. */
+    public static final ViewCamera IDENTITY = new ViewCamera(0, 0, 1);
+
+    private final double offsetX;
+    private final double offsetY;
+    private final double scale;
+
+    private ViewCamera(double offsetX, double offsetY, double scale)
+    {
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.scale = scale;
+    }
+
+    public double getOffsetX() { return offsetX; }
+
+    public double getOffsetY() { return offsetY; }
+
+    public double getScale() { return scale; }
+
+    public boolean isIdentity()
+    {
+        return offsetX == 0 && offsetY == 0 && scale == 1;
+    }
+
+    public double toWorldX(double screenX)
+    {
+        return offsetX + screenX / scale;
+    }
+
+    public double toWorldY(double screenY)
+    {
+        return offsetY + screenY / scale;
+    }
+
+    public double toScreenX(double worldX)
+    {
+        return (worldX - offsetX) * scale;
+    }
+
+    public double toScreenY(double worldY)
+    {
+        return (worldY - offsetY) * scale;
+    }
+
+    /**
+     * Область мира, видимая в прямоугольнике экрана.
+     */
+    public Rectangle2D.Double toWorld(int x, int y, int width, int height)
+    {
+        return new Rectangle2D.Double(toWorldX(x), toWorldY(y), width / scale, height / scale);
+    }
+
+    /**
+     * Переводит графический контекст из экранных координат в мировые.
+     */
+    public void applyTo(Graphics2D g)
+    {
+        if (!isIdentity()) {
+            g.scale(scale, scale);
+            g.translate(-offsetX, -offsetY);
+        }
+    }
+
+    /**
+     * Вид, сдвинутый так, что картинка смещается на (dx, dy) пикселей экрана.
+     */
+    public ViewCamera panned(double dx, double dy)
+    {
+        return new ViewCamera(offsetX - dx / scale, offsetY - dy / scale, scale);
+    }
+
+    /**
+     * Вид с масштабом, умноженным на factor; точка мира под экранной
+     * точкой (screenX, screenY) остается на месте. Масштаб ограничен
+     * пределами {@link #MIN_SCALE} и {@link #MAX_SCALE}.
+     */
+    public ViewCamera zoomedAt(double screenX, double screenY, double factor)
+    {
+        double newScale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale * factor));
+        return new ViewCamera(toWorldX(screenX) - screenX / newScale,
+                toWorldY(screenY) - screenY / newScale, newScale);
+    }
+
+    /**
+     * Вид, в который целиком помещается мир размером worldWidth x worldHeight
+     * на панели размером viewWidth x viewHeight, по центру панели.
+     */
+    public static ViewCamera fit(int worldWidth, int worldHeight, int viewWidth, int viewHeight)
+    {
+        if (worldWidth <= 0 || worldHeight <= 0 || viewWidth <= 0 || viewHeight <= 0) {
+            return IDENTITY;
+        }
+        double scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE,
+                Math.min(viewWidth / (double) worldWidth, viewHeight / (double) worldHeight)));
+        return new ViewCamera(worldWidth / 2.0 - viewWidth / (2 * scale),
+                worldHeight / 2.0 - viewHeight / (2 * scale), scale);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ViewCamera[offsetX=" + offsetX + ", offsetY=" + offsetY + ", scale=" + scale + "]";
+    }
+}
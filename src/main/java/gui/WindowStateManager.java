@@ -1,125 +1,330 @@
 package gui;
 
 import log.Logger;
+import log.NamedLogger;
+import metrics.Counter;
+import metrics.LatencyHistogram;
+import metrics.MetricsRegistry;
+import metrics.jfr.SessionSaveEvent;
 
 import javax.swing.*;
+import javax.swing.event.InternalFrameAdapter;
+import javax.swing.event.InternalFrameEvent;
 import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.ComponentListener;
+import java.awt.event.ContainerAdapter;
+import java.awt.event.ContainerEvent;
+import java.beans.PropertyChangeListener;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.prefs.Preferences;
 
+/**
+ * Сохраняет и восстанавливает положение окон и состояние робота.
+ * <p>
+ * Состояние хранится в двоичном файле сессии {@link SessionFile}.
+ * При первом запуске после перехода на этот формат, если файла еще нет,
+ * состояние окон однократно переносится из старого узла {@link Preferences}.
+ * <p>
+ * Состояние сохраняется непрерывно: перемещения, изменения размера,
+ * сворачивание и разворачивание окон перезапускают таймер задержки,
+ * и только когда окна перестали меняться на {@code debounceMillis}, на EDT
+ * снимается состояние и сравнивается с последним записанным. Если оно
+ * изменилось, файл записывается в фоновом потоке, так что EDT не ждет
+ * ввода-вывода. При выходе ожидается только последняя запись, и не
+ * дольше заданного времени.
+ */
 public class WindowStateManager {
+    private static final NamedLogger LOG = Logger.get("ui.state");
     private static final String PREF_NODE = "/robots_game/window_states";
-    private final Preferences prefs;
+    private static final int DEFAULT_DEBOUNCE_MILLIS = 500;
+    private static final long FINAL_FLUSH_TIMEOUT_MILLIS = 2000;
+    private static final LatencyHistogram LOAD_NANOS = MetricsRegistry.getDefault().histogram("session.load");
+    private static final LatencyHistogram SAVE_NANOS = MetricsRegistry.getDefault().histogram("session.save");
+    private static final Counter SAVES = MetricsRegistry.getDefault().counter("session.saves");
+    private static final Counter SAVES_SKIPPED = MetricsRegistry.getDefault().counter("session.savesSkipped");
+    private static final Counter SAVE_ERRORS = MetricsRegistry.getDefault().counter("session.saveErrors");
+
+    private final Path sessionPath;
     private final JFrame mainFrame;
     private final JDesktopPane desktopPane;
+    private final Timer debounceTimer;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "window state writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private SessionState lastWrittenState;
+    private Future<?> lastWrite;
+
+    private final ComponentListener geometryListener = new ComponentAdapter() {
+        @Override
+        public void componentMoved(ComponentEvent e) {
+            scheduleSave();
+        }
+
+        @Override
+        public void componentResized(ComponentEvent e) {
+            scheduleSave();
+        }
+    };
+    private final InternalFrameAdapter internalFrameListener = new InternalFrameAdapter() {
+        @Override
+        public void internalFrameIconified(InternalFrameEvent e) {
+            scheduleSave();
+        }
+
+        @Override
+        public void internalFrameDeiconified(InternalFrameEvent e) {
+            scheduleSave();
+        }
+    };
+    private final PropertyChangeListener maximumListener = event -> scheduleSave();
 
     public WindowStateManager(JFrame mainFrame, JDesktopPane desktopPane) {
+        this(mainFrame, desktopPane, SessionFile.defaultPath(), DEFAULT_DEBOUNCE_MILLIS);
+    }
+
+    public WindowStateManager(JFrame mainFrame, JDesktopPane desktopPane, Path sessionPath, int debounceMillis) {
         this.mainFrame = mainFrame;
         this.desktopPane = desktopPane;
-        this.prefs = Preferences.userRoot().node(PREF_NODE);
+        this.sessionPath = sessionPath;
+        this.debounceTimer = new Timer(debounceMillis, event -> saveChangedStateAsync());
+        this.debounceTimer.setRepeats(false);
     }
 
-    public void loadWindowStates() {
-        try {
-            if (shouldPersist(mainFrame)) {
-                loadFrameState(mainFrame, WindowPrefKeys.getMainWindowPrefix());
+    /**
+     * Начинает следить за изменениями окон, в том числе окон, добавленных
+     * на рабочий стол позже. Вызывается на EDT после {@link #loadWindowStates()}.
+     */
+    public void startTracking() {
+        mainFrame.addComponentListener(geometryListener);
+        mainFrame.addWindowStateListener(event -> scheduleSave());
+        for (Component component : desktopPane.getComponents()) {
+            if (component instanceof JInternalFrame internalFrame) {
+                trackInternalFrame(internalFrame);
             }
-
-            for (Component component : desktopPane.getComponents()) {
-                if (component instanceof JInternalFrame internalFrame && shouldPersist(internalFrame)) {
-                    loadInternalFrameState(internalFrame);
+        }
+        desktopPane.addContainerListener(new ContainerAdapter() {
+            @Override
+            public void componentAdded(ContainerEvent e) {
+                if (e.getChild() instanceof JInternalFrame internalFrame) {
+                    trackInternalFrame(internalFrame);
+                    scheduleSave();
                 }
             }
-        } catch (Exception e) {
-            Logger.error("Error loading window states: " + e.getMessage());
+        });
+    }
+
+    private void trackInternalFrame(JInternalFrame frame) {
+        if (!shouldPersist(frame)) {
+            return;
         }
+        frame.removeComponentListener(geometryListener);
+        frame.removeInternalFrameListener(internalFrameListener);
+        frame.removePropertyChangeListener(JInternalFrame.IS_MAXIMUM_PROPERTY, maximumListener);
+        frame.addComponentListener(geometryListener);
+        frame.addInternalFrameListener(internalFrameListener);
+        frame.addPropertyChangeListener(JInternalFrame.IS_MAXIMUM_PROPERTY, maximumListener);
     }
 
-    public void saveWindowStates() {
+    private void scheduleSave() {
+        debounceTimer.restart();
+    }
+
+    public void loadWindowStates() {
+        long startTime = System.nanoTime();
+        applySession();
+        LOAD_NANOS.record(System.nanoTime() - startTime);
+    }
+
+    private void applySession() {
+        SessionState session;
         try {
-            if (shouldPersist(mainFrame)) {
-                saveFrameState(mainFrame, WindowPrefKeys.getMainWindowPrefix());
+            session = readSession();
+        } catch (Exception e) {
+            LOG.error("Error loading window states: " + e.getMessage());
+            return;
+        }
+
+        if (shouldPersist(mainFrame) && session.mainFrame() != null) {
+            applyMainFrameState(session.mainFrame());
+        }
+
+        for (Component component : desktopPane.getComponents()) {
+            if (component instanceof JInternalFrame internalFrame && shouldPersist(internalFrame)) {
+                InternalFrameState state = session.internalFrames().get(internalFrameKey(internalFrame));
+                if (state != null) {
+                    applyInternalFrameState(internalFrame, state);
+                }
+            }
+            if (component instanceof GameWindow gameWindow && session.robot() != null) {
+                session.robot().applyTo(gameWindow.getWorld());
             }
+        }
+    }
 
-            for (Component component : desktopPane.getComponents()) {
-                if (component instanceof JInternalFrame internalFrame && shouldPersist(internalFrame)) {
-                    saveInternalFrameState(internalFrame);
+    private SessionState readSession() throws Exception {
+        if (Files.exists(sessionPath)) {
+            return SessionFile.read(sessionPath);
+        }
+        if (Preferences.userRoot().nodeExists(PREF_NODE)) {
+            LOG.debug("Migrating window states from preferences to " + sessionPath);
+            return migrateFromPreferences(Preferences.userRoot().node(PREF_NODE));
+        }
+        return SessionState.EMPTY;
+    }
+
+    /**
+     * Читает состояние окон из старого формата. Файл сессии будет записан
+     * при первом же сохранении, после чего этот узел больше не читается.
+     */
+    private SessionState migrateFromPreferences(Preferences prefs) {
+        MainFrameState mainFrameState = null;
+        String mainPrefix = WindowPrefKeys.getMainWindowPrefix();
+        if (prefs.get(WindowPrefKeys.X.getFullKey(mainPrefix), null) != null) {
+            mainFrameState = new MainFrameState(
+                    readGeometry(prefs, mainPrefix, mainFrame),
+                    prefs.getInt(WindowPrefKeys.STATE.getFullKey(mainPrefix), Frame.NORMAL));
+        }
+
+        Map<String, InternalFrameState> internalFrames = new LinkedHashMap<>();
+        for (Component component : desktopPane.getComponents()) {
+            if (component instanceof JInternalFrame internalFrame && shouldPersist(internalFrame)) {
+                String prefix = internalFrameKey(internalFrame);
+                if (prefs.get(WindowPrefKeys.X.getFullKey(prefix), null) != null) {
+                    internalFrames.put(prefix, new InternalFrameState(
+                            readGeometry(prefs, prefix, internalFrame),
+                            prefs.getBoolean(WindowPrefKeys.IS_MINIMIZED.getFullKey(prefix), false),
+                            prefs.getBoolean(WindowPrefKeys.IS_MAXIMIZED.getFullKey(prefix), false)));
                 }
             }
-            prefs.flush();
-        } catch (Exception e) {
-            Logger.error("Error saving window states: " + e.getMessage());
         }
+        return new SessionState(mainFrameState, internalFrames, null);
     }
 
-    private boolean shouldPersist(Component component) {
-        PersistWindowState annotation = component.getClass().getAnnotation(PersistWindowState.class);
-        return annotation != null && annotation.value();
+    private static WindowGeometry readGeometry(Preferences prefs, String prefix, Component frame) {
+        return new WindowGeometry(
+                prefs.getInt(WindowPrefKeys.X.getFullKey(prefix), frame.getX()),
+                prefs.getInt(WindowPrefKeys.Y.getFullKey(prefix), frame.getY()),
+                prefs.getInt(WindowPrefKeys.WIDTH.getFullKey(prefix), frame.getWidth()),
+                prefs.getInt(WindowPrefKeys.HEIGHT.getFullKey(prefix), frame.getHeight())
+        );
     }
 
-    private void loadInternalFrameState(JInternalFrame frame) {
+    /**
+     * Записывает текущее состояние окон и ждет завершения записи,
+     * но не дольше {@value #FINAL_FLUSH_TIMEOUT_MILLIS} мс. Вызывается при выходе.
+     */
+    public void saveWindowStates() {
+        debounceTimer.stop();
+        saveChangedStateAsync();
+        Future<?> write = lastWrite;
+        if (write == null) {
+            return;
+        }
         try {
-            String prefix = WindowPrefKeys.getInternalWindowPrefix() + "." + frame.getTitle().replace(" ", "_");
-            loadFrameState(frame, prefix);
+            write.get(FINAL_FLUSH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            LOG.error("Saving window states timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
-            Logger.error("Error loading window state for " + frame.getTitle() + ": " + e.getMessage());
+            LOG.error("Error saving window states: " + e.getMessage());
         }
     }
 
-    private void loadFrameState(Component frame, String prefix) throws Exception {
+    /**
+     * Снимает состояние на EDT и, если оно изменилось с последней записи,
+     * отправляет его на запись в фоновый поток.
+     */
+    private void saveChangedStateAsync() {
+        SessionState state;
         try {
-            WindowGeometry geometry = new WindowGeometry(
-                    prefs.getInt(WindowPrefKeys.X.getFullKey(prefix), frame.getX()),
-                    prefs.getInt(WindowPrefKeys.Y.getFullKey(prefix), frame.getY()),
-                    prefs.getInt(WindowPrefKeys.WIDTH.getFullKey(prefix), frame.getWidth()),
-                    prefs.getInt(WindowPrefKeys.HEIGHT.getFullKey(prefix), frame.getHeight())
-            );
-
-            frame.setBounds(geometry.x(), geometry.y(), geometry.width(), geometry.height());
-
-            if (frame instanceof JFrame jFrame) {
-                int state = prefs.getInt(WindowPrefKeys.STATE.getFullKey(prefix), Frame.NORMAL);
-                jFrame.setExtendedState(state);
-            } else if (frame instanceof JInternalFrame internalFrame) {
-                boolean isMinimized = prefs.getBoolean(WindowPrefKeys.IS_MINIMIZED.getFullKey(prefix), false);
-                boolean isMaximized = prefs.getBoolean(WindowPrefKeys.IS_MAXIMIZED.getFullKey(prefix), false);
-                internalFrame.setIcon(isMinimized);
-                internalFrame.setMaximum(isMaximized);
-            }
+            state = collectState();
         } catch (Exception e) {
-            throw new Exception("Failed to load frame state: " + e.getMessage(), e);
+            LOG.error("Error saving window states: " + e.getMessage());
+            return;
+        }
+        if (state.equals(lastWrittenState)) {
+            SAVES_SKIPPED.increment();
+            return;
         }
+        lastWrittenState = state;
+        lastWrite = writer.submit(() -> writeSession(state));
     }
 
-    private void saveInternalFrameState(JInternalFrame frame) {
+    private void writeSession(SessionState state) {
+        SessionSaveEvent event = new SessionSaveEvent();
+        event.begin();
+        long startTime = System.nanoTime();
+        boolean success = false;
         try {
-            String prefix = WindowPrefKeys.getInternalWindowPrefix() + "." + frame.getTitle().replace(" ", "_");
-            saveFrameState(frame, prefix);
+            SessionFile.write(sessionPath, state);
+            SAVES.increment();
+            success = true;
         } catch (Exception e) {
-            Logger.error("Error saving window state for " + frame.getTitle() + ": " + e.getMessage());
+            SAVE_ERRORS.increment();
+            LOG.error("Error saving window states: " + e.getMessage());
+        }
+        SAVE_NANOS.record(System.nanoTime() - startTime);
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = sessionPath.toString();
+            event.windowCount = state.internalFrames().size();
+            event.success = success;
+            event.commit();
         }
     }
 
-    private void saveFrameState(Component frame, String prefix) throws Exception {
-        try {
-            if (frame instanceof JFrame jFrame) {
-                MainFrameState state = MainFrameState.fromFrame(jFrame);
-                saveGeometry(state.geometry(), prefix);
-                prefs.putInt(WindowPrefKeys.STATE.getFullKey(prefix), state.extendedState());
-            } else if (frame instanceof JInternalFrame internalFrame) {
-                InternalFrameState state = InternalFrameState.fromFrame(internalFrame);
-                saveGeometry(state.geometry(), prefix);
-                prefs.putBoolean(WindowPrefKeys.IS_MINIMIZED.getFullKey(prefix), state.isMinimized());
-                prefs.putBoolean(WindowPrefKeys.IS_MAXIMIZED.getFullKey(prefix), state.isMaximized());
+    private SessionState collectState() {
+        MainFrameState mainFrameState = shouldPersist(mainFrame) ? MainFrameState.fromFrame(mainFrame) : null;
+        Map<String, InternalFrameState> internalFrames = new LinkedHashMap<>();
+        RobotState robotState = null;
+
+        for (Component component : desktopPane.getComponents()) {
+            if (component instanceof JInternalFrame internalFrame && shouldPersist(internalFrame)) {
+                internalFrames.put(internalFrameKey(internalFrame), InternalFrameState.fromFrame(internalFrame));
+            }
+            if (component instanceof GameWindow gameWindow && robotState == null) {
+                robotState = RobotState.fromModel(gameWindow.getWorld().getRobotModel());
             }
-        } catch (Exception e) {
-            throw new Exception("Failed to save frame state: " + e.getMessage(), e);
         }
+        return new SessionState(mainFrameState, internalFrames, robotState);
+    }
+
+    private boolean shouldPersist(Component component) {
+        PersistWindowState annotation = component.getClass().getAnnotation(PersistWindowState.class);
+        return annotation != null && annotation.value();
     }
 
-    private void saveGeometry(WindowGeometry geometry, String prefix) {
-        prefs.putInt(WindowPrefKeys.X.getFullKey(prefix), geometry.x());
-        prefs.putInt(WindowPrefKeys.Y.getFullKey(prefix), geometry.y());
-        prefs.putInt(WindowPrefKeys.WIDTH.getFullKey(prefix), geometry.width());
-        prefs.putInt(WindowPrefKeys.HEIGHT.getFullKey(prefix), geometry.height());
+    private static String internalFrameKey(JInternalFrame frame) {
+        return WindowPrefKeys.getInternalWindowPrefix() + "." + frame.getTitle().replace(" ", "_");
+    }
+
+    private void applyMainFrameState(MainFrameState state) {
+        WindowGeometry geometry = state.geometry();
+        mainFrame.setBounds(geometry.x(), geometry.y(), geometry.width(), geometry.height());
+        mainFrame.setExtendedState(state.extendedState());
+    }
+
+    private void applyInternalFrameState(JInternalFrame frame, InternalFrameState state) {
+        try {
+            WindowGeometry geometry = state.geometry();
+            frame.setBounds(geometry.x(), geometry.y(), geometry.width(), geometry.height());
+            frame.setIcon(state.isMinimized());
+            frame.setMaximum(state.isMaximized());
+        } catch (Exception e) {
+            LOG.error("Error loading window state for " + frame.getTitle() + ": " + e.getMessage());
+        }
     }
-}
\ No newline at end of file
+}
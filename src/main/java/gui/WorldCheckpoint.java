@@ -0,0 +1,82 @@
+package gui;
+
+/**
+ * Снимок игрового мира на границе шагов симуляции.
+ * <p>
+ * Состояние роботов хранится по столбцам: отдельные массивы координат,
+ * направлений и размеров. Снимок не меняется после создания и не связан
+ * с живыми объектами мира, поэтому его можно записывать в другом потоке,
+ * пока симуляция продолжает идти. Настройки у всех роботов общие
+ * и хранятся один раз.
+ */
+public final class WorldCheckpoint
+{
+    private final long tick;
+    private final long randomState;
+    private final int targetX;
+    private final int targetY;
+    private final int fieldWidth;
+    private final int fieldHeight;
+    private final int rgb;
+    private final float transparency;
+    private final RobotShape shape;
+    private final double maxVelocity;
+    private final double maxAngularVelocity;
+    private final double[] positionsX;
+    private final double[] positionsY;
+    private final double[] directions;
+    private final int[] sizes;
+
+    /**
+     * Массивы столбцов передаются во владение снимку и не копируются.
+     */
+    WorldCheckpoint(long tick, long randomState,
+                    int targetX, int targetY, int fieldWidth, int fieldHeight,
+                    int rgb, float transparency, RobotShape shape,
+                    double maxVelocity, double maxAngularVelocity,
+                    double[] positionsX, double[] positionsY, double[] directions, int[] sizes)
+    {
+        int count = positionsX.length;
+        if (positionsY.length != count || directions.length != count || sizes.length != count) {
+            throw new IllegalArgumentException("Columns have different lengths");
+        }
+        this.tick = tick;
+        this.randomState = randomState;
+        this.targetX = targetX;
+        this.targetY = targetY;
+        this.fieldWidth = fieldWidth;
+        this.fieldHeight = fieldHeight;
+        this.rgb = rgb;
+        this.transparency = transparency;
+        this.shape = shape;
+        this.maxVelocity = maxVelocity;
+        this.maxAngularVelocity = maxAngularVelocity;
+        this.positionsX = positionsX;
+        this.positionsY = positionsY;
+        this.directions = directions;
+        this.sizes = sizes;
+    }
+
+    public long getTick() { return tick; }
+    public long getRandomState() { return randomState; }
+    public int getTargetX() { return targetX; }
+    public int getTargetY() { return targetY; }
+    public int getFieldWidth() { return fieldWidth; }
+    public int getFieldHeight() { return fieldHeight; }
+    public int getRgb() { return rgb; }
+    public float getTransparency() { return transparency; }
+    public RobotShape getShape() { return shape; }
+    public double getMaxVelocity() { return maxVelocity; }
+    public double getMaxAngularVelocity() { return maxAngularVelocity; }
+
+    public int getRobotCount() { return positionsX.length; }
+    public double getPositionX(int robot) { return positionsX[robot]; }
+    public double getPositionY(int robot) { return positionsY[robot]; }
+    public double getDirection(int robot) { return directions[robot]; }
+    public int getSize(int robot) { return sizes[robot]; }
+
+    double[] positionsX() { return positionsX; }
+    double[] positionsY() { return positionsY; }
+    double[] directions() { return directions; }
+    int[] sizes() { return sizes; }
+}
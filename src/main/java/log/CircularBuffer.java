@@ -1,12 +1,14 @@
 package log;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class CircularBuffer<T> {
-    private final Object[] buffer;
-    private final int capacity;
+    private Object[] buffer;
+    private int capacity;
     private final AtomicInteger size = new AtomicInteger(0);
     private final AtomicInteger startIndex = new AtomicInteger(0);
     private final ReentrantReadWriteLock bufferLock = new ReentrantReadWriteLock();
@@ -16,26 +18,108 @@ public class CircularBuffer<T> {
         this.buffer = new Object[capacity];
     }
 
-    public void add(T item) {
+    /**
+     * @return {@code true}, если буфер был заполнен и новый элемент
+     * вытеснил самый старый
+     */
+    public boolean add(T item) {
+        return addEvicting(item) != null;
+    }
+
+    /**
+     * @return вытесненный самый старый элемент или {@code null},
+     * если буфер не был заполнен
+     */
+    @SuppressWarnings("unchecked")
+    public T addEvicting(T item) {
         bufferLock.writeLock().lock();
         try {
             int currentSize = size.get();
             if (currentSize < capacity) {
                 buffer[(startIndex.get() + currentSize) % capacity] = item;
                 size.incrementAndGet();
+                return null;
             } else {
+                T evicted = (T) buffer[startIndex.get()];
                 buffer[startIndex.get()] = item;
                 startIndex.set((startIndex.get() + 1) % capacity);
+                return evicted;
             }
         } finally {
             bufferLock.writeLock().unlock();
         }
     }
 
+    /**
+     * Убирает самый старый элемент.
+     *
+     * @return убранный элемент или {@code null}, если буфер пуст
+     */
+    @SuppressWarnings("unchecked")
+    public T removeOldest() {
+        bufferLock.writeLock().lock();
+        try {
+            if (size.get() == 0) {
+                return null;
+            }
+            int start = startIndex.get();
+            T removed = (T) buffer[start];
+            buffer[start] = null;
+            startIndex.set((start + 1) % capacity);
+            size.decrementAndGet();
+            return removed;
+        } finally {
+            bufferLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Меняет емкость, сохраняя самые новые элементы.
+     *
+     * @return элементы, которые не поместились в новую емкость
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> resize(int newCapacity) {
+        if (newCapacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + newCapacity);
+        }
+        bufferLock.writeLock().lock();
+        try {
+            int currentSize = size.get();
+            int dropped = Math.max(0, currentSize - newCapacity);
+            List<T> evicted = new ArrayList<>(dropped);
+            Object[] resized = new Object[newCapacity];
+            for (int i = 0; i < currentSize; i++) {
+                Object item = buffer[(startIndex.get() + i) % capacity];
+                if (i < dropped) {
+                    evicted.add((T) item);
+                } else {
+                    resized[i - dropped] = item;
+                }
+            }
+            buffer = resized;
+            capacity = newCapacity;
+            startIndex.set(0);
+            size.set(currentSize - dropped);
+            return evicted;
+        } finally {
+            bufferLock.writeLock().unlock();
+        }
+    }
+
     public int size() {
         return size.get();
     }
 
+    public int capacity() {
+        bufferLock.readLock().lock();
+        try {
+            return capacity;
+        } finally {
+            bufferLock.readLock().unlock();
+        }
+    }
+
     public Iterable<T> range(int startFrom, int count) {
         if (startFrom < 0 || startFrom >= size.get()) {
             return Collections.emptyList();
@@ -48,6 +132,23 @@ public class CircularBuffer<T> {
         return range(0, size.get());
     }
 
+    /**
+     * Элемент по индексу от самого старого или {@code null}, если такого
+     * уже нет: буфер мог уменьшиться, пока его обходили.
+     */
+    @SuppressWarnings("unchecked")
+    T getIfPresent(int index) {
+        bufferLock.readLock().lock();
+        try {
+            if (index < 0 || index >= size.get()) {
+                return null;
+            }
+            return (T) buffer[(startIndex.get() + index) % capacity];
+        } finally {
+            bufferLock.readLock().unlock();
+        }
+    }
+
     @SuppressWarnings("unchecked")
     T get(int index) {
         bufferLock.readLock().lock();
@@ -1,14 +1,62 @@
 package log;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public class LogEntry
 {
+    private static final AtomicLong nextSequence = new AtomicLong();
+    /** Примерный размер записи без текста: объект, ссылки, заголовок строки. */
+    private static final int ENTRY_OVERHEAD = 80;
+
     private final LogLevel logLevel;
     private final String message;
+    private final String source;
+    private final long sequence = nextSequence.getAndIncrement();
+    private final long timestamp = System.currentTimeMillis();
     
     public LogEntry(LogLevel logLevel, String message)
+    {
+        this("", logLevel, message);
+    }
+
+    /**
+     * @param source имя протокола, в который попала запись
+     */
+    public LogEntry(String source, LogLevel logLevel, String message)
     {
         this.message = message;
         this.logLevel = logLevel;
+        this.source = source;
+    }
+
+    public String getSource()
+    {
+        return source;
+    }
+
+    /**
+     * Сквозной номер записи во всех протоколах процесса; по нему записи
+     * разных протоколов сливаются в общий порядок.
+     */
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    /**
+     * Время записи, мс от начала эпохи.
+     */
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    /**
+     * Примерный объем памяти, который занимает запись, в байтах.
+     */
+    long estimatedSize()
+    {
+        return ENTRY_OVERHEAD + 2L * message.length();
     }
     
     public String getMessage()
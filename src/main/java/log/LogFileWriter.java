@@ -0,0 +1,165 @@
+package log;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import metrics.Counter;
+import metrics.MetricsRegistry;
+
+/**
+ * Запись протоколов в текстовый файл для разбора после работы
+ * ({@code analysis.OfflineAnalyzer}). Каждая запись - одна строка в UTF-8:
+ * <pre>
+ * время(мс от начала эпохи) TAB уровень TAB протокол TAB текст
+ * </pre>
+ * Табуляции, переводы строк и обратная косая черта в имени протокола
+ * и тексте экранируются ({@code \t}, {@code \n}, {@code \r}, {@code \\}),
+ * поэтому файл можно резать на куски по границам строк и разбирать
+ * куски независимо.
+ * <p>
+ * Протоколирующий поток только кладет запись в ограниченную очередь,
+ * а пишет в файл отдельный поток. Если диск не успевает и очередь
+ * полна, запись в файл отбрасывается (счетчик {@code log.fileDropped}),
+ * а протоколирование не задерживается.
+ */
+public final class LogFileWriter implements Closeable
+{
+    public static final String PATH_PROPERTY = "robots.logFile";
+
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final Counter DROPPED = MetricsRegistry.getDefault().counter("log.fileDropped");
+
+    private final BlockingQueue<LogEntry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Writer out;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    private LogFileWriter(Writer out)
+    {
+        this.out = out;
+        this.thread = new Thread(this::run, "log file writer");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Открывает файл для дописывания в конец.
+     */
+    public static LogFileWriter open(Path path) throws IOException
+    {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        LogFileWriter writer = new LogFileWriter(out);
+        writer.thread.start();
+        return writer;
+    }
+
+    public static Path defaultPath()
+    {
+        String path = System.getProperty(PATH_PROPERTY);
+        if (path != null) {
+            return Paths.get(path);
+        }
+        return Paths.get(System.getProperty("user.home"), ".robots", "robots.log");
+    }
+
+    /**
+     * Ставит запись в очередь на запись в файл; не ждет.
+     */
+    public void write(LogEntry entry)
+    {
+        if (closed || !queue.offer(entry)) {
+            DROPPED.increment();
+        }
+    }
+
+    private void run()
+    {
+        StringBuilder line = new StringBuilder(256);
+        try {
+            while (!closed || !queue.isEmpty()) {
+                LogEntry entry = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (entry == null) {
+                    out.flush();
+                    continue;
+                }
+                do {
+                    line.setLength(0);
+                    format(entry, line);
+                    out.append(line);
+                    entry = queue.poll();
+                } while (entry != null);
+                out.flush();
+            }
+        } catch (IOException e) {
+            closed = true;
+            System.err.println("Log file write failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Дописывает в line строку файла для записи entry вместе с переводом строки.
+     */
+    static void format(LogEntry entry, StringBuilder line)
+    {
+        line.append(entry.getTimestamp()).append('\t')
+                .append(entry.getLevel().name()).append('\t');
+        escape(entry.getSource(), line);
+        line.append('\t');
+        escape(entry.getMessage(), line);
+        line.append('\n');
+    }
+
+    private static void escape(String text, StringBuilder line)
+    {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\t':
+                    line.append("\\t");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                default:
+                    line.append(c);
+            }
+        }
+    }
+
+    /**
+     * Дописывает оставшиеся в очереди записи и закрывает файл.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        closed = true;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        out.close();
+    }
+}
@@ -0,0 +1,104 @@
+package log;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import metrics.Counter;
+import metrics.MetricsRegistry;
+
+/**
+ * Общий для нескольких протоколов предел памяти под записи. Каждый
+ * протокол ограничен своей емкостью, но вместе они не должны занимать
+ * больше {@link #getLimitBytes()} байт.
+ * <p>
+ * При превышении записи вытесняются у самого шумного протокола - того,
+ * чьи записи занимают больше всего памяти: сначала отдает место он,
+ * а редкие, но важные записи тихих протоколов остаются. Объем записи
+ * оценивается приблизительно, по длине текста.
+ */
+public final class LogMemoryBudget
+{
+    public static final long DEFAULT_LIMIT_BYTES = 1 << 20;
+
+    private static final Counter EVICTIONS = MetricsRegistry.getDefault().counter("log.budgetEvictions");
+
+    private final List<LogWindowSource> sources = new CopyOnWriteArrayList<>();
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private volatile long limitBytes;
+
+    public LogMemoryBudget(long limitBytes)
+    {
+        setLimitBytes(limitBytes);
+    }
+
+    public long getLimitBytes()
+    {
+        return limitBytes;
+    }
+
+    /**
+     * Меняет предел; если записей уже больше, лишние вытесняются сразу.
+     */
+    public void setLimitBytes(long limitBytes)
+    {
+        if (limitBytes <= 0) {
+            throw new IllegalArgumentException("limit must be positive: " + limitBytes);
+        }
+        this.limitBytes = limitBytes;
+        enforce();
+    }
+
+    public long getRetainedBytes()
+    {
+        return retainedBytes.get();
+    }
+
+    /**
+     * Подчиняет источник бюджету, вместе с уже накопленными записями.
+     */
+    public void register(LogWindowSource source)
+    {
+        sources.add(source);
+        source.setBudget(this);
+        retain(source.getRetainedBytes());
+        enforce();
+    }
+
+    void retain(long bytes)
+    {
+        retainedBytes.addAndGet(bytes);
+    }
+
+    void release(long bytes)
+    {
+        retainedBytes.addAndGet(-bytes);
+    }
+
+    /**
+     * Вытесняет самые старые записи самых шумных источников, пока
+     * записи не уложатся в предел.
+     */
+    void enforce()
+    {
+        if (retainedBytes.get() > limitBytes) {
+            evict();
+        }
+    }
+
+    private synchronized void evict()
+    {
+        while (retainedBytes.get() > limitBytes) {
+            LogWindowSource noisiest = null;
+            for (LogWindowSource source : sources) {
+                if (noisiest == null || source.getRetainedBytes() > noisiest.getRetainedBytes()) {
+                    noisiest = source;
+                }
+            }
+            if (noisiest == null || noisiest.evictOldest() == 0) {
+                return;
+            }
+            EVICTIONS.increment();
+        }
+    }
+}
@@ -2,8 +2,14 @@ package log;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import metrics.Counter;
+import metrics.LatencyHistogram;
+import metrics.MetricsRegistry;
+import metrics.jfr.LogAppendEvent;
+
 /**
  * Что починить:
  * 1. Этот класс порождает утечку ресурсов (связанные слушатели оказываются
@@ -15,18 +21,68 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  */
 public class LogWindowSource
 {
-    private final int queueLength;
+    private static final Counter APPENDS = MetricsRegistry.getDefault().counter("log.appends");
+    private static final Counter OVERWRITES = MetricsRegistry.getDefault().counter("log.overwrites");
+    private static final LatencyHistogram FANOUT_NANOS = MetricsRegistry.getDefault().histogram("log.fanout");
 
+    private final String name;
+    private final LogWindowSource parent;
     private final CircularBuffer<LogEntry> messages;
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private volatile LogMemoryBudget budget;
     private final List<LogChangeListener> listeners = new ArrayList<>();
     private final ReentrantReadWriteLock listenersLock = new ReentrantReadWriteLock();
     private volatile LogChangeListener[] activeListeners;
     
     public LogWindowSource(int queueLength)
     {
-        this.queueLength = queueLength;
+        this("", null, queueLength);
+    }
+
+    /**
+     * @param parent источник, слушатели которого тоже узнают о новых
+     * записях этого источника, или {@code null}
+     */
+    LogWindowSource(String name, LogWindowSource parent, int queueLength)
+    {
+        this.name = name;
+        this.parent = parent;
         this.messages = new CircularBuffer<>(queueLength);
     }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getCapacity()
+    {
+        return messages.capacity();
+    }
+
+    /**
+     * Меняет емкость очереди; при уменьшении самые старые записи
+     * отбрасываются.
+     */
+    public void setCapacity(int queueLength)
+    {
+        for (LogEntry evicted : messages.resize(queueLength)) {
+            release(evicted);
+        }
+    }
+
+    /**
+     * Примерный объем памяти, который занимают записи источника, в байтах.
+     */
+    public long getRetainedBytes()
+    {
+        return retainedBytes.get();
+    }
+
+    void setBudget(LogMemoryBudget budget)
+    {
+        this.budget = budget;
+    }
     
     public void registerListener(LogChangeListener listener)
     {
@@ -52,13 +108,86 @@ public class LogWindowSource
     
     public void append(LogLevel logLevel, String strMessage)
     {
-        LogEntry entry = new LogEntry(logLevel, strMessage);
-        messages.add(entry);
-        LogChangeListener [] currentListeners = getActiveListeners();
+        LogAppendEvent event = new LogAppendEvent();
+        event.begin();
+        LogEntry entry = new LogEntry(name, logLevel, strMessage);
+        APPENDS.increment();
+        LogFileWriter fileWriter = Logger.getFileWriter();
+        if (fileWriter != null) {
+            fileWriter.write(entry);
+        }
+        long size = entry.estimatedSize();
+        retainedBytes.addAndGet(size);
+        LogMemoryBudget currentBudget = budget;
+        if (currentBudget != null) {
+            currentBudget.retain(size);
+        }
+        LogEntry overwritten = messages.addEvicting(entry);
+        if (overwritten != null) {
+            OVERWRITES.increment();
+            release(overwritten);
+        }
+        if (currentBudget != null) {
+            currentBudget.enforce();
+        }
+        int listenerCount = notifyListeners();
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.level = logLevel.name();
+            event.listenerCount = listenerCount;
+            event.commit();
+        }
+    }
 
-        for (LogChangeListener listener : currentListeners)
-        {
-            listener.onLogChanged();
+    /**
+     * Оповещает слушателей этого источника и всех его предков.
+     *
+     * @return число оповещенных слушателей
+     */
+    private int notifyListeners()
+    {
+        long startTime = 0;
+        int notified = 0;
+        for (LogWindowSource source = this; source != null; source = source.parent) {
+            LogChangeListener [] currentListeners = source.getActiveListeners();
+            if (currentListeners.length > 0 && notified == 0) {
+                startTime = System.nanoTime();
+            }
+            for (LogChangeListener listener : currentListeners)
+            {
+                listener.onLogChanged();
+            }
+            notified += currentListeners.length;
+        }
+        if (notified > 0) {
+            FANOUT_NANOS.record(System.nanoTime() - startTime);
+        }
+        return notified;
+    }
+
+    /**
+     * Убирает самую старую запись, чтобы уложиться в общий бюджет памяти.
+     *
+     * @return освобожденный объем в байтах или 0, если записей нет
+     */
+    long evictOldest()
+    {
+        LogEntry evicted = messages.removeOldest();
+        if (evicted == null) {
+            return 0;
+        }
+        release(evicted);
+        return evicted.estimatedSize();
+    }
+
+    private void release(LogEntry entry)
+    {
+        long size = entry.estimatedSize();
+        retainedBytes.addAndGet(-size);
+        LogMemoryBudget currentBudget = budget;
+        if (currentBudget != null) {
+            currentBudget.release(size);
         }
     }
 
@@ -1,28 +1,88 @@
 package log;
 
+import metrics.MetricsRegistry;
+
+/**
+ * Точка входа в протоколы. {@link #debug} и {@link #error} пишут
+ * в корневой протокол, а подсистемы берут свои именованные протоколы
+ * через {@link #get(String)}. Все протоколы делят один бюджет памяти
+ * ({@link #getMemoryBudget()}) и могут дублироваться в файл
+ * ({@link #setFileWriter}).
+ */
 public final class Logger
 {
-    private static final LogWindowSource defaultLogSource;
+    private static final LogMemoryBudget memoryBudget = new LogMemoryBudget(LogMemoryBudget.DEFAULT_LIMIT_BYTES);
+    private static final NamedLogger root;
+    private static volatile LogFileWriter fileWriter;
     static {
-        defaultLogSource = new LogWindowSource(100);
+        root = new NamedLogger("", null);
+        memoryBudget.register(root.getSource());
+        MetricsRegistry.getDefault().gauge("log.entries", root::size);
+        MetricsRegistry.getDefault().gauge("log.retainedBytes", memoryBudget::getRetainedBytes);
     }
-    
+
     private Logger()
     {
     }
 
     public static void debug(String strMessage)
     {
-        defaultLogSource.append(LogLevel.Debug, strMessage);
+        root.debug(strMessage);
     }
-    
+
     public static void error(String strMessage)
     {
-        defaultLogSource.append(LogLevel.Error, strMessage);
+        root.error(strMessage);
+    }
+
+    /**
+     * Протокол с именем из частей через точку, например {@code sim.physics};
+     * недостающие предки создаются. Пустое имя - корень.
+     */
+    public static NamedLogger get(String name)
+    {
+        NamedLogger logger = root;
+        if (name.isEmpty()) {
+            return logger;
+        }
+        for (String part : name.split("\\.")) {
+            if (part.isEmpty()) {
+                throw new IllegalArgumentException("Invalid logger name: " + name);
+            }
+            logger = logger.child(part, memoryBudget);
+        }
+        return logger;
+    }
+
+    public static NamedLogger getRoot()
+    {
+        return root;
+    }
+
+    public static LogMemoryBudget getMemoryBudget()
+    {
+        return memoryBudget;
+    }
+
+    /**
+     * Подключает запись всех протоколов в файл; {@code null} отключает ее.
+     * Прежний файл не закрывается.
+     */
+    public static void setFileWriter(LogFileWriter writer)
+    {
+        fileWriter = writer;
+    }
+
+    public static LogFileWriter getFileWriter()
+    {
+        return fileWriter;
     }
 
+    /**
+     * Собственные записи корневого протокола.
+     */
     public static LogWindowSource getDefaultLogSource()
     {
-        return defaultLogSource;
+        return root.getSource();
     }
 }
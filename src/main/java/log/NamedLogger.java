@@ -0,0 +1,183 @@
+package log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Именованный протокол в иерархии: имена разделяются точками
+ * ({@code sim.physics}, {@code ui.state}), корень имеет пустое имя.
+ * Протоколы получаются через {@link Logger#get(String)}.
+ * <p>
+ * У каждого протокола своя очередь записей со своей емкостью и свой
+ * уровень: записи ниже уровня отбрасываются сразу. Уровень, не заданный
+ * явно, наследуется от предка. Слушатель, подписанный на протокол,
+ * узнает о записях всего его поддерева.
+ */
+public final class NamedLogger
+{
+    public static final int DEFAULT_CAPACITY = 100;
+
+    private final String name;
+    private final NamedLogger parent;
+    private final Map<String, NamedLogger> children = new ConcurrentSkipListMap<>();
+    private final LogWindowSource source;
+    private volatile LogLevel level;
+
+    NamedLogger(String name, NamedLogger parent)
+    {
+        this.name = name;
+        this.parent = parent;
+        this.source = new LogWindowSource(name, parent == null ? null : parent.source, DEFAULT_CAPACITY);
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public NamedLogger getParent()
+    {
+        return parent;
+    }
+
+    /**
+     * Непосредственные потомки в порядке имен.
+     */
+    public Collection<NamedLogger> getChildren()
+    {
+        return children.values();
+    }
+
+    NamedLogger child(String simpleName, LogMemoryBudget budget)
+    {
+        return children.computeIfAbsent(simpleName, key -> {
+            NamedLogger child = new NamedLogger(name.isEmpty() ? key : name + "." + key, this);
+            budget.register(child.source);
+            return child;
+        });
+    }
+
+    /**
+     * Собственные записи протокола, без поддерева.
+     */
+    public LogWindowSource getSource()
+    {
+        return source;
+    }
+
+    /**
+     * @param level уровень или {@code null}, чтобы наследовать его от предка
+     */
+    public void setLevel(LogLevel level)
+    {
+        this.level = level;
+    }
+
+    public LogLevel getLevel()
+    {
+        return level;
+    }
+
+    public LogLevel getEffectiveLevel()
+    {
+        for (NamedLogger logger = this; logger != null; logger = logger.parent) {
+            LogLevel current = logger.level;
+            if (current != null) {
+                return current;
+            }
+        }
+        return LogLevel.Trace;
+    }
+
+    public boolean isEnabled(LogLevel logLevel)
+    {
+        return logLevel.level() >= getEffectiveLevel().level();
+    }
+
+    public void setCapacity(int capacity)
+    {
+        source.setCapacity(capacity);
+    }
+
+    public void log(LogLevel logLevel, String strMessage)
+    {
+        if (isEnabled(logLevel)) {
+            source.append(logLevel, strMessage);
+        }
+    }
+
+    public void trace(String strMessage)
+    {
+        log(LogLevel.Trace, strMessage);
+    }
+
+    public void debug(String strMessage)
+    {
+        log(LogLevel.Debug, strMessage);
+    }
+
+    public void info(String strMessage)
+    {
+        log(LogLevel.Info, strMessage);
+    }
+
+    public void warning(String strMessage)
+    {
+        log(LogLevel.Warning, strMessage);
+    }
+
+    public void error(String strMessage)
+    {
+        log(LogLevel.Error, strMessage);
+    }
+
+    /**
+     * Подписывает слушателя на записи протокола и всех его потомков.
+     */
+    public void registerListener(LogChangeListener listener)
+    {
+        source.registerListener(listener);
+    }
+
+    public void unregisterListener(LogChangeListener listener)
+    {
+        source.unregisterListener(listener);
+    }
+
+    /**
+     * Записи поддерева в порядке их появления.
+     */
+    public List<LogEntry> entries()
+    {
+        List<LogEntry> result = new ArrayList<>();
+        collect(result);
+        result.sort(Comparator.comparingLong(LogEntry::getSequence));
+        return result;
+    }
+
+    private void collect(List<LogEntry> result)
+    {
+        for (LogEntry entry : source.all()) {
+            result.add(entry);
+        }
+        for (NamedLogger child : children.values()) {
+            child.collect(result);
+        }
+    }
+
+    /**
+     * Общее число записей поддерева.
+     */
+    public int size()
+    {
+        int size = source.size();
+        for (NamedLogger child : children.values()) {
+            size += child.size();
+        }
+        return size;
+    }
+}
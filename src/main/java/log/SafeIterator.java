@@ -7,6 +7,7 @@ public class SafeIterator<E, T> implements Iterator<E> {
     private final int endIndex;
     private int currentIndex;
     private final int maxIndex;
+    private T next;
 
     public SafeIterator(CircularBuffer<T> buffer, int startFrom, int count) {
         this.buffer = buffer;
@@ -16,9 +17,17 @@ public class SafeIterator<E, T> implements Iterator<E> {
         this.endIndex = currentSize;
     }
 
+    /**
+     * Буфер может уменьшиться во время обхода (общий бюджет памяти
+     * протокола вытесняет старые записи), поэтому следующий элемент
+     * читается заранее, и обход просто заканчивается раньше.
+     */
     @Override
     public boolean hasNext() {
-        return currentIndex < maxIndex && currentIndex < endIndex;
+        if (next == null && currentIndex < maxIndex && currentIndex < endIndex) {
+            next = buffer.getIfPresent(currentIndex);
+        }
+        return next != null;
     }
 
     @Override
@@ -27,7 +36,8 @@ public class SafeIterator<E, T> implements Iterator<E> {
         if (!hasNext()) {
             throw new java.util.NoSuchElementException();
         }
-        E item = (E) buffer.get(currentIndex);
+        E item = (E) next;
+        next = null;
         currentIndex++;
         return item;
     }
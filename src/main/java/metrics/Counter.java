@@ -0,0 +1,28 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счетчик событий. Построен на {@link LongAdder}: потоки увеличивают
+ * разные ячейки, поэтому частые увеличения из нескольких потоков
+ * не конкурируют за одну переменную, а суммирование идет только при чтении.
+ */
+public class Counter
+{
+    private final LongAdder value = new LongAdder();
+
+    public void increment()
+    {
+        value.increment();
+    }
+
+    public void add(long amount)
+    {
+        value.add(amount);
+    }
+
+    public long get()
+    {
+        return value.sum();
+    }
+}
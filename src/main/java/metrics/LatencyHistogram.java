@@ -0,0 +1,134 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Гистограмма длительностей с фиксированным набором корзин, без блокировок.
+ * <p>
+ * Корзины логарифмические: каждая степень двойки делится на
+ * {@link #SUB_BUCKETS} равных частей, поэтому относительная погрешность
+ * перцентилей не превышает 25%. Запись - одно атомарное увеличение
+ * счетчика, память не выделяется. Значения задаются в наносекундах.
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 2;
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos)
+    {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(bucketIndex(nanos));
+        long currentMax = max.get();
+        while (nanos > currentMax && !max.compareAndSet(currentMax, nanos)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Забирает накопленные значения и обнуляет гистограмму.
+     * Значения, записанные во время сброса, попадают либо в этот снимок,
+     * либо в следующий, но не теряются.
+     */
+    public Snapshot drain()
+    {
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (counts.get(i) != 0) {
+                snapshot[i] = counts.getAndSet(i, 0);
+            }
+        }
+        return new Snapshot(snapshot, max.getAndSet(0));
+    }
+
+    /**
+     * Текущее состояние без обнуления.
+     */
+    public Snapshot snapshot()
+    {
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return new Snapshot(snapshot, max.get());
+    }
+
+    static int bucketIndex(long value)
+    {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Верхняя граница значений, попадающих в корзину.
+     */
+    static long bucketUpperBound(int index)
+    {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        long lowerBound = (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    public static final class Snapshot
+    {
+        private final long[] counts;
+        private final long max;
+        private final long total;
+
+        private Snapshot(long[] counts, long max)
+        {
+            this.counts = counts;
+            this.max = max;
+            long sum = 0;
+            for (long count : counts) {
+                sum += count;
+            }
+            this.total = sum;
+        }
+
+        public long getCount()
+        {
+            return total;
+        }
+
+        public long getMax()
+        {
+            return max;
+        }
+
+        /**
+         * Значение перцентиля percentile (от 0 до 100), округленное вверх
+         * до границы корзины, но не больше максимума.
+         */
+        public long getPercentile(double percentile)
+        {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] != 0) {
+                    return Math.min(bucketUpperBound(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
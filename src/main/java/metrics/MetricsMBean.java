@@ -0,0 +1,124 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Представление реестра показателей для JMX. Набор атрибутов
+ * строится заново при каждом запросе описания, поэтому показатели,
+ * созданные после регистрации, тоже видны. Гистограмма дает атрибуты
+ * {@code <имя>.count}, {@code .p50}, {@code .p99} и {@code .max}
+ * (в наносекундах, за все время работы).
+ */
+class MetricsMBean implements DynamicMBean
+{
+    private static final String COUNT = ".count";
+    private static final String P50 = ".p50";
+    private static final String P99 = ".p99";
+    private static final String MAX = ".max";
+
+    private final MetricsRegistry registry;
+
+    MetricsMBean(MetricsRegistry registry)
+    {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException
+    {
+        Counter counter = registry.getCounters().get(attribute);
+        if (counter != null) {
+            return counter.get();
+        }
+        LongSupplier gauge = registry.getGauges().get(attribute);
+        if (gauge != null) {
+            return gauge.getAsLong();
+        }
+        int dot = attribute.lastIndexOf('.');
+        if (dot > 0) {
+            LatencyHistogram histogram = registry.getHistograms().get(attribute.substring(0, dot));
+            if (histogram != null) {
+                LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+                switch (attribute.substring(dot)) {
+                    case COUNT: return snapshot.getCount();
+                    case P50: return snapshot.getPercentile(50);
+                    case P99: return snapshot.getPercentile(99);
+                    case MAX: return snapshot.getMax();
+                    default: break;
+                }
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes)
+    {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // отсутствующие атрибуты пропускаются, как требует DynamicMBean
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException
+    {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes)
+    {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException
+    {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo()
+    {
+        Map<String, String> attributes = new TreeMap<>();
+        for (String name : registry.getCounters().keySet()) {
+            attributes.put(name, "Counter");
+        }
+        for (String name : registry.getGauges().keySet()) {
+            attributes.put(name, "Gauge");
+        }
+        for (String name : registry.getHistograms().keySet()) {
+            attributes.put(name + COUNT, "Number of recorded durations");
+            attributes.put(name + P50, "Median duration, ns");
+            attributes.put(name + P99, "99th percentile duration, ns");
+            attributes.put(name + MAX, "Maximum duration, ns");
+        }
+
+        List<MBeanAttributeInfo> infos = new ArrayList<>(attributes.size());
+        for (Map.Entry<String, String> entry : attributes.entrySet()) {
+            infos.add(new MBeanAttributeInfo(entry.getKey(), Long.class.getName(), entry.getValue(),
+                    true, false, false));
+        }
+        return new MBeanInfo(getClass().getName(), "Robots application metrics",
+                infos.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[0], null);
+    }
+}
@@ -0,0 +1,82 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Реестр показателей приложения: счетчики, датчики (значение
+ * вычисляется при чтении) и гистограммы длительностей.
+ * <p>
+ * Показатели создаются один раз по имени и дальше используются
+ * напрямую, без обращения к реестру, поэтому запись стоит одного
+ * неблокирующего увеличения. Чтение - только через JMX: реестр по умолчанию
+ * виден в jconsole как {@value #OBJECT_NAME}, и пока к нему никто не
+ * обращается, ничего не суммируется и не вычисляется.
+ */
+public class MetricsRegistry
+{
+    public static final String OBJECT_NAME = "robots:type=Metrics";
+
+    private static final MetricsRegistry defaultRegistry = createDefault();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    public static MetricsRegistry getDefault()
+    {
+        return defaultRegistry;
+    }
+
+    private static MetricsRegistry createDefault()
+    {
+        MetricsRegistry registry = new MetricsRegistry();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new MetricsMBean(registry), new ObjectName(OBJECT_NAME));
+        } catch (JMException | SecurityException e) {
+            System.err.println("Metrics are not available over JMX: " + e);
+        }
+        return registry;
+    }
+
+    public Counter counter(String name)
+    {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    /**
+     * Регистрирует датчик; повторная регистрация с тем же именем
+     * заменяет прежний.
+     */
+    public void gauge(String name, LongSupplier value)
+    {
+        gauges.put(name, value);
+    }
+
+    public LatencyHistogram histogram(String name)
+    {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    Map<String, Counter> getCounters()
+    {
+        return counters;
+    }
+
+    Map<String, LongSupplier> getGauges()
+    {
+        return gauges;
+    }
+
+    Map<String, LatencyHistogram> getHistograms()
+    {
+        return histograms;
+    }
+}
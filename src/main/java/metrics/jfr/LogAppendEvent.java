@@ -0,0 +1,22 @@
+package metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Добавление записи в протокол вместе с оповещением подписчиков.
+ */
+@Name("robots.LogAppend")
+@Label("Log Append")
+@Category({"Robots", "Logging"})
+@Description("Appending a log entry and notifying listeners")
+public class LogAppendEvent extends jdk.jfr.Event
+{
+    @Label("Level")
+    public String level;
+
+    @Label("Listener Count")
+    public int listenerCount;
+}
@@ -0,0 +1,26 @@
+package metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Отрисовка игрового поля: площадь перерисованной области и число
+ * нарисованных роботов.
+ */
+@Name("robots.Paint")
+@Label("Paint")
+@Category({"Robots", "Rendering"})
+@Description("Painting of the game field")
+@StackTrace(false)
+public class PaintEvent extends jdk.jfr.Event
+{
+    @Label("Dirty Area")
+    @Description("Area of the repainted region in pixels")
+    public long dirtyArea;
+
+    @Label("Robots Drawn")
+    public int robotsDrawn;
+}
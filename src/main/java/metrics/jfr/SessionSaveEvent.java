@@ -0,0 +1,28 @@
+package metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Запись файла сессии с состоянием окон.
+ */
+@Name("robots.SessionSave")
+@Label("Session Save")
+@Category({"Robots", "Persistence"})
+@Description("Writing the window state session file")
+@StackTrace(false)
+public class SessionSaveEvent extends jdk.jfr.Event
+{
+    @Label("Path")
+    public String path;
+
+    @Label("Window Count")
+    public int windowCount;
+
+    @Label("Success")
+    public boolean success;
+}
@@ -0,0 +1,26 @@
+package metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Шаг симуляции. При активной отрисовке за один кадр может выполняться
+ * несколько шагов подряд, тогда они записываются одним событием
+ * с числом подшагов.
+ */
+@Name("robots.SimulationTick")
+@Label("Simulation Tick")
+@Category({"Robots", "Simulation"})
+@Description("One or more consecutive simulation steps")
+@StackTrace(false)
+public class SimulationTickEvent extends jdk.jfr.Event
+{
+    @Label("Robot Count")
+    public int robotCount;
+
+    @Label("Substeps")
+    public int substeps;
+}
@@ -0,0 +1,197 @@
+package telemetry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static telemetry.TelemetryRing.*;
+
+/**
+ * Читатель кольца {@link TelemetryRing}. Читает прямо из отображения
+ * файла в память и ничего не пишет в файл, поэтому читателей может быть
+ * сколько угодно, и они не влияют на писателя.
+ * <p>
+ * Отставший читатель перескакивает вперед: записи, которые писатель
+ * уже перезаписал, считаются потерянными ({@link #getLost()}).
+ * <p>
+ * Запуск из командной строки печатает раз в секунду число прочитанных
+ * и потерянных записей, а с ключом {@code --records} - сами записи:
+ * {@code java -cp build/classes/java/main telemetry.TelemetryReader [--records] [файл]}.
+ */
+public final class TelemetryReader implements Closeable
+{
+    /**
+     * Получатель записей; поля передаются по значению, без объектов.
+     */
+    @FunctionalInterface
+    public interface Visitor
+    {
+        void record(long tick, int id, int flags, double x, double y, double direction,
+                    double targetX, double targetY);
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int mask;
+    private long position;
+    private long lost;
+
+    private TelemetryReader(FileChannel channel, MappedByteBuffer buffer, int capacity)
+    {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.position = published();
+    }
+
+    /**
+     * Открывает кольцо; чтение начинается с записей, опубликованных
+     * после открытия.
+     */
+    public static TelemetryReader open(Path path) throws IOException
+    {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a telemetry ring: " + path);
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            header.order(ByteOrder.nativeOrder());
+            if (header.getInt(MAGIC_OFFSET) != MAGIC) {
+                throw new IOException("Not a telemetry ring: " + path);
+            }
+            VarHandle.acquireFence();
+            if (header.getInt(VERSION_OFFSET) != VERSION || header.getInt(RECORD_SIZE_OFFSET) != RECORD_SIZE) {
+                throw new IOException("Unsupported telemetry ring version in " + path);
+            }
+            int capacity = header.getInt(CAPACITY_OFFSET);
+            long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+            if (capacity <= 0 || Integer.bitCount(capacity) != 1 || channel.size() < size) {
+                throw new IOException("Corrupted telemetry ring " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.nativeOrder());
+            return new TelemetryReader(channel, buffer, capacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Передает получателю все новые записи и возвращает их число.
+     */
+    public int poll(Visitor visitor)
+    {
+        long published = published();
+        if (published < position) {
+            // Кольцо начато заново: читаем с его начала.
+            position = 0;
+        }
+        catchUp(published);
+        int read = 0;
+        while (position < published) {
+            int offset = HEADER_SIZE + (int) (position & mask) * RECORD_SIZE;
+            long expected = 2 * position + 2;
+            long before = (long) LONGS.getAcquire(buffer, offset + SEQ);
+            long tick = buffer.getLong(offset + TICK);
+            int id = buffer.getInt(offset + ID);
+            int flags = buffer.getInt(offset + FLAGS);
+            double x = buffer.getDouble(offset + X);
+            double y = buffer.getDouble(offset + Y);
+            double direction = buffer.getDouble(offset + DIRECTION);
+            double targetX = buffer.getDouble(offset + TARGET_X);
+            double targetY = buffer.getDouble(offset + TARGET_Y);
+            VarHandle.loadLoadFence();
+            long after = (long) LONGS.getOpaque(buffer, offset + SEQ);
+            if (before != expected || after != expected) {
+                // Писатель обогнал читателя на круг.
+                lost++;
+                position++;
+                catchUp(published());
+                continue;
+            }
+            visitor.record(tick, id, flags, x, y, direction, targetX, targetY);
+            position++;
+            read++;
+        }
+        return read;
+    }
+
+    /**
+     * Отставший больше чем на кольцо читатель перескакивает на половину
+     * кольца назад от последней опубликованной записи, чтобы писатель
+     * не догнал его сразу же снова.
+     */
+    private void catchUp(long published)
+    {
+        if (published - position > capacity) {
+            long resume = published - capacity / 2;
+            lost += resume - position;
+            position = resume;
+        }
+    }
+
+    private long published()
+    {
+        return (long) LONGS.getAcquire(buffer, PUBLISHED_OFFSET);
+    }
+
+    /**
+     * Число записей, перезаписанных раньше, чем их успели прочитать.
+     */
+    public long getLost()
+    {
+        return lost;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        boolean printRecords = false;
+        Path path = TelemetryRing.defaultPath();
+        for (String arg : args) {
+            if (arg.equals("--records")) {
+                printRecords = true;
+            } else {
+                path = Paths.get(arg);
+            }
+        }
+        Visitor visitor = printRecords
+                ? (tick, id, flags, x, y, direction, targetX, targetY) ->
+                        System.out.printf(Locale.ROOT, "%d,%d,%d,%.3f,%.3f,%.4f,%.1f,%.1f%n",
+                                tick, id, flags, x, y, direction, targetX, targetY)
+                : (tick, id, flags, x, y, direction, targetX, targetY) -> { };
+        try (TelemetryReader reader = open(path)) {
+            long reportAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+            long read = 0;
+            while (true) {
+                int count = reader.poll(visitor);
+                read += count;
+                if (count == 0) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+                }
+                if (System.nanoTime() - reportAt >= 0) {
+                    System.err.printf("records %d, lost %d%n", read, reader.getLost());
+                    reportAt += TimeUnit.SECONDS.toNanos(1);
+                }
+            }
+        }
+    }
+}
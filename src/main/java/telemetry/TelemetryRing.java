@@ -0,0 +1,173 @@
+package telemetry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Кольцо телеметрии в файле, отображенном в память: симуляция пишет
+ * в него состояние роботов на каждом шаге, а любые локальные процессы
+ * читают его через то же отображение ({@link TelemetryReader}) без
+ * копирования и без сокетов.
+ * <p>
+ * Формат (порядок байт платформы): заголовок {@value #HEADER_SIZE} байт -
+ * сигнатура {@code RBTL}, версия, размер записи, емкость кольца в записях
+ * (степень двойки), а с отдельной строки кэша - число опубликованных
+ * записей. За заголовком идут ячейки по {@value #RECORD_SIZE} байт:
+ * <pre>
+ *  0 seq      long    2 * (n + 1) для записи n; нечетное - запись идет
+ *  8 tick     long    номер шага симуляции
+ * 16 id       int     номер робота
+ * 20 flags    int     {@link #FLAG_MAIN}, {@link #FLAG_CONTROLLED}
+ * 24 x, y     double
+ * 40 dir      double
+ * 48 targetX, targetY double (NaN, если цели нет)
+ * </pre>
+ * Писатель один и никогда не ждет читателей: запись n ложится в ячейку
+ * {@code n % capacity} поверх старой. Номер в начале ячейки работает как
+ * seqlock: читатель сверяет его до и после чтения и так узнает, что
+ * запись перезаписали, пока он ее читал. Медленный читатель теряет
+ * записи, но не задерживает симуляцию.
+ */
+public final class TelemetryRing implements Closeable
+{
+    public static final String PATH_PROPERTY = "robots.telemetryFile";
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    public static final int FLAG_MAIN = 1;
+    public static final int FLAG_CONTROLLED = 2;
+
+    static final int MAGIC = 0x5242544C;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 128;
+    static final int RECORD_SIZE = 64;
+
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int RECORD_SIZE_OFFSET = 8;
+    static final int CAPACITY_OFFSET = 12;
+    static final int PUBLISHED_OFFSET = 64;
+
+    static final int SEQ = 0;
+    static final int TICK = 8;
+    static final int ID = 16;
+    static final int FLAGS = 20;
+    static final int X = 24;
+    static final int Y = 32;
+    static final int DIRECTION = 40;
+    static final int TARGET_X = 48;
+    static final int TARGET_Y = 56;
+
+    static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int mask;
+    private long next;
+
+    private TelemetryRing(FileChannel channel, MappedByteBuffer buffer, int capacity)
+    {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.mask = capacity - 1;
+    }
+
+    public static Path defaultPath()
+    {
+        String path = System.getProperty(PATH_PROPERTY);
+        if (path != null) {
+            return Paths.get(path);
+        }
+        return Paths.get(System.getProperty("user.home"), ".robots", "telemetry.ring");
+    }
+
+    /**
+     * Создает кольцо в файле или начинает его заново: счетчик записей
+     * сбрасывается. Файл не усекается, чтобы не уронить читателей, которые
+     * держат его отображение; они увидят сброс счетчика и продолжат
+     * с начала. Если емкость изменилась, читателям нужно открыть файл снова.
+     */
+    public static TelemetryRing create(Path path, int capacity) throws IOException
+    {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.nativeOrder());
+            buffer.putInt(VERSION_OFFSET, VERSION);
+            buffer.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+            buffer.putInt(CAPACITY_OFFSET, capacity);
+            LONGS.setRelease(buffer, PUBLISHED_OFFSET, 0L);
+            // Сигнатура пишется последней: читатель, увидевший ее,
+            // увидит и остальной заголовок.
+            VarHandle.releaseFence();
+            buffer.putInt(MAGIC_OFFSET, MAGIC);
+            return new TelemetryRing(channel, buffer, capacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getCapacity()
+    {
+        return mask + 1;
+    }
+
+    /**
+     * Пишет одну запись. Читателям она видна сразу, а счетчик
+     * опубликованных записей обновляется в {@link #publish()}.
+     */
+    public void write(long tick, int id, int flags, double x, double y, double direction,
+                      double targetX, double targetY)
+    {
+        long n = next++;
+        int offset = HEADER_SIZE + (int) (n & mask) * RECORD_SIZE;
+        LONGS.setOpaque(buffer, offset + SEQ, 2 * n + 1);
+        VarHandle.storeStoreFence();
+        buffer.putLong(offset + TICK, tick);
+        buffer.putInt(offset + ID, id);
+        buffer.putInt(offset + FLAGS, flags);
+        buffer.putDouble(offset + X, x);
+        buffer.putDouble(offset + Y, y);
+        buffer.putDouble(offset + DIRECTION, direction);
+        buffer.putDouble(offset + TARGET_X, targetX);
+        buffer.putDouble(offset + TARGET_Y, targetY);
+        LONGS.setRelease(buffer, offset + SEQ, 2 * n + 2);
+    }
+
+    /**
+     * Публикует записанное: обычно вызывается один раз в конце шага.
+     */
+    public void publish()
+    {
+        LONGS.setRelease(buffer, PUBLISHED_OFFSET, next);
+    }
+
+    /**
+     * Закрывает файл. Отображение остается до сборки мусора: у
+     * {@link MappedByteBuffer} нет открытого способа снять его
+     * явно, поэтому писать после закрытия нельзя.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+}
@@ -0,0 +1,223 @@
+package analysis;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import log.LogLevel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Разбор по мелким кускам в несколько потоков дает ту же сводку, что
+ * разбор всего файла одним куском: строки на границах кусков, куски,
+ * начинающиеся сразу после перевода строки, CRLF и переходы роботов
+ * через границу кусков учитываются ровно один раз.
+ */
+class ChunkedFileTest
+{
+    private static final int[] CHUNK_SIZES = {64, 97, 1000};
+    private static final long WINDOW_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    @TempDir
+    Path directory;
+
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    void startPool()
+    {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterEach
+    void stopPool()
+    {
+        pool.shutdown();
+    }
+
+    @Test
+    void logSummaryDoesNotDependOnChunkSize() throws IOException
+    {
+        Path path = directory.resolve("robots.log");
+        byte[] file = logFile(new SplittableRandom(1));
+        Files.write(path, file);
+        ChunkDecoder<LogStatistics> decoder = LogStatistics.decoder(WINDOW_MILLIS);
+        LogStatistics expected = ChunkedFile.analyze(path, decoder, pool, wholeFile(path));
+        // Пустые строки, в том числе из одного CR, не считаются.
+        assertEquals(nonEmptyLines(file), expected.getLines());
+        assertTrue(expected.getMalformed() > 0 && expected.getWindows().size() > 10);
+
+        for (int chunkSize : CHUNK_SIZES) {
+            LogStatistics actual = ChunkedFile.analyze(path, decoder, pool, chunkSize);
+            String context = "chunk " + chunkSize;
+            assertEquals(expected.getLines(), actual.getLines(), context);
+            assertEquals(expected.getMalformed(), actual.getMalformed(), context);
+            for (LogLevel level : LogLevel.values()) {
+                assertEquals(expected.getCount(level), actual.getCount(level), context + ", " + level);
+            }
+            assertEquals(expected.getFirstTimestamp(), actual.getFirstTimestamp(), context);
+            assertEquals(expected.getLastTimestamp(), actual.getLastTimestamp(), context);
+            assertWindowsEqual(expected.getWindows(), actual.getWindows(), context);
+        }
+    }
+
+    @Test
+    void traceSummaryDoesNotDependOnChunkSize() throws IOException
+    {
+        Path path = directory.resolve("trace.csv");
+        Files.write(path, traceFile(new SplittableRandom(2)));
+        ChunkDecoder<TraceStatistics> decoder = TraceStatistics.decoder(WINDOW_MILLIS);
+        TraceStatistics expected = ChunkedFile.analyze(path, decoder, pool, wholeFile(path));
+        long hits = 0;
+        for (int id = 0; id < expected.getRobotCapacity(); id++) {
+            hits += expected.getWallHits(id);
+        }
+        assertTrue(hits > 0 && expected.getMalformed() > 0);
+
+        for (int chunkSize : CHUNK_SIZES) {
+            TraceStatistics actual = ChunkedFile.analyze(path, decoder, pool, chunkSize);
+            String context = "chunk " + chunkSize;
+            assertEquals(expected.getLines(), actual.getLines(), context);
+            assertEquals(expected.getMalformed(), actual.getMalformed(), context);
+            assertEquals(expected.getFirstTick(), actual.getFirstTick(), context);
+            assertEquals(expected.getLastTick(), actual.getLastTick(), context);
+            assertWindowsEqual(expected.getWindows(), actual.getWindows(), context);
+            for (int id = 0; id < expected.getRobotCapacity(); id++) {
+                String robot = context + ", robot " + id;
+                assertEquals(expected.getRecords(id), actual.getRecords(id), robot);
+                assertEquals(expected.getWallHits(id), actual.getWallHits(id), robot);
+                // Слияние складывает пути кусков в другом порядке.
+                assertEquals(expected.getDistance(id), actual.getDistance(id),
+                        1e-9 * Math.max(1, expected.getDistance(id)), robot);
+            }
+        }
+    }
+
+    @Test
+    void lineLongerThanTheLimitIsAnError() throws IOException
+    {
+        Path path = directory.resolve("long.log");
+        StringBuilder text = new StringBuilder("1000\tInfo\tsim\tshort\n1001\tInfo\tsim\t");
+        text.append("x".repeat(ChunkedFile.MAX_LINE_LENGTH + 100)).append('\n');
+        text.append("1002\tInfo\tsim\tshort\n");
+        Files.write(path, text.toString().getBytes(StandardCharsets.UTF_8));
+
+        IOException error = assertThrows(IOException.class,
+                () -> ChunkedFile.analyze(path, LogStatistics.decoder(WINDOW_MILLIS), pool, 64));
+        assertTrue(error.getMessage().startsWith("Line longer than"), error.getMessage());
+    }
+
+    private static long nonEmptyLines(byte[] file)
+    {
+        long count = 0;
+        for (String line : new String(file, StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isEmpty() && !line.equals("\r")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Размер куска, при котором весь файл - один кусок. */
+    private static int wholeFile(Path path) throws IOException
+    {
+        return (int) Files.size(path) + 1;
+    }
+
+    private static void assertWindowsEqual(Map<Long, long[]> expected, Map<Long, long[]> actual, String context)
+    {
+        assertEquals(expected.keySet(), actual.keySet(), context);
+        Iterator<long[]> actualCounts = actual.values().iterator();
+        for (Map.Entry<Long, long[]> window : expected.entrySet()) {
+            assertArrayEquals(window.getValue(), actualCounts.next(), context + ", window " + window.getKey());
+        }
+    }
+
+    /**
+     * Протокол, в котором строки разной длины (от пустых до длиннее
+     * куска), часть строк кончается на CRLF, часть испорчена. Первая
+     * строка занимает ровно 64 байта, так что второй кусок размером 64
+     * начинается сразу после перевода строки.
+     */
+    private static byte[] logFile(SplittableRandom random)
+    {
+        LogLevel[] levels = LogLevel.values();
+        StringBuilder text = new StringBuilder();
+        String first = "1700000000000\tInfo\tsim\t";
+        text.append(first).append("y".repeat(63 - first.length())).append('\n');
+        long timestamp = 1_700_000_000_000L;
+        for (int i = 0; i < 3000; i++) {
+            timestamp += random.nextInt(500);
+            switch (random.nextInt(20)) {
+                case 0:
+                    text.append('\n');
+                    continue;
+                case 1:
+                    text.append("broken line without tabs\n");
+                    continue;
+                case 2:
+                    text.append(timestamp).append("\tNoSuchLevel\tsim\tmessage\n");
+                    continue;
+                case 3:
+                    text.append("\r\n");
+                    continue;
+                default:
+                    break;
+            }
+            text.append(timestamp).append('\t').append(levels[random.nextInt(levels.length)].name())
+                    .append("\tsim.robots\t").append("m".repeat(random.nextInt(200)));
+            text.append(random.nextInt(4) == 0 ? "\r\n" : "\n");
+        }
+        // Последняя строка без перевода строки.
+        text.append(timestamp + 1).append("\tError\tsim\tlast");
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Трасса роботов, которые иногда отражаются от стены (скачок
+     * направления), иногда теряют записи и иногда оказываются
+     * в испорченных строках.
+     */
+    private static byte[] traceFile(SplittableRandom random)
+    {
+        int robots = 20;
+        double[] x = new double[robots];
+        double[] y = new double[robots];
+        double[] direction = new double[robots];
+        StringBuilder text = new StringBuilder();
+        for (long tick = 0; tick < 2000; tick++) {
+            for (int id = 0; id < robots; id++) {
+                direction[id] += random.nextInt(50) == 0 ? Math.PI / 2 : random.nextDouble(-0.05, 0.05);
+                x[id] += Math.cos(direction[id]);
+                y[id] += Math.sin(direction[id]);
+                int kind = random.nextInt(200);
+                if (kind == 0) {
+                    continue;
+                }
+                if (kind == 1) {
+                    text.append(tick).append(",x,0,1.0\n");
+                    continue;
+                }
+                text.append(String.format(Locale.ROOT, "%d,%d,%d,%.3f,%.3f,%.4f,%d,%d",
+                        tick, id, id == 0 ? 1 : 0, x[id], y[id], direction[id], 150, 100));
+                text.append(kind < 40 ? "\r\n" : "\n");
+            }
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,91 @@
+package gui;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Мир, восстановленный из файла контрольной точки, совпадает с миром
+ * в момент ее снятия и дальше шагает так же, как шагал исходный.
+ */
+class CheckpointFileTest
+{
+    private static final int TICKS = 500;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void worldRestoredFromFileRepeatsTheRunAfterTheCheckpoint() throws IOException
+    {
+        GameWorld world = new GameWorld();
+        // Правило без состояния: состояние регулятора в точку не входит.
+        world.setSteering(SteeringController.create("bangbang"));
+        world.setFieldSize(400, 300);
+        world.setTargetPosition(300, 50);
+        world.getRobotSettings().setProfile(RobotProfile.of(new Color(0x336699), 0.75f,
+                RobotShape.TRIANGLE, 0.2, 0.004));
+        world.spawnRobots(99);
+        for (int i = 0; i < 50; i++) {
+            world.tick();
+        }
+        WorldCheckpoint taken = world.checkpoint();
+        RobotProfile profile = world.getRobotSettings().getProfile();
+        Path path = directory.resolve("world.ckpt");
+        CheckpointFile.write(path, taken);
+
+        double[] expected = runAfterCheckpoint(world);
+
+        // Все, что входит в точку, меняется до восстановления.
+        world.setFieldSize(200, 100);
+        world.setTargetPosition(10, 10);
+        world.getRobotSettings().setProfile(RobotProfile.DEFAULT);
+        world.removeSpawnedRobots();
+        world.restore(CheckpointFile.read(path));
+
+        assertEquals(taken.getTick(), world.getTickCount());
+        assertEquals(300, world.getTargetPositionX());
+        assertEquals(50, world.getTargetPositionY());
+        assertSame(profile, world.getRobotSettings().getProfile());
+        assertEquals(400, world.getFieldWidth());
+        assertEquals(300, world.getFieldHeight());
+        assertTrue(world.isWorldSizeFixed());
+        WorldCheckpoint restored = world.checkpoint();
+        assertEquals(taken.getRandomState(), restored.getRandomState());
+        assertArrayEquals(taken.positionsX(), restored.positionsX());
+        assertArrayEquals(taken.positionsY(), restored.positionsY());
+        assertArrayEquals(taken.directions(), restored.directions());
+        assertArrayEquals(taken.sizes(), restored.sizes());
+
+        assertArrayEquals(expected, runAfterCheckpoint(world));
+    }
+
+    /**
+     * Шаги после точки, включая появление роботов, которое берет
+     * случайные числа у мира. Возвращает положения всех роботов.
+     */
+    private static double[] runAfterCheckpoint(GameWorld world)
+    {
+        for (int i = 0; i < TICKS; i++) {
+            if (i == TICKS / 2) {
+                world.spawnRobots(10);
+            }
+            world.tick();
+        }
+        RobotModel[] robots = world.getRobots();
+        double[] positions = new double[robots.length * 2];
+        for (int i = 0; i < robots.length; i++) {
+            positions[2 * i] = robots[i].getPositionX();
+            positions[2 * i + 1] = robots[i].getPositionY();
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,163 @@
+package gui;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class ControllerScopeTest
+{
+    @Test
+    void controllersMayCallSynchronizedWorldMethods()
+    {
+        GameWorld world = new GameWorld();
+        world.setFieldSize(400, 300);
+        ControllerScope scope = new ControllerScope(world);
+        AtomicLong observedTicks = new AtomicLong();
+        for (int i = 0; i < 10; i++) {
+            scope.fork(50 + i * 10, 50, control -> {
+                while (true) {
+                    observedTicks.set(world.getTickCount());
+                    world.getSpatialIndex();
+                    world.checkpoint();
+                    control.step(0.1, 0);
+                }
+            });
+        }
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            for (int i = 0; i < 100; i++) {
+                world.tick();
+            }
+            scope.close();
+        });
+        assertTrue(observedTicks.get() > 90, "controllers saw tick " + observedTicks.get());
+        assertEquals(1, world.getRobots().length);
+    }
+
+    @Test
+    void closeAsyncStopsControllersWhileTheWorldKeepsTicking()
+    {
+        GameWorld world = new GameWorld();
+        world.setFieldSize(400, 300);
+        ControllerScope scope = new ControllerScope(world);
+        for (int i = 0; i < 1000; i++) {
+            scope.fork(i % 400, i % 300, RobotController.patrol(10, 10, 390, 290, 5));
+        }
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            world.tick();
+            world.tick();
+            CompletableFuture<Void> closed = scope.closeAsync();
+            while (!closed.isDone()) {
+                world.tick();
+            }
+            closed.join();
+            // Мир свободен для новой области.
+            new ControllerScope(world).close();
+        });
+        assertEquals(1, world.getRobots().length);
+    }
+
+    @Test
+    void forkRacingCloseLeavesNoControlledRobot()
+    {
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            for (int round = 0; round < 50; round++) {
+                GameWorld world = new GameWorld();
+                world.setFieldSize(400, 300);
+                ControllerScope scope = new ControllerScope(world);
+                CountDownLatch forking = new CountDownLatch(1);
+                Thread forker = new Thread(() -> {
+                    try {
+                        for (int i = 0; ; i++) {
+                            scope.fork(i % 400, i % 300, RobotController.patrol(10, 10, 390, 290, 5));
+                            if (i == 10) {
+                                forking.countDown();
+                            }
+                        }
+                    } catch (IllegalStateException e) {
+                        // область закрыта
+                    } finally {
+                        forking.countDown();
+                    }
+                }, "forker");
+                forker.start();
+                forking.await();
+                world.tick();
+                scope.closeAsync().join();
+                forker.join();
+                for (RobotModel robot : world.getRobots()) {
+                    assertNull(robot.getControl(), "round " + round + ": a controlled robot is left on the field");
+                }
+                assertEquals(1, world.getRobots().length);
+            }
+        });
+    }
+
+    @Test
+    void restoreClosesControllersAndRestoresTheField()
+    {
+        GameWorld world = new GameWorld();
+        world.setFieldSize(400, 300);
+        world.spawnRobots(5);
+        WorldCheckpoint checkpoint = world.checkpoint();
+
+        world.setFieldSize(200, 100);
+        world.setSpatialIndexEnabled(true);
+        ControllerScope scope = new ControllerScope(world);
+        for (int i = 0; i < 100; i++) {
+            scope.fork(i, i, RobotController.patrol(10, 10, 190, 90, 5));
+        }
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            world.tick();
+            world.restore(checkpoint);
+            assertTrue(scope.isShutdown());
+            RobotModel[] found = new RobotModel[checkpoint.getRobotCount() + 1];
+            assertEquals(checkpoint.getRobotCount(), world.getSpatialIndex().query(0, 0, 400, 300, found));
+            // Мир больше не ждет команд закрываемой области.
+            for (int i = 0; i < 10; i++) {
+                world.tick();
+            }
+            scope.close();
+            new ControllerScope(world).close();
+        });
+        assertEquals(400, world.getFieldWidth());
+        assertEquals(300, world.getFieldHeight());
+        assertTrue(world.isWorldSizeFixed());
+        assertEquals(checkpoint.getRobotCount(), world.getRobots().length);
+        for (RobotModel robot : world.getRobots()) {
+            assertNull(robot.getControl());
+        }
+    }
+
+    @Test
+    void driveToArrivesWithPidAndGivesUpWhenItCannotArrive()
+    {
+        assertEquals(Boolean.TRUE, driveTo(0.1));
+        // Робот без скорости не доедет: возврат по пределу шагов.
+        assertEquals(Boolean.FALSE, driveTo(0));
+    }
+
+    private static Boolean driveTo(double maxVelocity)
+    {
+        GameWorld world = new GameWorld();
+        world.setFieldSize(400, 300);
+        world.getRobotSettings().setMaxVelocity(maxVelocity);
+        ControllerScope scope = new ControllerScope(world);
+        CompletableFuture<Boolean> arrived = new CompletableFuture<>();
+        scope.fork(100, 100, control -> arrived.complete(control.driveTo(100, 140)));
+        return assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            while (!arrived.isDone()) {
+                world.tick();
+            }
+            scope.close();
+            return arrived.join();
+        });
+    }
+}
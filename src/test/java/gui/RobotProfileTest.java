@@ -0,0 +1,36 @@
+package gui;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+
+import org.junit.jupiter.api.Test;
+
+class RobotProfileTest
+{
+    @Test
+    void equalValuesGiveTheSameProfile()
+    {
+        RobotProfile profile = RobotProfile.of(new Color(0x123456), 0.5f, RobotShape.OVAL, 0.2, 0.003);
+        assertSame(profile, RobotProfile.of(new Color(0x123456), 0.5f, RobotShape.OVAL, 0.2, 0.003));
+        assertSame(profile, profile.withSpeed(0.3, 0.003).withSpeed(0.2, 0.003));
+        assertNotSame(profile, profile.withTransparency(0.25f));
+        assertSame(RobotProfile.DEFAULT, RobotProfile.DEFAULT.withColor(Color.MAGENTA));
+    }
+
+    @Test
+    void unreferencedProfilesAreNotKept() throws InterruptedException
+    {
+        // Профили, на которые никто не ссылается, не должны копиться.
+        for (int i = 0; i < 100_000; i++) {
+            RobotProfile.of(Color.RED, 1.0f, RobotShape.TRIANGLE, i, 0.001);
+        }
+        for (int attempt = 0; attempt < 50 && RobotProfile.internedCount() >= 1000; attempt++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertTrue(RobotProfile.internedCount() < 1000, RobotProfile.internedCount() + " profiles interned");
+    }
+}
@@ -0,0 +1,51 @@
+package gui;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SessionFileTest
+{
+    @TempDir
+    Path directory;
+
+    @Test
+    void sessionSurvivesRepeatedSavesOverAFileThatWasRead() throws IOException
+    {
+        Path path = directory.resolve("session.bin");
+        for (int i = 0; i < 3; i++) {
+            SessionState state = state(i);
+            SessionFile.write(path, state);
+            // Прочитанный файл сразу заменяется следующей записью.
+            assertEquals(state, SessionFile.read(path));
+        }
+    }
+
+    @Test
+    void truncatedFileIsReportedAsCorrupted() throws IOException
+    {
+        Path path = directory.resolve("session.bin");
+        SessionFile.write(path, state(1));
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 5));
+        assertThrows(IOException.class, () -> SessionFile.read(path));
+    }
+
+    private static SessionState state(int i)
+    {
+        Map<String, InternalFrameState> frames = new LinkedHashMap<>();
+        frames.put("log", new InternalFrameState(new WindowGeometry(10 + i, 10, 300, 800), false, i % 2 == 0));
+        frames.put("game", new InternalFrameState(new WindowGeometry(320, 10, 400, 400), i == 1, false));
+        return new SessionState(new MainFrameState(new WindowGeometry(0, 0, 1024 + i, 768), 0), frames,
+                new RobotState(0x123456, 0.5f, RobotShape.TRIANGLE, 0.1 * i, 0.001, 30, 100.5, 200.25, 1.5));
+    }
+}
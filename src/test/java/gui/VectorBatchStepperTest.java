@@ -0,0 +1,156 @@
+package gui;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import jdk.incubator.vector.DoubleVector;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Сравнение {@link VectorBatchStepper} со скалярным эталоном
+ * {@link ScalarBatchStepper}: одинаковые пакеты проходят одно и то же число
+ * шагов, после чего положения и направления должны совпасть с точностью
+ * до погрешности синуса, косинуса и арктангенса.
+ * <p>
+ * Кроме случайных роботов в пакет входят крайние случаи: роботы на стенах
+ * и за ними, в самой цели, с нулевой и очень большой угловой скоростью,
+ * с направлением вне [0, 2π). Число роботов не кратно длине вектора,
+ * так что хвост пакета проходит скалярный цикл.
+ */
+class VectorBatchStepperTest
+{
+    private static final int FIELD_WIDTH = 400;
+    private static final int FIELD_HEIGHT = 300;
+    private static final int TARGET_X = 150;
+    private static final int TARGET_Y = 100;
+    private static final int TICKS = 300;
+    private static final double EPSILON = 1e-6;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"bangbang", "pid", "pursuit"})
+    void vectorStepMatchesScalarStep(String steering)
+    {
+        int lanes = DoubleVector.SPECIES_PREFERRED.length();
+        int count = 64 * lanes + lanes / 2 + 1;
+        assertNotEquals(0, count % lanes, "the scalar tail must not be empty");
+
+        for (long seed = 1; seed <= 5; seed++) {
+            RobotBatch scalar = randomBatch(new SplittableRandom(seed), count);
+            RobotBatch vector = copy(scalar);
+            BatchStepper scalarStepper = new ScalarBatchStepper();
+            BatchStepper vectorStepper = new VectorBatchStepper();
+            SteeringController scalarSteering = SteeringController.create(steering);
+            SteeringController vectorSteering = SteeringController.create(steering);
+
+            for (int tick = 0; tick < TICKS; tick++) {
+                scalarStepper.step(scalar, scalarSteering, TARGET_X, TARGET_Y,
+                        FIELD_WIDTH, FIELD_HEIGHT, GameWorld.TICK_DURATION);
+                vectorStepper.step(vector, vectorSteering, TARGET_X, TARGET_Y,
+                        FIELD_WIDTH, FIELD_HEIGHT, GameWorld.TICK_DURATION);
+            }
+            assertAgree(scalar, vector, steering + ", seed " + seed);
+        }
+    }
+
+    private static void assertAgree(RobotBatch expected, RobotBatch actual, String context)
+    {
+        for (int i = 0; i < expected.count; i++) {
+            String robot = context + ", robot " + i;
+            assertEquals(expected.positionX[i], actual.positionX[i], EPSILON, robot + ": x");
+            assertEquals(expected.positionY[i], actual.positionY[i], EPSILON, robot + ": y");
+            double turn = Math.IEEEremainder(expected.direction[i] - actual.direction[i], 2 * Math.PI);
+            assertEquals(0, turn, EPSILON, robot + ": direction");
+            assertTrue(actual.direction[i] >= 0 && actual.direction[i] < 2 * Math.PI,
+                    robot + ": direction out of [0, 2pi): " + actual.direction[i]);
+            assertEquals(expected.headingIntegral[i], actual.headingIntegral[i],
+                    EPSILON * Math.max(1, Math.abs(expected.headingIntegral[i])), robot + ": heading integral");
+            assertEquals(expected.headingError[i], actual.headingError[i], EPSILON, robot + ": heading error");
+        }
+    }
+
+    private static RobotBatch randomBatch(SplittableRandom random, int count)
+    {
+        RobotBatch batch = allocate(count);
+        for (int i = 0; i < count; i++) {
+            batch.size[i] = 5 + random.nextInt(40);
+            batch.positionX[i] = random.nextDouble(-50, FIELD_WIDTH + 50);
+            batch.positionY[i] = random.nextDouble(-50, FIELD_HEIGHT + 50);
+            batch.direction[i] = random.nextDouble(0, 2 * Math.PI);
+            batch.maxVelocity[i] = random.nextDouble(0.01, 0.5);
+            batch.maxAngularVelocity[i] = random.nextDouble(0.0005, 0.01);
+        }
+
+        int i = 0;
+        // На стенах и за ними, в том числе в углах.
+        batch.positionX[i] = batch.size[i] / 2;
+        i++;
+        batch.positionX[i] = FIELD_WIDTH - batch.size[i] / 2;
+        i++;
+        batch.positionY[i] = batch.size[i] / 2;
+        i++;
+        batch.positionY[i] = FIELD_HEIGHT - batch.size[i] / 2;
+        i++;
+        batch.positionX[i] = -10;
+        batch.positionY[i++] = -10;
+        batch.positionX[i] = FIELD_WIDTH + 10;
+        batch.positionY[i++] = FIELD_HEIGHT + 10;
+        // В цели и в пределах расстояния прибытия.
+        batch.positionX[i] = TARGET_X;
+        batch.positionY[i++] = TARGET_Y;
+        batch.positionX[i] = TARGET_X + SteeringController.ARRIVAL_DISTANCE / 2;
+        batch.positionY[i++] = TARGET_Y;
+        // Нулевая и очень большая угловая скорость.
+        batch.maxAngularVelocity[i++] = 0;
+        batch.maxAngularVelocity[i++] = 0;
+        batch.maxAngularVelocity[i++] = 5;
+        batch.maxAngularVelocity[i++] = 100;
+        // Нулевая скорость.
+        batch.maxVelocity[i++] = 0;
+        // Направления вне [0, 2π).
+        batch.direction[i++] = -0.5;
+        batch.direction[i++] = -20;
+        batch.direction[i++] = 2 * Math.PI;
+        batch.direction[i++] = 40;
+        batch.direction[i++] = -Math.ulp(0.0);
+        return batch;
+    }
+
+    private static RobotBatch allocate(int count)
+    {
+        RobotBatch batch = new RobotBatch();
+        batch.count = count;
+        batch.positionX = new double[count];
+        batch.positionY = new double[count];
+        batch.direction = new double[count];
+        batch.size = new double[count];
+        batch.maxVelocity = new double[count];
+        batch.maxAngularVelocity = new double[count];
+        batch.velocity = new double[count];
+        batch.angularVelocity = new double[count];
+        batch.headingIntegral = new double[count];
+        batch.headingError = new double[count];
+        return batch;
+    }
+
+    private static RobotBatch copy(RobotBatch source)
+    {
+        RobotBatch batch = new RobotBatch();
+        batch.count = source.count;
+        batch.positionX = Arrays.copyOf(source.positionX, source.count);
+        batch.positionY = Arrays.copyOf(source.positionY, source.count);
+        batch.direction = Arrays.copyOf(source.direction, source.count);
+        batch.size = Arrays.copyOf(source.size, source.count);
+        batch.maxVelocity = Arrays.copyOf(source.maxVelocity, source.count);
+        batch.maxAngularVelocity = Arrays.copyOf(source.maxAngularVelocity, source.count);
+        batch.velocity = new double[source.count];
+        batch.angularVelocity = new double[source.count];
+        batch.headingIntegral = Arrays.copyOf(source.headingIntegral, source.count);
+        batch.headingError = Arrays.copyOf(source.headingError, source.count);
+        return batch;
+    }
+}
@@ -0,0 +1,158 @@
+package telemetry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Медленный читатель кольца теряет записи, но не задерживает писателя,
+ * никогда не получает разорванную или устаревшую запись и продолжает
+ * читать после того, как кольцо начато заново.
+ */
+class TelemetryRingTest
+{
+    private static final int CAPACITY = 1024;
+    private static final int ROBOTS = 8;
+    private static final long TICKS = 200_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void slowReaderLosesRecordsButNeverStallsTheWriter() throws Exception
+    {
+        Path path = directory.resolve("telemetry.ring");
+        TelemetryRing ring = TelemetryRing.create(path, CAPACITY);
+        try (TelemetryReader reader = TelemetryReader.open(path)) {
+            CheckingVisitor visitor = new CheckingVisitor();
+            visitor.parkEvery = 64;
+            Thread writer = new Thread(() -> writeTicks(ring, 0, TICKS), "telemetry writer");
+            long writeStart = System.nanoTime();
+            writer.start();
+            long read = 0;
+            while (writer.isAlive()) {
+                read += reader.poll(visitor);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+            visitor.parkEvery = 0;
+            long writeNanos = System.nanoTime() - writeStart;
+            writer.join();
+            read += reader.poll(visitor);
+
+            assertNull(visitor.failure, visitor.failure);
+            assertTrue(read > 0, "the reader read nothing");
+            assertTrue(reader.getLost() > 0, "a reader that sleeps must lose records");
+            assertTrue(read + reader.getLost() <= TICKS * ROBOTS,
+                    "read " + read + " and lost " + reader.getLost() + " of " + TICKS * ROBOTS);
+            assertEquals(TICKS - 1, visitor.lastTick, "the reader must end on the last record");
+            assertTrue(writeNanos < TimeUnit.SECONDS.toNanos(30),
+                    "the writer took " + TimeUnit.NANOSECONDS.toMillis(writeNanos) + " ms");
+
+            // Кольцо начато заново в том же файле: читатель замечает сброс
+            // счетчика и читает новые записи с начала.
+            ring.close();
+            TelemetryRing restarted = TelemetryRing.create(path, CAPACITY);
+            try {
+                writeTicks(restarted, 0, 10);
+                CheckingVisitor afterRestart = new CheckingVisitor();
+                assertEquals(10 * ROBOTS, reader.poll(afterRestart));
+                assertNull(afterRestart.failure, afterRestart.failure);
+                assertEquals(0, afterRestart.firstTick);
+                assertEquals(9, afterRestart.lastTick);
+            } finally {
+                restarted.close();
+            }
+        }
+    }
+
+    @Test
+    void readerStartsAfterRecordsPublishedBeforeOpening() throws IOException
+    {
+        Path path = directory.resolve("telemetry.ring");
+        try (TelemetryRing ring = TelemetryRing.create(path, CAPACITY)) {
+            writeTicks(ring, 0, 5);
+            try (TelemetryReader reader = TelemetryReader.open(path)) {
+                CheckingVisitor visitor = new CheckingVisitor();
+                assertEquals(0, reader.poll(visitor));
+                writeTicks(ring, 5, 7);
+                assertEquals(2 * ROBOTS, reader.poll(visitor));
+                assertNull(visitor.failure, visitor.failure);
+                assertEquals(5, visitor.firstTick);
+                assertFalse(reader.getLost() > 0);
+            }
+        }
+    }
+
+    /**
+     * Пишет шаги [from, to) по {@link #ROBOTS} записей, как мир после шага.
+     * Все поля записи выводятся из номера шага и робота, так что читатель
+     * может проверить, что запись не собрана из двух разных.
+     */
+    private static void writeTicks(TelemetryRing ring, long from, long to)
+    {
+        for (long tick = from; tick < to; tick++) {
+            for (int id = 0; id < ROBOTS; id++) {
+                long key = key(tick, id);
+                ring.write(tick, id, id & 3, key, key * 0.5, id * 0.25, tick, -tick);
+            }
+            ring.publish();
+        }
+    }
+
+    private static long key(long tick, int id)
+    {
+        return tick * ROBOTS + id;
+    }
+
+    /**
+     * Проверяет записи по мере чтения. С {@link #parkEvery} читатель
+     * засыпает посреди опроса, и писатель успевает перезаписать ячейки,
+     * которые читатель еще не прочитал.
+     */
+    private static final class CheckingVisitor implements TelemetryReader.Visitor
+    {
+        int parkEvery;
+        long records;
+        long firstTick = -1;
+        long lastTick = -1;
+        long lastKey = -1;
+        String failure;
+
+        @Override
+        public void record(long tick, int id, int flags, double x, double y, double direction,
+                           double targetX, double targetY)
+        {
+            if (failure != null) {
+                return;
+            }
+            long key = key(tick, id);
+            if (id < 0 || id >= ROBOTS || flags != (id & 3) || x != key || y != key * 0.5
+                    || direction != id * 0.25 || targetX != tick || targetY != -tick) {
+                failure = "torn record: tick " + tick + ", id " + id + ", flags " + flags + ", x " + x
+                        + ", y " + y + ", direction " + direction + ", target " + targetX + ", " + targetY;
+                return;
+            }
+            if (key <= lastKey) {
+                failure = "record " + key + " after " + lastKey;
+                return;
+            }
+            if (firstTick < 0) {
+                firstTick = tick;
+            }
+            lastTick = tick;
+            lastKey = key;
+            if (parkEvery > 0 && ++records % parkEvery == 0) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+            }
+        }
+    }
+}